@@ -0,0 +1,112 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pl.sobczak.wypozyczalnia.WypozyczalniaApplication;
+import pl.sobczak.wypozyczalnia.service.DeviceAvailabilityIndex;
+import pl.sobczak.wypozyczalnia.service.DeviceSearchIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cała aplikacja na H2 w pamięci (tryb PostgreSQL) z wygenerowanym katalogiem – wspólne dla makrobenchmarków.
+ * Dane wstawiamy JDBC w porcjach, potem przeładowujemy indeksy w pamięci tak jak przy starcie.
+ * Urządzenia mają id 1..devices, użytkownicy 1..users.
+ */
+final class BenchApp implements AutoCloseable {
+
+    private static final String[] BRANDS = {"Dell", "HP", "Lenovo", "Asus", "Acer", "Apple", "Epson", "BenQ", "Canon", "Sony"};
+    private static final String[] MODELS = {"Latitude", "EliteBook", "ThinkPad", "ZenBook", "Swift", "MacBook", "PowerLite", "Vivid", "EOS", "Alpha"};
+    private static final String[] TYPES = {"laptop", "projektor", "monitor", "aparat", "tablet", "mikrofon"};
+    private static final String[] BUILDINGS = {"Budynek A", "Budynek B", "Budynek C", "Aula", "Biblioteka", "Magazyn"};
+    private static final int BATCH = 1000;
+
+    final ConfigurableApplicationContext ctx;
+
+    private BenchApp(ConfigurableApplicationContext ctx) {
+        this.ctx = ctx;
+    }
+
+    static BenchApp start(int devices, int users, int loansPerDevice) {
+        var ctx = new SpringApplicationBuilder(WypozyczalniaApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:bench" + System.nanoTime()
+                        + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.flyway.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--app.reminders.enabled=false",
+                "--app.reminders.catch-up-on-startup=false",
+                "--app.sweeper.enabled=false");
+        var app = new BenchApp(ctx);
+        app.generate(devices, users, loansPerDevice);
+        ctx.getBean(DeviceAvailabilityIndex.class).warmUp();
+        ctx.getBean(DeviceSearchIndex.class).warmUp();
+        return app;
+    }
+
+    <T> T bean(Class<T> type) {
+        return ctx.getBean(type);
+    }
+
+    /** Numer seryjny urządzenia o danym id (do zapytań selektywnych) */
+    static String serialOf(long deviceId) {
+        return String.format("SN-%07d", deviceId);
+    }
+
+    private void generate(int devices, int users, int loansPerDevice) {
+        var jdbc = ctx.getBean(JdbcTemplate.class);
+        var rnd = new Random(42);
+
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 1; i <= users; i++) {
+            rows.add(new Object[]{"user" + i, "user" + i + "@uczelnia.pl", "{noop}x", "ROLE_STUDENT"});
+            flush(jdbc, "insert into users (username, email, password, role) values (?, ?, ?, ?)", rows, i == users);
+        }
+        for (int i = 1; i <= devices; i++) {
+            String name = BRANDS[rnd.nextInt(BRANDS.length)] + " " + MODELS[rnd.nextInt(MODELS.length)] + " " + (100 + rnd.nextInt(900));
+            String location = BUILDINGS[rnd.nextInt(BUILDINGS.length)] + ", sala " + (1 + rnd.nextInt(300));
+            rows.add(new Object[]{i, name, TYPES[rnd.nextInt(TYPES.length)], serialOf(i), location});
+            flush(jdbc, "insert into device (id, name, type, serial_number, location, status, version) values (?, ?, ?, ?, ?, 'AVAILABLE', 0)",
+                    rows, i == devices);
+        }
+        // benchmarki losują id urządzeń z 1..devices; nowe urządzenia (pula 50 w Hibernate) zaczną się za nimi
+        jdbc.execute("alter sequence device_seq restart with " + (devices + 50));
+        // historia: zakończone wypożyczenia w przeszłości
+        LocalDate today = LocalDate.now();
+        long total = (long) devices * loansPerDevice;
+        long n = 0;
+        for (int d = 1; d <= devices; d++) {
+            for (int k = 0; k < loansPerDevice; k++) {
+                LocalDate start = today.minusDays(30L * (k + 1) + rnd.nextInt(20));
+                rows.add(new Object[]{d, 1 + rnd.nextInt(users), Date.valueOf(start), Date.valueOf(start.plusDays(7)), Date.valueOf(start.plusDays(5))});
+                // id z sekwencji encji (koniec puli, której Hibernate nie użyje)
+                flush(jdbc, "insert into loan (id, device_id, user_id, start_date, due_date, return_date, status, damage_reported) "
+                        + "values (nextval('loan_seq'), ?, ?, ?, ?, ?, 'RETURNED', false)", rows, ++n == total);
+            }
+        }
+    }
+
+    private static void flush(JdbcTemplate jdbc, String sql, List<Object[]> rows, boolean last) {
+        if (rows.size() >= BATCH || (last && !rows.isEmpty())) {
+            jdbc.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        ctx.close();
+    }
+}
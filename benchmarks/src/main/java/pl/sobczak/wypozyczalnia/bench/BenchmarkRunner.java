@@ -0,0 +1,30 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.Main;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Punkt wejścia benchmarks.jar – to samo co org.openjdk.jmh.Main, ale bez -rf wyniki zapisuje
+ * do JSON w benchmarks/results (katalog: -Dbench.results.dir=...), żeby kolejne przebiegi dało się porównać.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> all = new ArrayList<>(List.of(args));
+        if (!all.contains("-rf") && !all.contains("-h") && !all.contains("-l")) {
+            Path dir = Path.of(System.getProperty("bench.results.dir", "benchmarks/results"));
+            Files.createDirectories(dir);
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            all.addAll(List.of("-rf", "json", "-rff", dir.resolve("jmh-" + stamp + ".json").toString()));
+        }
+        Main.main(all.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,110 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.sobczak.wypozyczalnia.dto.LoanCreateDto;
+import pl.sobczak.wypozyczalnia.dto.ReservationCreateDto;
+import pl.sobczak.wypozyczalnia.model.Loan;
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.service.LoanService;
+import pl.sobczak.wypozyczalnia.service.ReservationService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ścieżki zapisu przez serwisy (blokada urządzenia + transakcja + indeks dostępności).
+ * Każda operacja zostawia urządzenie w stanie wyjściowym: wypożyczenie od razu wraca,
+ * rezerwacja jest anulowana. Wypożyczenia idą na nieparzyste id, rezerwacje na parzyste.
+ * Zestaw (kitSize rezerwacji) pojedynczo vs POST /batch – w obu wariantach z anulowaniem, więc różnica to sam zapis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingBenchmark {
+
+    @Param({"10000"})
+    public int devices;
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"5"})
+    public int loansPerDevice;
+
+    /** Wielkość zestawu w benchmarkach paczkowych */
+    @Param({"40"})
+    public int kitSize;
+
+    private BenchApp app;
+    private LoanService loans;
+    private ReservationService reservations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = BenchApp.start(devices, users, loansPerDevice);
+        loans = app.bean(LoanService.class);
+        reservations = app.bean(ReservationService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    /** LoanService.create + LoanService.returnLoan */
+    @Benchmark
+    public Loan loanAndReturn() {
+        var rnd = ThreadLocalRandom.current();
+        long deviceId = 1 + 2L * rnd.nextInt(devices / 2);
+        LocalDate today = LocalDate.now();
+        Loan loan = loans.create(new LoanCreateDto(deviceId, 1L + rnd.nextInt(users), today, today.plusDays(7)));
+        return loans.returnLoan(loan.getId(), null, null, false);
+    }
+
+    /** ReservationService.create + ReservationService.cancel */
+    @Benchmark
+    public Reservation reserveAndCancel() {
+        var rnd = ThreadLocalRandom.current();
+        long deviceId = 2 + 2L * rnd.nextInt(devices / 2);
+        LocalDate from = LocalDate.now().plusDays(30 + rnd.nextInt(300));
+        Reservation r = reservations.create(new ReservationCreateDto(deviceId, 1L + rnd.nextInt(users), from, from.plusDays(3)));
+        return reservations.cancel(r.getId());
+    }
+
+    /** kitSize wywołań ReservationService.create + anulowanie */
+    @Benchmark
+    public int reserveKitOneByOne() {
+        var created = new ArrayList<Reservation>(kitSize);
+        for (ReservationCreateDto dto : kit()) created.add(reservations.create(dto));
+        return cancelAll(created);
+    }
+
+    /** ReservationService.createBatch na całym zestawie + anulowanie */
+    @Benchmark
+    public int reserveKitBatch() {
+        return cancelAll(reservations.createBatch(kit()));
+    }
+
+    private List<ReservationCreateDto> kit() {
+        var rnd = ThreadLocalRandom.current();
+        int first = rnd.nextInt(devices / 2 - kitSize);
+        LocalDate from = LocalDate.now().plusDays(30 + rnd.nextInt(300));
+        long userId = 1L + rnd.nextInt(users);
+        var kit = new ArrayList<ReservationCreateDto>(kitSize);
+        for (int i = 0; i < kitSize; i++) {
+            kit.add(new ReservationCreateDto(2 + 2L * (first + i), userId, from, from.plusDays(3)));
+        }
+        return kit;
+    }
+
+    private int cancelAll(List<Reservation> created) {
+        for (Reservation r : created) reservations.cancel(r.getId());
+        return created.size();
+    }
+}
@@ -0,0 +1,48 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pl.sobczak.wypozyczalnia.service.DeviceLocks;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rywalizacja o blokady urządzeń: devices=1 to "wszyscy rezerwują ten sam laptop",
+ * devices=1024 to typowy ruch rozłożony na katalog. Praca w sekcji krytycznej udaje zapis do bazy.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DeviceLocksBenchmark {
+
+    @Param({"1", "16", "1024"})
+    public int devices;
+
+    @Param({"256"})
+    public int stripes;
+
+    @Param({"200"})
+    public int criticalSectionTokens;
+
+    private DeviceLocks locks;
+
+    @Setup
+    public void setup() {
+        locks = new DeviceLocks(stripes, Duration.ofSeconds(30));
+    }
+
+    @Benchmark
+    public Object book() {
+        long deviceId = ThreadLocalRandom.current().nextInt(devices) + 1;
+        return locks.withLock(deviceId, () -> {
+            Blackhole.consumeCPU(criticalSectionTokens);
+            return deviceId;
+        });
+    }
+}
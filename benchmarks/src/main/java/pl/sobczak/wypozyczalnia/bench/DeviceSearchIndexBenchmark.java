@@ -0,0 +1,66 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.service.DeviceSearchIndex;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wyszukiwanie w katalogu wygenerowanych urządzeń (domyślnie milion).
+ * serialFragment – selektywny filtr jak ?q=fragment numeru, nameAndLocation – filtr
+ * z wieloma trafieniami (oddawany bazie), ranked – /api/devices/search z kilkoma słowami.
+ * Czas selektywnych zapytań zależy od liczby trafień, a nie od wielkości katalogu (10k vs 1M).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DeviceSearchIndexBenchmark {
+
+    private static final String[] BRANDS = {"Dell", "HP", "Lenovo", "Asus", "Acer", "Apple", "Epson", "BenQ", "Canon", "Sony"};
+    private static final String[] MODELS = {"Latitude", "EliteBook", "ThinkPad", "ZenBook", "Swift", "MacBook", "PowerLite", "Vivid", "EOS", "Alpha"};
+    private static final String[] TYPES = {"laptop", "projektor", "monitor", "aparat", "tablet", "mikrofon"};
+    private static final String[] BUILDINGS = {"Budynek A", "Budynek B", "Budynek C", "Aula", "Biblioteka", "Magazyn"};
+
+    @Param({"10000", "1000000"})
+    public int devices;
+
+    private DeviceSearchIndex index;
+    private String[] serials;
+
+    @Setup
+    public void setup() {
+        index = new DeviceSearchIndex(null, 1000);
+        serials = new String[devices];
+        var rnd = new Random(42);
+        for (int i = 0; i < devices; i++) {
+            String brand = BRANDS[rnd.nextInt(BRANDS.length)];
+            String name = brand + " " + MODELS[rnd.nextInt(MODELS.length)] + " " + (100 + rnd.nextInt(900));
+            serials[i] = "SN-" + Long.toString(0x100000000L + rnd.nextInt(Integer.MAX_VALUE), 36).toUpperCase();
+            String location = BUILDINGS[rnd.nextInt(BUILDINGS.length)] + ", sala " + (1 + rnd.nextInt(300));
+            index.put(i + 1, name, serials[i], TYPES[rnd.nextInt(TYPES.length)], location,
+                    DeviceStatus.AVAILABLE);
+        }
+    }
+
+    @Benchmark
+    public Object serialFragment() {
+        String serial = serials[ThreadLocalRandom.current().nextInt(devices)];
+        return index.filter(null, null, serial.substring(4, 9));
+    }
+
+    @Benchmark
+    public Object nameAndLocation() {
+        return index.filter("laptop", "aula", "thinkpad 4");
+    }
+
+    @Benchmark
+    public Object ranked() {
+        return index.search("dell latitude 42", 20);
+    }
+}
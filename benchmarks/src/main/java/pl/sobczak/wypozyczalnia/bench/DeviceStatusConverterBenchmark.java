@@ -0,0 +1,47 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.converter.DeviceStatusConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Konwersja statusu urządzenia – wołana przez Hibernate dla każdego wczytanego wiersza.
+ * Wartości kanoniczne (AVAILABLE) i stare polskie zapisy z bazy (DOSTĘPNY, serwis).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeviceStatusConverterBenchmark {
+
+    @Param({"AVAILABLE", "LOANED", "DOSTĘPNY", "Wypożyczony", "serwis"})
+    public String raw;
+
+    private final DeviceStatusConverter converter = new DeviceStatusConverter();
+    private DeviceStatus status;
+
+    @Setup
+    public void setup() {
+        status = converter.convertToEntityAttribute(raw);
+    }
+
+    @Benchmark
+    public DeviceStatus toEntity() {
+        return converter.convertToEntityAttribute(raw);
+    }
+
+    @Benchmark
+    public String toColumn() {
+        return converter.convertToDatabaseColumn(status);
+    }
+
+    /** Parsowanie statusu z JSON/parametru (DeviceStatus.fromJson) */
+    @Benchmark
+    public DeviceStatus fromJson() {
+        return DeviceStatus.fromJson(status.getPl());
+    }
+}
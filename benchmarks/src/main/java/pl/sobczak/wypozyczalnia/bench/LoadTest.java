@@ -0,0 +1,120 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test obciążeniowy działającej aplikacji po HTTP (JMH mierzy pojedyncze wywołania, nie zachowanie pod tłokiem).
+ * Zamknięta pętla: każdy z N klientów wysyła żądanie, czeka na odpowiedź i od razu wysyła kolejne,
+ * więc N to liczba żądań w locie. Po rozgrzewce liczy przepustowość i percentyle czasu odpowiedzi.
+ * Przy nasyceniu jedno żądanie trwa ok. N / przepustowość – rozgrzewka i pomiar muszą być kilka razy dłuższe.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar pl.sobczak.wypozyczalnia.bench.LoadTest http://localhost:8080 2000 30
+ * </pre>
+ * -Dload.warmup=10 (s), -Dload.user=jan:haslo1234, -Dload.ids=1000 (losowe {id} w ścieżkach),
+ * -Dload.paths=/api/loans/device/{id}?after=&amp;size=20,/api/devices?size=10
+ */
+public final class LoadTest {
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("LoadTest <baseUrl> [klienci=2000] [czas s=30]");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int warmup = Integer.getInteger("load.warmup", 10);
+        int ids = Integer.getInteger("load.ids", 1000);
+        List<String> paths = List.of(System.getProperty("load.paths",
+                "/api/loans/device/{id}?after=&size=20,/api/devices?size=10").split(","));
+        String auth = "Basic " + Base64.getEncoder().encodeToString(
+                System.getProperty("load.user", "jan:haslo1234").getBytes(StandardCharsets.UTF_8));
+
+        var run = new Run(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build(),
+                baseUrl, paths, ids, auth);
+        System.out.printf("%d klientów, rozgrzewka %d s, pomiar %d s: %s%n", clients, warmup, seconds, paths);
+        long start = System.nanoTime();
+        run.measureFrom = start + Duration.ofSeconds(warmup).toNanos();
+        run.stopAt = run.measureFrom + Duration.ofSeconds(seconds).toNanos();
+        for (int i = 0; i < clients; i++) run.next();
+        run.done.await();
+        run.report(seconds);
+    }
+
+    private static final class Run {
+        final HttpClient http;
+        final String baseUrl;
+        final List<String> paths;
+        final int ids;
+        final String auth;
+        volatile long measureFrom;
+        volatile long stopAt;
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong(); // 503 – odmowa przy wyczerpanej puli
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong active = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Run(HttpClient http, String baseUrl, List<String> paths, int ids, String auth) {
+            this.http = http;
+            this.baseUrl = baseUrl;
+            this.paths = paths;
+            this.ids = ids;
+            this.auth = auth;
+        }
+
+        void next() {
+            if (System.nanoTime() >= stopAt) return;
+            active.incrementAndGet();
+            var rnd = ThreadLocalRandom.current();
+            String path = paths.get(rnd.nextInt(paths.size())).replace("{id}", String.valueOf(1 + rnd.nextInt(ids)));
+            var request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Authorization", auth)
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            long sent = System.nanoTime();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((res, err) -> {
+                long now = System.nanoTime();
+                if (now >= measureFrom && now < stopAt) { // zakończone w oknie pomiaru, także wysłane w rozgrzewce
+                    if (err != null || res.statusCode() >= 500 && res.statusCode() != 503) failed.incrementAndGet();
+                    else if (res.statusCode() == 503) rejected.incrementAndGet();
+                    else {
+                        ok.incrementAndGet();
+                        latencies.add(now - sent);
+                    }
+                }
+                next();
+                if (active.decrementAndGet() == 0) done.countDown();
+            });
+        }
+
+        void report(int seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            System.out.printf("przepustowość: %.0f ż/s (ok %d, 503 %d, błędy %d)%n",
+                    ok.get() / (double) seconds, ok.get(), rejected.get(), failed.get());
+            if (sorted.length == 0) return;
+            System.out.printf("czas odpowiedzi ms: p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+                    pct(sorted, 0.50), pct(sorted, 0.90), pct(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double pct(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import pl.sobczak.wypozyczalnia.controller.DeviceController;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.spec.DeviceSpecifications;
+import pl.sobczak.wypozyczalnia.service.CustomUserDetailsService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ścieżki odczytu: wyszukiwanie urządzeń (like w bazie vs indeks w pamięci), strona historii wypożyczeń
+ * i odczyty po naturalnym kluczu z cache drugiego poziomu (login, numer seryjny).
+ * Zapytanie wyszukiwania to fragment numeru seryjnego – selektywne, jak wpisywanie z naklejki.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadPathsBenchmark {
+
+    @Param({"10000"})
+    public int devices;
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"5"})
+    public int loansPerDevice;
+
+    private BenchApp app;
+    private DeviceRepository deviceRepo;
+    private LoanRepository loanRepo;
+    private DeviceController deviceController;
+    private CustomUserDetailsService userDetailsService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = BenchApp.start(devices, users, loansPerDevice);
+        deviceRepo = app.bean(DeviceRepository.class);
+        loanRepo = app.bean(LoanRepository.class);
+        deviceController = app.bean(DeviceController.class);
+        userDetailsService = app.bean(CustomUserDetailsService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    private String serialFragment() {
+        return BenchApp.serialOf(1 + ThreadLocalRandom.current().nextInt(devices)).substring(3);
+    }
+
+    /** Dawna ścieżka: DeviceSpecifications.matchesQuery (lower(...) like '%q%') */
+    @Benchmark
+    public Object searchLike() {
+        var spec = Specification.allOf(DeviceSpecifications.matchesQuery(serialFragment()));
+        return deviceRepo.findAll(spec, PageRequest.of(0, 20, Sort.by("id").descending()));
+    }
+
+    /** GET /api/devices?q= – filtry z DeviceSearchIndex */
+    @Benchmark
+    public Object searchIndexed() {
+        return deviceController.search(null, null, null, serialFragment(), 0, 20, "id,desc");
+    }
+
+    /** GET /api/loans/device/{id} – pierwsza strona historii */
+    @Benchmark
+    public Object loanHistoryPage() {
+        long deviceId = 1 + ThreadLocalRandom.current().nextInt(devices);
+        return loanRepo.findDtosByDeviceId(deviceId, PageRequest.of(0, 20));
+    }
+
+    /** Logowanie bez cache poświadczeń: UserRepository.findByUsername (natural id) */
+    @Benchmark
+    public Object loadUserByUsername() {
+        return userDetailsService.loadUserByUsername("user" + (1 + ThreadLocalRandom.current().nextInt(users)));
+    }
+
+    /** Sprawdzenie duplikatu przy dodawaniu urządzenia: DeviceRepository.existsBySerialNumber (natural id) */
+    @Benchmark
+    public boolean serialExists() {
+        return deviceRepo.existsBySerialNumber(BenchApp.serialOf(1 + ThreadLocalRandom.current().nextInt(devices)));
+    }
+}
@@ -0,0 +1,36 @@
+package pl.sobczak.wypozyczalnia.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pl.sobczak.wypozyczalnia.model.ReservationStatus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsowanie statusu z JSON/parametru: słownik w enumie (fromJson) vs dawna pętla po values()
+ * z equalsIgnoreCase na etykiecie PL i nazwie. Wartości: nazwa, etykieta PL, inna wielkość liter, ostatnia stała.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatusParsingBenchmark {
+
+    @Param({"ACTIVE", "ANULOWANA", "wygasła", "FULFILLED"})
+    public String raw;
+
+    @Benchmark
+    public ReservationStatus lookup() {
+        return ReservationStatus.fromJson(raw);
+    }
+
+    @Benchmark
+    public ReservationStatus valuesLoop() {
+        String v = raw.trim();
+        for (ReservationStatus s : ReservationStatus.values()) {
+            if (s.getPl().equalsIgnoreCase(v) || s.name().equalsIgnoreCase(v)) return s;
+        }
+        throw new IllegalArgumentException("Nieznany status rezerwacji: " + raw);
+    }
+}
@@ -0,0 +1,42 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sprawdzenie kolizji terminów w indeksie dostępności (IntervalSet jest pakietowy, stąd ten pakiet).
+ * intervals = liczba aktywnych rezerwacji jednego urządzenia, rozrzuconych na ~10 lat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntervalSetBenchmark {
+
+    private static final int DAYS = 3650;
+
+    @Param({"10", "1000"})
+    public int intervals;
+
+    private IntervalSet set;
+
+    @Setup
+    public void setup() {
+        set = new IntervalSet();
+        var rnd = new java.util.Random(7);
+        for (int i = 0; i < intervals; i++) {
+            long start = rnd.nextInt(DAYS);
+            set.add(i, start, start + 1 + rnd.nextInt(14));
+        }
+    }
+
+    @Benchmark
+    public boolean overlaps() {
+        long from = ThreadLocalRandom.current().nextInt(DAYS);
+        return set.overlaps(from, from + 3);
+    }
+}
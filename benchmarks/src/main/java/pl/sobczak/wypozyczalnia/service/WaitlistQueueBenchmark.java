@@ -0,0 +1,68 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dopasowanie zwolnionego terminu do listy oczekujących (WaitlistQueue jest pakietowa, stąd ten pakiet).
+ * entries wpisów na 6 typów × 30 lokalizacji (co dziesiąty bez lokalizacji), terminy 1-14 dni w ciągu roku.
+ * candidates – same kandydatury dla zwolnionych 3-7 dni urządzenia; match – jak WaitlistService.match:
+ * kandydaci sprawdzani na przedziałach urządzenia (10 innych rezerwacji), aż do pierwszego pasującego.
+ * Wynik w operacjach na sekundę = ile zwolnień terminu na sekundę obsłuży jeden wątek dopasowujący.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WaitlistQueueBenchmark {
+
+    private static final String[] TYPES = {"laptop", "projektor", "monitor", "aparat", "tablet", "mikrofon"};
+    private static final int LOCATIONS = 30, DAYS = 365;
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private WaitlistQueue queue;
+    private IntervalSet deviceBookings;
+
+    @Setup
+    public void setup() {
+        queue = new WaitlistQueue();
+        var rnd = new Random(11);
+        for (int i = 0; i < entries; i++) {
+            long from = rnd.nextInt(DAYS);
+            String location = rnd.nextInt(10) == 0 ? null : "Budynek " + rnd.nextInt(LOCATIONS);
+            queue.add(WaitlistQueue.Entry.of(i + 1, rnd.nextInt(5000), TYPES[rnd.nextInt(TYPES.length)], location,
+                    from, from + 1 + rnd.nextInt(14), i, Long.MAX_VALUE));
+        }
+        deviceBookings = new IntervalSet();
+        for (int i = 0; i < 10; i++) {
+            long from = rnd.nextInt(DAYS);
+            deviceBookings.add(i, from, from + 1 + rnd.nextInt(14));
+        }
+    }
+
+    @Benchmark
+    public Object candidates() {
+        var rnd = ThreadLocalRandom.current();
+        long from = rnd.nextInt(DAYS);
+        return queue.candidates(TYPES[rnd.nextInt(TYPES.length)], "Budynek " + rnd.nextInt(LOCATIONS) + ", sala 1",
+                from, from + 2 + rnd.nextInt(5), 0);
+    }
+
+    @Benchmark
+    public long match() {
+        var rnd = ThreadLocalRandom.current();
+        long from = rnd.nextInt(DAYS);
+        for (var e : queue.candidates(TYPES[rnd.nextInt(TYPES.length)], "Budynek " + rnd.nextInt(LOCATIONS) + ", sala 1",
+                from, from + 2 + rnd.nextInt(5), 0)) {
+            if (!deviceBookings.overlaps(e.from(), e.to())) return e.id();
+        }
+        return -1;
+    }
+}
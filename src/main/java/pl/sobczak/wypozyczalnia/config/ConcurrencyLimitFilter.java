@@ -0,0 +1,80 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limit równolegle obsługiwanych żądań (app.threads.max-concurrent-requests, 0 = bez limitu).
+ * Przy wątkach platformowych ogranicza to pula Tomcata; przy wirtualnych każde połączenie dostaje wątek
+ * i kilka tysięcy żądań dzieli CPU naraz – te z połączeniem z bazy oddają je coraz później, pula Hikari
+ * się wyczerpuje i wszystkie czekają. Nadmiarowe żądania czekają więc tu w kolejce (tanio, bez połączenia),
+ * a po app.threads.queue-timeout dostają 503. Actuator nie jest limitowany, żeby metryki były widoczne pod obciążeniem.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long queueTimeoutMs;
+
+    public ConcurrencyLimitFilter(@Value("${app.threads.max-concurrent-requests:0}") int maxConcurrent,
+                                  @Value("${app.threads.queue-timeout:PT10S}") Duration queueTimeout) {
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+        this.queueTimeoutMs = queueTimeout.toMillis();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return permits == null || request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"czas\":\"" + Instant.now() + "\",\"sciezka\":\"uri=" + jsonSafe(request.getRequestURI())
+                    + "\",\"komunikat\":\"Serwer jest przeciążony, spróbuj ponownie\"}");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static String jsonSafe(String uri) {
+        return uri.replace("\\", "%5C").replace("\"", "%22");
+    }
+
+    int availablePermits() {
+        return permits == null ? -1 : permits.availablePermits();
+    }
+}
@@ -1,15 +1,20 @@
 package pl.sobczak.wypozyczalnia.config;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.*;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.resource.NoResourceFoundException; // ⬅️ NOWY import
+import pl.sobczak.wypozyczalnia.service.BatchRejectedException;
 
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -62,6 +67,19 @@ public class GlobalExceptionHandler {
         ));
     }
 
+    /** 409 dla odrzuconej paczki – błędy per pozycja w tym samym kształcie co walidacja (items[i] -> komunikat) */
+    @ExceptionHandler(BatchRejectedException.class)
+    public ResponseEntity<?> handleBatchRejected(BatchRejectedException ex, WebRequest req) {
+        var errors = new LinkedHashMap<String, String>();
+        ex.getErrors().forEach((i, msg) -> errors.put("items[" + i + "]", msg));
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "czas", Instant.now(),
+                "sciezka", req.getDescription(false),
+                "komunikat", ex.getMessage(),
+                "bledy", errors
+        ));
+    }
+
     /** 409 dla reguł biznesowych/duplikatów wykrytych w kodzie */
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<?> handleIllegalState(IllegalStateException ex, WebRequest req) {
@@ -82,6 +100,31 @@ public class GlobalExceptionHandler {
         ));
     }
 
+    /** 409 gdy równoległa zmiana wygrała wyścig (np. wersja urządzenia) */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<?> handleConcurrency(ConcurrencyFailureException ex, WebRequest req) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "czas", Instant.now(),
+                "sciezka", req.getDescription(false),
+                "komunikat", "Dane zostały w międzyczasie zmienione przez innego użytkownika, spróbuj ponownie"
+        ));
+    }
+
+    /**
+     * 503 gdy nie ma wolnego połączenia z bazą (pula Hikari wyczerpana po connection-timeout albo baza niedostępna).
+     * Dotyczy zwłaszcza profilu virtual, gdzie liczba równoległych żądań nie jest ograniczona pulą wątków.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<?> handleNoConnection(Exception ex, WebRequest req) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of(
+                        "czas", Instant.now(),
+                        "sciezka", req.getDescription(false),
+                        "komunikat", "Serwer jest przeciążony – brak wolnego połączenia z bazą, spróbuj ponownie"
+                ));
+    }
+
     /** 500 – na czas dev wypisz typ i szczegóły, żeby łatwo namierzyć problem */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleAny(Exception ex, WebRequest req) {
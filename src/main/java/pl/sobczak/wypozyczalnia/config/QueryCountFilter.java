@@ -0,0 +1,63 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Liczba zapytań SQL na żądanie HTTP: metryka app.http.queries (per wzorzec URI) i ostrzeżenie w logu
+ * powyżej app.metrics.query-warn-threshold – typowy ślad N+1 (zapytanie per element listy).
+ * Stoi przed Spring Security, więc liczy też odczyt użytkownika przy uwierzytelnianiu.
+ * Część asynchroniczna (StreamingResponseBody eksportów) idzie w innym wątku i nie jest liczona.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCountFilter.class);
+
+    private final MeterRegistry registry;
+    private final int warnThreshold;
+
+    public QueryCountFilter(MeterRegistry registry,
+                            @Value("${app.metrics.query-warn-threshold:20}") int warnThreshold) {
+        this.registry = registry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int queries = QueryCounter.current();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN"; // bez surowej ścieżki – id w URL rozdmuchałyby tagi
+            DistributionSummary.builder("app.http.queries")
+                    .description("Zapytania SQL na żądanie HTTP")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(registry)
+                    .record(queries);
+            if (queries > warnThreshold) {
+                log.warn("{} zapytań SQL w {} {} (próg {}) – możliwe N+1", queries, request.getMethod(),
+                        request.getRequestURI(), warnThreshold);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Licznik instrukcji SQL przygotowanych w bieżącym wątku (hibernate.session_factory.statement_inspector).
+ * Tworzy go Hibernate, nie Spring – stąd stan w statycznym ThreadLocal; odczytuje i zeruje QueryCountFilter.
+ * Paczka JDBC liczy się raz, tak jak jedna podróż do bazy.
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql; // bez zmian w treści zapytania
+    }
+
+    static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,109 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Odczyty z replik PostgreSQL (włączane ustawieniem app.replica.urls): pula bazy głównej ze spring.datasource.*
+ * jak dotąd, dla każdej repliki pula tylko do odczytu z tymi samymi ustawieniami Hikari (rozmiar app.replica.pool-size,
+ * krótki czas oczekiwania na połączenie app.replica.connection-timeout).
+ * Routing w {@link ReplicaRoutingDataSource}, zgoda na odczyt z repliki w {@link ReplicaRoutingInterceptor}.
+ * Bez app.replica.urls ta konfiguracja nie działa, a DataSource tworzy Spring Boot.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.replica.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    /**
+     * Opóźnienie odtwarzania WAL w sekundach; 0, gdy replika odtworzyła wszystko, co odebrała (brak ruchu).
+     * Bez strumienia WAL z bazy głównej (zerwane połączenie, zły primary_conninfo) odebrane = odtworzone, więc
+     * samo porównanie LSN dawałoby 0 – wtedy nieskończoność, czyli replika pomijana do odnowienia strumienia.
+     * Status widzi użytkownik z pg_read_all_stats; bez tej roli liczy się samo istnienie procesu odbiorcy.
+     */
+    static final String POSTGRES_LAG_QUERY = "select case"
+            + " when not exists (select 1 from pg_stat_wal_receiver where coalesce(status, 'streaming') = 'streaming')"
+            + " then 'infinity'::float8"
+            + " when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0"
+            + " else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+    private ReplicaRoutingDataSource routing;
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            Environment env,
+            MeterRegistry registry,
+            @Value("${app.replica.urls}") List<String> urls,
+            @Value("${app.replica.username:}") String username,
+            @Value("${app.replica.password:}") String password,
+            @Value("${app.replica.pool-size:10}") int poolSize,
+            @Value("${app.replica.connection-timeout:PT1S}") Duration connectionTimeout,
+            @Value("${app.replica.max-lag:PT5S}") Duration maxLag,
+            @Value("${app.replica.lag-query:}") String lagQuery) {
+        var trackers = new MicrometerMetricsTrackerFactory(registry);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(env).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (!StringUtils.hasText(primary.getPoolName())) primary.setPoolName("primary");
+        primary.setMetricsTrackerFactory(trackers);
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) continue;
+            var config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            if (StringUtils.hasText(username)) {
+                config.setUsername(username);
+                config.setPassword(password);
+            }
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            config.setMaximumPoolSize(Math.max(1, poolSize));
+            config.setConnectionTimeout(connectionTimeout.toMillis()); // niedostępna replika: krótko, potem baza główna
+            config.setInitializationFailTimeout(-1); // niedostępna replika nie blokuje startu – odczyty idą do głównej
+            config.setMetricsTrackerFactory(trackers);
+            replicas.add(new ReplicaRoutingDataSource.Replica(config.getPoolName(), new HikariDataSource(config)));
+        }
+        routing = new ReplicaRoutingDataSource(primary, replicas, maxLag,
+                StringUtils.hasText(lagQuery) ? lagQuery : POSTGRES_LAG_QUERY, registry);
+        return routing;
+    }
+
+    /** Właściwy DataSource aplikacji: połączenie pobierane dopiero przy pierwszym zapytaniu (znana flaga readOnly) */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public ReplicaRoutingInterceptor replicaRoutingInterceptor(
+            @Value("${app.replica.read-your-writes:PT10S}") Duration readYourWrites) {
+        return new ReplicaRoutingInterceptor(readYourWrites);
+    }
+
+    /** Dostępność i opóźnienie replik; opóźniona lub niedostępna przestaje dostawać odczyty do następnego sprawdzenia */
+    @Scheduled(fixedDelayString = "${app.replica.check-interval:PT5S}")
+    public void checkReplicas() {
+        if (routing != null) routing.checkReplicas();
+    }
+}
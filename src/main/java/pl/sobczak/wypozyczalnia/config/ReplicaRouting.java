@@ -0,0 +1,26 @@
+package pl.sobczak.wypozyczalnia.config;
+
+/**
+ * Czy bieżący wątek może czytać z repliki (ReplicaRoutingDataSource). Ustawia ReplicaRoutingInterceptor
+ * dla żądań GET/HEAD; eksporty przenoszą zgodę do wątku asynchronicznego (ExportResponses).
+ * Bez zgody – zawsze baza główna, także dla transakcji tylko do odczytu.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> READS = new ThreadLocal<>();
+
+    private ReplicaRouting() {}
+
+    public static boolean readsAllowed() {
+        return Boolean.TRUE.equals(READS.get());
+    }
+
+    public static void allowReads(boolean allowed) {
+        if (allowed) READS.set(Boolean.TRUE);
+        else READS.remove();
+    }
+
+    public static void clear() {
+        READS.remove();
+    }
+}
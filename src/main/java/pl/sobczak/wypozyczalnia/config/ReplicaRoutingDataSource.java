@@ -0,0 +1,170 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.lang.Nullable;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Połączenia do bazy głównej albo do repliki. Replika dostaje odczyty z wątków, którym pozwala na to
+ * {@link ReplicaRouting} (GET/HEAD), poza transakcjami z zapisem. Repliki po kolei (round robin), pomijane
+ * niedostępne i opóźnione o więcej niż max-lag (checkReplicas, co check-interval); gdy żadna się nie nadaje
+ * albo połączenie się nie uda – baza główna. Opakowana w LazyConnectionDataSourceProxy, więc decyzja zapada przy
+ * pierwszym zapytaniu, kiedy znana jest już flaga readOnly transakcji.
+ * Sesja JPA, która dostała połączenie z repliki, tylko czyta cache L2 (CacheMode.GET) – encje z repliki mogą być
+ * sprzed ostatnich zapisów, a cache READ_WRITE jest wspólny z bazą główną i trzymałby je do wygaśnięcia.
+ * Metryki: app.db.connections (tag target=primary|replica|fallback) – skąd wzięto połączenie,
+ * app.db.replica.lag (tag replica) – opóźnienie z ostatniego sprawdzenia w sekundach.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /** Replika z ostatnim wynikiem sprawdzenia */
+    public static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean usable = true;
+        volatile double lagSeconds;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    @Nullable
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter toPrimary;
+    private final Counter toReplica;
+    private final Counter fallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Duration maxLag,
+                                    @Nullable String lagQuery, MeterRegistry registry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.toPrimary = connections(registry, "primary");
+        this.toReplica = connections(registry, "replica");
+        this.fallbacks = connections(registry, "fallback");
+        for (Replica r : this.replicas) {
+            Gauge.builder("app.db.replica.lag", r, x -> x.lagSeconds)
+                    .description("Opóźnienie repliki z ostatniego sprawdzenia [s]").tag("replica", r.name).register(registry);
+        }
+    }
+
+    private static Counter connections(MeterRegistry registry, String target) {
+        return Counter.builder("app.db.connections")
+                .description("Pobrane połączenia JDBC według celu")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (readFromReplica()) {
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica r = replicas.get((start + i) % replicas.size());
+                if (!r.usable) continue;
+                try {
+                    Connection c = r.dataSource.getConnection();
+                    toReplica.increment();
+                    skipCachePuts();
+                    return c;
+                } catch (SQLException e) {
+                    r.usable = false; // wraca po udanym sprawdzeniu
+                    log.warn("Replika {} niedostępna ({}), odczyt z bazy głównej", r.name, e.getMessage());
+                }
+            }
+            fallbacks.increment();
+            return primary.getConnection();
+        }
+        toPrimary.increment();
+        return primary.getConnection();
+    }
+
+    /** Sesje JPA związane z wątkiem (open-in-view, transakcja) przestają wkładać do cache L2 to, co przeczytają */
+    private static void skipCachePuts() {
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder holder && holder.getEntityManager().isOpen()) {
+                holder.getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.GET);
+            }
+        }
+    }
+
+    /** Połączenie z własnymi poświadczeniami to nigdy odczyt z repliki – zawsze baza główna */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        toPrimary.increment();
+        return primary.getConnection(username, password);
+    }
+
+    /** Odczyt z repliki: zgoda wątku i brak transakcji albo transakcja tylko do odczytu */
+    boolean readFromReplica() {
+        if (replicas.isEmpty() || !ReplicaRouting.readsAllowed()) return false;
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * Sprawdzenie replik: połączenie i opóźnienie (lag-query zwraca sekundy; null = brak opóźnienia,
+     * nieskończoność = replika nie odbiera zmian z bazy głównej).
+     * Replika niedostępna albo opóźniona o więcej niż max-lag jest pomijana do następnego udanego sprawdzenia.
+     */
+    public void checkReplicas() {
+        for (Replica r : replicas) {
+            boolean was = r.usable;
+            try (Connection c = r.dataSource.getConnection()) {
+                double lag = 0;
+                if (lagQuery != null) {
+                    try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(lagQuery)) {
+                        if (rs.next()) lag = rs.getDouble(1); // SQL null → 0
+                    }
+                } else if (!c.isValid(5)) {
+                    throw new SQLException("Połączenie nieważne");
+                }
+                r.lagSeconds = lag;
+                r.usable = lag * 1000 <= maxLag.toMillis();
+                if (!r.usable && was) {
+                    if (Double.isInfinite(lag)) log.warn("Replika {} nie odbiera WAL z bazy głównej, odczyty z bazy głównej", r.name);
+                    else log.warn("Replika {} opóźniona o {} s (limit {}), odczyty z bazy głównej", r.name, lag, maxLag);
+                }
+            } catch (SQLException e) {
+                r.usable = false;
+                if (was) log.warn("Replika {} niedostępna: {}", r.name, e.getMessage());
+            }
+            if (r.usable && !was) log.info("Replika {} znów obsługuje odczyty (opóźnienie {} s)", r.name, r.lagSeconds);
+        }
+    }
+
+    /** Zamknięcie pul (bean – zamyka kontekst) */
+    @Override
+    public void close() throws Exception {
+        for (Replica r : replicas) {
+            if (r.dataSource instanceof AutoCloseable c) c.close();
+        }
+        if (primary instanceof AutoCloseable c) c.close();
+    }
+}
@@ -0,0 +1,79 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Zgoda na odczyt z repliki dla żądań GET/HEAD (po Spring Security – logowanie zawsze czyta z bazy głównej).
+ * Odczyt własnych zapisów: użytkownik, który w ciągu read-your-writes wykonał żądanie zmieniające dane
+ * (POST/PUT/PATCH/DELETE), czyta z bazy głównej, dopóki replika na pewno go nie dogoniła.
+ * Pamięć zapisów jest w węźle – przy kilku węzłach zakłada sticky sessions albo okno dłuższe niż max-lag.
+ */
+public class ReplicaRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final int PRUNE_ABOVE = 10_000;
+
+    private final long readYourWritesNanos;
+    private final LongSupplier nanoTime;
+    /** Użytkownik → czas (nanoTime) ostatniego żądania zmieniającego dane */
+    private final Map<String, Long> lastWrite = new ConcurrentHashMap<>();
+
+    public ReplicaRoutingInterceptor(Duration readYourWrites) {
+        this(readYourWrites, System::nanoTime);
+    }
+
+    ReplicaRoutingInterceptor(Duration readYourWrites, LongSupplier nanoTime) {
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRouting.allowReads(isRead(request) && !wroteRecently(user(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                @Nullable Exception ex) {
+        ReplicaRouting.clear();
+        if (!isRead(request)) recordWrite(user(request));
+    }
+
+    /** Wątek żądania wraca do puli, zanim odpowiedź asynchroniczna (eksport) się skończy */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRouting.clear();
+    }
+
+    boolean wroteRecently(@Nullable String user) {
+        if (user == null) return false;
+        Long at = lastWrite.get(user);
+        return at != null && nanoTime.getAsLong() - at < readYourWritesNanos;
+    }
+
+    void recordWrite(@Nullable String user) {
+        if (user == null) return;
+        long now = nanoTime.getAsLong();
+        lastWrite.put(user, now);
+        if (lastWrite.size() > PRUNE_ABOVE) lastWrite.values().removeIf(at -> now - at >= readYourWritesNanos);
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    @Nullable
+    private static String user(HttpServletRequest request) {
+        Principal p = request.getUserPrincipal();
+        return p != null ? p.getName() : null;
+    }
+}
@@ -3,14 +3,19 @@ package pl.sobczak.wypozyczalnia.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import pl.sobczak.wypozyczalnia.security.CachingAuthenticationProvider;
+import pl.sobczak.wypozyczalnia.security.CredentialCache;
 import pl.sobczak.wypozyczalnia.security.RestAccessDeniedHandler;
 import pl.sobczak.wypozyczalnia.security.RestAuthenticationEntryPoint;
 
@@ -27,6 +32,11 @@ public class SecurityConfig {
                         .requestMatchers("/v3/api-docs/**","/swagger-ui/**","/swagger-ui.html").permitAll()
                         // Rejestracja publiczna
                         .requestMatchers("/api/users/register").permitAll()
+                        // Statystyki/diagnostyka tylko dla obsługi (health otwarty dla load balancera)
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/api/admin/**", "/actuator/**").hasAnyRole("ADMIN", "STAFF")
+                        // Eksporty (cała historia, dane wszystkich użytkowników) i import sprzętu tylko dla obsługi
+                        .requestMatchers("/api/loans/export", "/api/devices/export", "/api/devices/import").hasAnyRole("ADMIN", "STAFF")
                         // Zarządzanie sprzętem tylko dla ADMIN/STAFF
                         .requestMatchers("/api/devices/**").authenticated()
                         // Wypożyczenia i rezerwacje wymagają zalogowania
@@ -50,6 +60,16 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    /** Provider z cache poświadczeń – BCrypt i zapytanie o użytkownika tylko przy chybieniu */
+    @Bean
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                         PasswordEncoder passwordEncoder,
+                                                         CredentialCache credentialCache) {
+        var dao = new DaoAuthenticationProvider(userDetailsService);
+        dao.setPasswordEncoder(passwordEncoder);
+        return new CachingAuthenticationProvider(dao, credentialCache);
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
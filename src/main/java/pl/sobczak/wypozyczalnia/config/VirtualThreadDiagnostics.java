@@ -0,0 +1,103 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tryb wątków (profil virtual, application-virtual.properties) i diagnostyka przypięć.
+ * Wątek wirtualny blokujący się wewnątrz synchronized (Java 21–23) trzyma wątek nośny – przy kilku takich
+ * miejscach naraz staje cała obsługa żądań. Zdarzenie JFR jdk.VirtualThreadPinned trafia do metryki
+ * app.threads.pinned, a każde nowe miejsce przypięcia raz do logu ze stosem.
+ */
+@Component
+public class VirtualThreadDiagnostics {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadDiagnostics.class);
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Environment env;
+    private final MeterRegistry registry;
+    private final boolean monitorEnabled;
+    private final Duration threshold;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private volatile Timer pinned;
+    private volatile RecordingStream stream;
+
+    public VirtualThreadDiagnostics(Environment env, MeterRegistry registry,
+                                    @Value("${app.threads.pinned-monitor.enabled:false}") boolean monitorEnabled,
+                                    @Value("${app.threads.pinned-monitor.threshold:PT0.02S}") Duration threshold) {
+        this.env = env;
+        this.registry = registry;
+        this.monitorEnabled = monitorEnabled;
+        this.threshold = threshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        boolean requested = env.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (!Threading.VIRTUAL.isActive(env)) {
+            if (requested) {
+                log.warn("spring.threads.virtual.enabled=true wymaga Javy 21+, działa {} – zostają wątki platformowe",
+                        Runtime.version());
+            }
+            return;
+        }
+        log.info("Wątki wirtualne: żądania HTTP, @Scheduled i applicationTaskExecutor");
+        if (!monitorEnabled) return;
+        pinned = Timer.builder("app.threads.pinned")
+                .description("Przypięcia wątków wirtualnych do nośnika (JFR " + PINNED_EVENT + ")")
+                .register(registry);
+        var rs = new RecordingStream();
+        rs.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        rs.onEvent(PINNED_EVENT, this::onPinned);
+        rs.startAsync();
+        stream = rs;
+        log.info("Monitor przypięć wątków wirtualnych: próg {} ms", threshold.toMillis());
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.record(event.getDuration());
+        String stack = stack(event);
+        String site = stack.lines().findFirst().orElse("?");
+        if (reportedSites.add(site)) {
+            log.warn("Wątek wirtualny przypięty przez {} ms (blokowanie w synchronized albo natywnej ramce):\n{}",
+                    event.getDuration().toMillis(), stack);
+        }
+    }
+
+    /** Najwyższe ramki stosu bez ramek JDK – pierwsza z nich to miejsce do poprawy (lock zamiast synchronized) */
+    static String stack(RecordedEvent event) {
+        var trace = event.getStackTrace();
+        if (trace == null) return "(brak stosu)";
+        String own = trace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(f -> f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber())
+                .filter(f -> !f.startsWith("java.") && !f.startsWith("jdk.") && !f.startsWith("sun."))
+                .limit(LOGGED_FRAMES)
+                .collect(Collectors.joining("\n\tat "));
+        return own.isEmpty() ? "(tylko ramki JDK)" : own;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) stream.close();
+    }
+}
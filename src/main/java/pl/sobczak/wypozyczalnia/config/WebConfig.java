@@ -0,0 +1,34 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.ReservationStatus;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<ReplicaRoutingInterceptor> replicaRouting;
+
+    public WebConfig(ObjectProvider<ReplicaRoutingInterceptor> replicaRouting) {
+        this.replicaRouting = replicaRouting;
+    }
+
+    /** Statusy w parametrach zapytań (?status=) przyjmujemy tak jak w JSON: nazwa EN lub etykieta PL */
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, DeviceStatus.class, s -> s.isBlank() ? null : DeviceStatus.fromJson(s));
+        registry.addConverter(String.class, LoanStatus.class, s -> s.isBlank() ? null : LoanStatus.fromJson(s));
+        registry.addConverter(String.class, ReservationStatus.class, s -> s.isBlank() ? null : ReservationStatus.fromJson(s));
+    }
+
+    /** Odczyty z replik tylko przy skonfigurowanym app.replica.urls (ReadReplicaConfig) */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        replicaRouting.ifAvailable(registry::addInterceptor);
+    }
+}
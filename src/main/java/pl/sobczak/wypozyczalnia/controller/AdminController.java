@@ -0,0 +1,69 @@
+package pl.sobczak.wypozyczalnia.controller;
+
+import org.springframework.web.bind.annotation.*;
+import pl.sobczak.wypozyczalnia.dto.AuthCacheStatsDto;
+import pl.sobczak.wypozyczalnia.dto.EntityCacheStatsDto;
+import pl.sobczak.wypozyczalnia.dto.ExpirySweepResultDto;
+import pl.sobczak.wypozyczalnia.dto.MailQueueStatsDto;
+import pl.sobczak.wypozyczalnia.security.CredentialCache;
+import pl.sobczak.wypozyczalnia.service.EntityCacheStats;
+import pl.sobczak.wypozyczalnia.service.ExpirySweeper;
+import pl.sobczak.wypozyczalnia.service.MailDispatcher;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final CredentialCache credentialCache;
+    private final MailDispatcher mailDispatcher;
+    private final EntityCacheStats entityCacheStats;
+    private final ExpirySweeper expirySweeper;
+
+    public AdminController(CredentialCache credentialCache, MailDispatcher mailDispatcher,
+                           EntityCacheStats entityCacheStats, ExpirySweeper expirySweeper) {
+        this.credentialCache = credentialCache;
+        this.mailDispatcher = mailDispatcher;
+        this.entityCacheStats = entityCacheStats;
+        this.expirySweeper = expirySweeper;
+    }
+
+    /** Trafienia/chybienia cache poświadczeń HTTP Basic */
+    @GetMapping("/auth-cache")
+    public AuthCacheStatsDto authCache() {
+        return new AuthCacheStatsDto(credentialCache.getHits(), credentialCache.getMisses(), credentialCache.size());
+    }
+
+    /** Ręczne wyczyszczenie cache (np. po zmianach ról bezpośrednio w bazie) */
+    @DeleteMapping("/auth-cache")
+    public void clearAuthCache() {
+        credentialCache.clear();
+    }
+
+    /** Głębokość kolejki poczty, ponowienia i opóźnienie od zakolejkowania do wysyłki */
+    @GetMapping("/mail-queue")
+    public MailQueueStatsDto mailQueue() {
+        return mailDispatcher.stats();
+    }
+
+    /** Trafienia/chybienia cache drugiego poziomu Hibernate (urządzenia, użytkownicy) per region */
+    @GetMapping("/entity-cache")
+    public List<EntityCacheStatsDto> entityCache() {
+        return entityCacheStats.stats();
+    }
+
+    /** Wyczyszczenie cache encji (np. po zmianach urządzeń/użytkowników bezpośrednio w bazie) */
+    @DeleteMapping("/entity-cache")
+    public void clearEntityCache() {
+        entityCacheStats.evictAll();
+    }
+
+    /** Ręczny przebieg sprzątania terminów (OVERDUE/EXPIRED/FULFILLED) – liczba zmienionych wierszy */
+    @PostMapping("/expiry-sweep")
+    public ExpirySweepResultDto expirySweep() {
+        var result = expirySweeper.sweep();
+        if (result == null) throw new IllegalStateException("Sprzątanie terminów trwa właśnie na innym węźle");
+        return result;
+    }
+}
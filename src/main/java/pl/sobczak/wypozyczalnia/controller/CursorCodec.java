@@ -0,0 +1,73 @@
+package pl.sobczak.wypozyczalnia.controller;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import pl.sobczak.wypozyczalnia.dto.CursorPageDto;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Nieprzezroczysty token kursora dla paginacji keyset.
+ * W środku są wartości kluczy sortowania ostatniego elementu strony (np. name + id),
+ * zakodowane jako base64url, żeby klient traktował go jak czarną skrzynkę.
+ */
+final class CursorCodec {
+
+    /** Największa strona list stronicowanych kursorem (większe size są przycinane) */
+    static final int MAX_PAGE_SIZE = 100;
+
+    private CursorCodec() {}
+
+    /** size z żądania w granicach 1..MAX_PAGE_SIZE – 0 dawałoby pustą stronę z hasNext, ujemne i ogromne psują limit */
+    static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /** Pusty/brak tokenu = pierwsza strona */
+    static KeysetScrollPosition decode(String token, Map<String, Function<String, ?>> keyTypes) {
+        if (token == null || token.isBlank()) return ScrollPosition.keyset();
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8);
+                var parser = keyTypes.get(key);
+                if (parser == null) throw new IllegalArgumentException(key);
+                keys.put(key, parser.apply(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8)));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Nieprawidłowy kursor stronicowania");
+        }
+        // kursor z innego sortowania niż bieżące żądanie
+        if (!keys.keySet().equals(keyTypes.keySet())) {
+            throw new IllegalStateException("Kursor nie pasuje do wybranego sortowania");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    static String encode(ScrollPosition position) {
+        var sb = new StringBuilder();
+        ((KeysetScrollPosition) position).getKeys().forEach((k, v) -> {
+            if (!sb.isEmpty()) sb.append('&');
+            sb.append(URLEncoder.encode(k, StandardCharsets.UTF_8))
+              .append('=')
+              .append(URLEncoder.encode(String.valueOf(v), StandardCharsets.UTF_8));
+        });
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static <T> CursorPageDto<T> page(Window<T> window) {
+        String next = window.hasNext() && !window.isEmpty()
+                ? encode(window.positionAt(window.size() - 1))
+                : null;
+        return new CursorPageDto<>(window.getContent(), window.size(), window.hasNext(), next);
+    }
+}
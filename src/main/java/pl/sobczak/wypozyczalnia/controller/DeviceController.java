@@ -1,32 +1,87 @@
 package pl.sobczak.wypozyczalnia.controller;
 
 import jakarta.validation.Valid;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import pl.sobczak.wypozyczalnia.dto.CursorPageDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceAvailabilityDto;
 import pl.sobczak.wypozyczalnia.dto.DeviceCreateDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceImportResultDto;
 import pl.sobczak.wypozyczalnia.model.Device;
 import pl.sobczak.wypozyczalnia.model.DeviceStatus;
 import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
 import pl.sobczak.wypozyczalnia.repository.spec.DeviceSpecifications;
+import pl.sobczak.wypozyczalnia.service.DeviceAvailabilityIndex;
+import pl.sobczak.wypozyczalnia.service.DeviceImportService;
+import pl.sobczak.wypozyczalnia.service.DeviceSearchIndex;
+import pl.sobczak.wypozyczalnia.service.DomainEventOutbox;
+import pl.sobczak.wypozyczalnia.service.ExportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/devices")
 public class DeviceController {
 
     private final DeviceRepository deviceRepository;
+    private final DeviceSearchIndex searchIndex;
+    private final ExportService exportService;
+    private final DeviceImportService importService;
+    private final DeviceAvailabilityIndex availabilityIndex;
+    private final DomainEventOutbox domainEvents;
+    private final TransactionTemplate tx;
 
-    public DeviceController(DeviceRepository deviceRepository) {
+    public DeviceController(DeviceRepository deviceRepository, DeviceSearchIndex searchIndex,
+                            ExportService exportService, DeviceImportService importService,
+                            DeviceAvailabilityIndex availabilityIndex, DomainEventOutbox domainEvents,
+                            TransactionTemplate tx) {
         this.deviceRepository = deviceRepository;
+        this.searchIndex = searchIndex;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.availabilityIndex = availabilityIndex;
+        this.domainEvents = domainEvents;
+        this.tx = tx;
     }
 
+    /** Najwięcej urządzeń w jednym kalendarzu zbiorczym */
+    private static final int MAX_CALENDAR_DEVICES = 1000;
+
+    /** Pola, po których da się sortować w trybie kursorowym (NOT NULL od V10, więc porównania keyset są jednoznaczne) */
+    private static final Map<String, Function<String, ?>> CURSOR_KEYS = Map.of(
+            "id", Long::valueOf,
+            "name", Function.identity(),
+            "type", Function.identity(),
+            "serialNumber", Function.identity(),
+            "location", Function.identity()
+    );
+
     /** Lista urządzeń z filtrami: status, type, location, q oraz paginacją/sortowaniem */
     @GetMapping
-    public Page<Device> search(
+    public Page<DeviceDto> search(
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String location,
@@ -35,40 +90,155 @@ public class DeviceController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id,desc") String sort
     ) {
-        // sort: "pole,kierunek" np. "name,asc"
-        Sort sortObj;
+        Pageable pageable = PageRequest.of(page, CursorCodec.pageSize(size), parseSort(sort));
+        return deviceRepository.findAll(filters(status, type, location, query), pageable).map(DeviceDto::of);
+    }
+
+    /**
+     * Ta sama lista w trybie kursorowym (?after=, pusty = pierwsza strona).
+     * Bez count(*) i bez OFFSET – kolejna strona kosztuje tyle samo niezależnie od głębokości.
+     */
+    @GetMapping(params = "after")
+    public CursorPageDto<DeviceDto> searchAfter(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false, name = "q") String query,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id,desc") String sort
+    ) {
+        Sort sortObj = parseSort(sort);
+        Sort.Order order = sortObj.iterator().next();
+        if (!CURSOR_KEYS.containsKey(order.getProperty())) {
+            throw new IllegalStateException("Tryb kursorowy obsługuje sortowanie tylko po: " + CURSOR_KEYS.keySet());
+        }
+        // id jako drugi klucz, żeby kolejność była stabilna przy powtarzających się wartościach
+        if (!"id".equals(order.getProperty())) {
+            sortObj = sortObj.and(Sort.by(order.getDirection(), "id"));
+        }
+        var keyTypes = new LinkedHashMap<String, Function<String, ?>>();
+        sortObj.forEach(o -> keyTypes.put(o.getProperty(), CURSOR_KEYS.get(o.getProperty())));
+        KeysetScrollPosition position = CursorCodec.decode(after, keyTypes);
+
+        Sort finalSort = sortObj;
+        Window<Device> window = deviceRepository.findBy(filters(status, type, location, query),
+                q -> q.sortBy(finalSort).limit(CursorCodec.pageSize(size)).scroll(position));
+        return CursorCodec.page(window.map(DeviceDto::of));
+    }
+
+    // sort: "pole,kierunek" np. "name,asc"
+    private static Sort parseSort(String sort) {
         try {
             var parts = sort.split(",", 2);
             var field = parts[0];
             var dir = (parts.length > 1 ? parts[1] : "desc").toLowerCase();
-            sortObj = "asc".equals(dir) ? Sort.by(field).ascending() : Sort.by(field).descending();
+            return "asc".equals(dir) ? Sort.by(field).ascending() : Sort.by(field).descending();
         } catch (Exception e) {
-            sortObj = Sort.by("id").descending();
+            return Sort.by("id").descending();
         }
-        Pageable pageable = PageRequest.of(page, size, sortObj);
+    }
 
+    private Specification<Device> filters(String status, String type, String location, String query) {
         DeviceStatus st = null;
         if (status != null && !status.isBlank()) {
             try {
-                st = DeviceStatus.valueOf(status.trim().toUpperCase());
+                st = DeviceStatus.fromJson(status);
             } catch (IllegalArgumentException e) {
                 throw new IllegalStateException("Nieprawidłowy status: " + status);
             }
         }
 
-        Specification<Device> spec = Specification.allOf(
+        // filtry tekstowe z indeksu w pamięci; przy wielu trafieniach (lub przed rozgrzaniem) – like w bazie
+        var ids = searchIndex.isReady() ? searchIndex.filter(type, location, query) : Optional.<List<Long>>empty();
+        if (ids.isPresent()) {
+            return Specification.allOf(
+                    DeviceSpecifications.hasStatus(st),
+                    DeviceSpecifications.idIn(ids.get())
+            );
+        }
+        return Specification.allOf(
                 DeviceSpecifications.hasStatus(st),
                 DeviceSpecifications.hasType(type),
                 DeviceSpecifications.inLocation(location),
                 DeviceSpecifications.matchesQuery(query)
         );
+    }
+
+    /** Wyszukiwanie z rankingiem po nazwie, numerze seryjnym, typie i lokalizacji (słowa traktowane też jako prefiksy) */
+    @GetMapping("/search")
+    public List<DeviceDto> rankedSearch(@RequestParam(name = "q") String query,
+                                     @RequestParam(defaultValue = "20") int limit) {
+        if (!searchIndex.isReady()) {
+            throw new IllegalStateException("Indeks wyszukiwania jest jeszcze ładowany, spróbuj za chwilę");
+        }
+        List<Long> ids = searchIndex.search(query, Math.min(limit, 100));
+        Map<Long, Device> byId = new HashMap<>();
+        deviceRepository.findAllById(ids).forEach(d -> byId.put(d.getId(), d));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(DeviceDto::of).toList();
+    }
+
+    /** Kalendarz urządzenia: zajęte okresy w [from, to] (najdalej CALENDAR_DAYS dni od dziś), z indeksu w pamięci */
+    @GetMapping("/{id}/availability")
+    public DeviceAvailabilityDto availability(@PathVariable Long id,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (deviceRepository.findById(id).isEmpty()) throw new IllegalStateException("Nie znaleziono urządzenia");
+        return DeviceAvailabilityDto.of(id, from, to, availabilityIndex.busyDays(List.of(id), from, to).get(id));
+    }
+
+    /**
+     * Kalendarz wielu urządzeń jednym wywołaniem: lista ids albo filtr jak w liście (np. location=Sala 101 – cała pracownia).
+     * Urządzenia z filtra pochodzą z indeksu wyszukiwania, zajętość z indeksu dostępności – bez zapytań do bazy.
+     */
+    @GetMapping("/availability")
+    public List<DeviceAvailabilityDto> availability(@RequestParam(required = false) List<Long> ids,
+                                                    @RequestParam(required = false) String type,
+                                                    @RequestParam(required = false) String location,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        List<Long> deviceIds;
+        if (ids != null && !ids.isEmpty()) {
+            deviceIds = ids.stream().distinct().toList();
+        } else if ((type == null || type.isBlank()) && (location == null || location.isBlank())) {
+            throw new IllegalStateException("Podaj ids albo filtr type/location");
+        } else {
+            if (!searchIndex.isReady()) {
+                throw new IllegalStateException("Indeks wyszukiwania jest jeszcze ładowany, spróbuj za chwilę");
+            }
+            deviceIds = searchIndex.filter(type, location, null).orElseThrow(() ->
+                    new IllegalStateException("Za dużo urządzeń – zawęź filtr"));
+        }
+        if (deviceIds.size() > MAX_CALENDAR_DEVICES) {
+            throw new IllegalStateException("Kalendarz obejmuje najwyżej " + MAX_CALENDAR_DEVICES + " urządzeń");
+        }
+        return availabilityIndex.busyDays(deviceIds, from, to).entrySet().stream()
+                .map(e -> DeviceAvailabilityDto.of(e.getKey(), from, to, e.getValue()))
+                .toList();
+    }
+
+    /** Eksport urządzeń (CSV lub NDJSON, opcjonalnie gzip) strumieniem z bazy, opcjonalnie tylko w danym statusie */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) DeviceStatus status,
+                                                        @RequestParam(defaultValue = "csv") String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip) {
+        var fmt = ExportService.Format.parse(format);
+        return ExportResponses.file("urzadzenia", fmt, gzip, out -> exportService.exportDevices(status, fmt, out));
+    }
 
-        return deviceRepository.findAll(spec, pageable);
+    /**
+     * Import urządzeń z CSV (treść żądania, jak plik z /export; gzip=true dla .csv.gz).
+     * Poprawne wiersze są zapisywane porcjami, błędne wracają w raporcie z numerem wiersza.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public DeviceImportResultDto importCsv(InputStream body,
+                                           @RequestParam(defaultValue = "false") boolean gzip) throws IOException {
+        return importService.importCsv(gzip ? new GZIPInputStream(body, 64 * 1024) : body);
     }
 
-    /** Dodawanie urządzenia (z kontrolą duplikatu numeru seryjnego) */
+    /** Dodawanie urządzenia (z kontrolą duplikatu numeru seryjnego); zdarzenie DEVICE_CREATED w tej samej transakcji */
     @PostMapping
-    public Device create(@Valid @RequestBody DeviceCreateDto dto) {
+    public DeviceDto create(@Valid @RequestBody DeviceCreateDto dto) {
         if (deviceRepository.existsBySerialNumber(dto.serialNumber())) {
             throw new IllegalStateException("Urządzenie o podanym numerze seryjnym już istnieje");
         }
@@ -78,6 +248,12 @@ public class DeviceController {
         d.setSerialNumber(dto.serialNumber());
         d.setLocation(dto.location());
         d.setStatus(DeviceStatus.AVAILABLE); // albo DOSTEPNY – zgodnie z Twoim enumem
-        return deviceRepository.save(d);
+        Device saved = tx.execute(s -> {
+            Device created = deviceRepository.save(d);
+            searchIndex.deviceSaved(created);
+            domainEvents.devicesCreated(List.of(created));
+            return created;
+        });
+        return DeviceDto.of(saved);
     }
 }
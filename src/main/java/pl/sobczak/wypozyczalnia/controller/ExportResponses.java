@@ -0,0 +1,49 @@
+package pl.sobczak.wypozyczalnia.controller;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.sobczak.wypozyczalnia.config.ReplicaRouting;
+import pl.sobczak.wypozyczalnia.service.ExportService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Odpowiedź eksportu jako plik do pobrania: treść pisana w trakcie wysyłki (StreamingResponseBody),
+ * przy gzip=true kompresowana w locie do pliku .gz. Treść pisze wątek asynchroniczny – dostaje zgodę
+ * na odczyt z repliki z wątku żądania.
+ */
+final class ExportResponses {
+
+    private ExportResponses() {}
+
+    static ResponseEntity<StreamingResponseBody> file(String name, ExportService.Format format, boolean gzip,
+                                                      StreamingResponseBody body) {
+        String filename = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        MediaType type = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : new MediaType(MediaType.parseMediaType(format.getMediaType()), StandardCharsets.UTF_8);
+
+        StreamingResponseBody content = !gzip ? body : out -> {
+            var gz = new GZIPOutputStream(out, 64 * 1024);
+            body.writeTo(gz);
+            gz.finish();
+        };
+        boolean replicaReads = ReplicaRouting.readsAllowed();
+        StreamingResponseBody stream = out -> {
+            ReplicaRouting.allowReads(replicaReads);
+            try {
+                content.writeTo(out);
+            } finally {
+                ReplicaRouting.clear();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(stream);
+    }
+}
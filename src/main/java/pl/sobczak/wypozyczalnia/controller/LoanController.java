@@ -1,60 +1,126 @@
 package pl.sobczak.wypozyczalnia.controller;
 
 import jakarta.validation.Valid;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import pl.sobczak.wypozyczalnia.dto.CursorPageDto;
+import pl.sobczak.wypozyczalnia.dto.LoanBatchCreateDto;
 import pl.sobczak.wypozyczalnia.dto.LoanCreateDto;
+import pl.sobczak.wypozyczalnia.dto.LoanDto;
 import pl.sobczak.wypozyczalnia.dto.LoanReturnDto;
-import pl.sobczak.wypozyczalnia.model.Loan;
 import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.service.ExportService;
 import pl.sobczak.wypozyczalnia.service.LoanService;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/loans")
 public class LoanController {
 
+    /** Klucze kursora historii: data startu + id jako rozstrzygnięcie remisów */
+    private static final Map<String, Function<String, ?>> HISTORY_KEYS = new LinkedHashMap<>();
+    static {
+        HISTORY_KEYS.put("startDate", LocalDate::parse);
+        HISTORY_KEYS.put("id", Long::valueOf);
+    }
+
+    private static final LocalDate FIRST_PAGE_DATE = LocalDate.of(9999, 12, 31);
+
     private final LoanService loanService;
     private final LoanRepository loanRepo;
+    private final ExportService exportService;
 
-    public LoanController(LoanService loanService, LoanRepository loanRepo) {
+    public LoanController(LoanService loanService, LoanRepository loanRepo, ExportService exportService) {
         this.loanService = loanService;
         this.loanRepo = loanRepo;
+        this.exportService = exportService;
     }
 
     /** Utworzenie wypożyczenia */
     @PostMapping
-    public Loan create(@Valid @RequestBody LoanCreateDto dto) {
-        return loanService.create(dto);
+    public LoanDto create(@Valid @RequestBody LoanCreateDto dto) {
+        return LoanDto.of(loanService.create(dto));
+    }
+
+    /** Wydanie zestawu urządzeń: wszystkie pozycje albo żadna (błędy per pozycja w odpowiedzi 409) */
+    @PostMapping("/batch")
+    public List<LoanDto> createBatch(@Valid @RequestBody LoanBatchCreateDto dto) {
+        return loanService.createBatch(dto.items()).stream().map(LoanDto::of).toList();
     }
 
     /** Zwrot z opcjonalną datą i notatką oraz flagą uszkodzenia (query paramy) */
     @PostMapping("/{id}/return")
-    public Loan returnLoan(@PathVariable Long id,
+    public LoanDto returnLoan(@PathVariable Long id,
                            @RequestParam(required = false)
                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate returnDate,
                            @RequestParam(required = false) String note,
                            @RequestParam(defaultValue = "false") boolean damaged) {
-        return loanService.returnLoan(id, returnDate, note, damaged);
+        return LoanDto.of(loanService.returnLoan(id, returnDate, note, damaged));
     }
 
     /** Zwrot w JSON body (wygodne pod frontend) */
     @PostMapping(value = "/{id}/return-json", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public Loan returnLoanJson(@PathVariable Long id, @RequestBody LoanReturnDto dto) {
+    public LoanDto returnLoanJson(@PathVariable Long id, @RequestBody LoanReturnDto dto) {
         LocalDate rd = dto.returnDate();
         String note = dto.note();
         boolean damaged = Boolean.TRUE.equals(dto.damaged()); // null -> false
-        return loanService.returnLoan(id, rd, note, damaged);
+        return LoanDto.of(loanService.returnLoan(id, rd, note, damaged));
+    }
+
+    /**
+     * Eksport wypożyczeń (CSV lub NDJSON, opcjonalnie gzip) strumieniem z bazy – zamiast kartkowania historii.
+     * Filtry opcjonalne: urządzenie i zakres daty startu.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) Long deviceId,
+                                                        @RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(defaultValue = "csv") String format,
+                                                        @RequestParam(defaultValue = "false") boolean gzip) {
+        var fmt = ExportService.Format.parse(format);
+        return ExportResponses.file("wypozyczenia", fmt, gzip,
+                out -> exportService.exportLoans(deviceId, from, to, fmt, out));
     }
 
     /** Lista wypożyczeń (paginowana) */
     @GetMapping("/device/{deviceId}")
-    public Page<Loan> historyByDevice(@PathVariable Long deviceId, Pageable pageable) {
-        return loanRepo.findByDeviceIdOrderByStartDateDesc(deviceId, pageable);
+    public Page<LoanDto> historyByDevice(@PathVariable Long deviceId, Pageable pageable) {
+        return loanRepo.findDtosByDeviceId(deviceId, pageable);
+    }
+
+    /** Historia urządzenia w trybie kursorowym (?after=, pusty = pierwsza strona), bez count(*) */
+    @GetMapping(value = "/device/{deviceId}", params = "after")
+    public CursorPageDto<LoanDto> historyByDeviceAfter(@PathVariable Long deviceId,
+                                                       @RequestParam String after,
+                                                       @RequestParam(defaultValue = "20") int size) {
+        var keys = CursorCodec.decode(after, HISTORY_KEYS).getKeys();
+        int limit = CursorCodec.pageSize(size);
+        // pierwsza strona: "po" dacie spoza zakresu danych
+        LocalDate startDate = keys.isEmpty() ? FIRST_PAGE_DATE : (LocalDate) keys.get("startDate");
+        Long id = keys.isEmpty() ? Long.MAX_VALUE : (Long) keys.get("id");
+
+        // o jeden wiersz więcej, żeby wiedzieć czy jest następna strona
+        List<LoanDto> rows = loanRepo.findDtosByDeviceIdAfter(deviceId, startDate, id, Limit.of(limit + 1));
+        boolean hasNext = rows.size() > limit;
+        List<LoanDto> content = hasNext ? rows.subList(0, limit) : rows;
+        return CursorCodec.page(Window.from(content, i -> ScrollPosition.forward(Map.of(
+                "startDate", content.get(i).startDate(),
+                "id", content.get(i).id())), hasNext));
     }
 }
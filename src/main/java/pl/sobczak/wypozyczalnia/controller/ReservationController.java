@@ -4,11 +4,17 @@ import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.bind.annotation.*;
+import pl.sobczak.wypozyczalnia.dto.ReservationAllocateDto;
+import pl.sobczak.wypozyczalnia.dto.ReservationBatchCreateDto;
 import pl.sobczak.wypozyczalnia.dto.ReservationCreateDto;
-import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.dto.ReservationDto;
+import pl.sobczak.wypozyczalnia.dto.WaitlistEntryDto;
 import pl.sobczak.wypozyczalnia.model.ReservationStatus;
 import pl.sobczak.wypozyczalnia.repository.ReservationRepository;
 import pl.sobczak.wypozyczalnia.service.ReservationService;
+import pl.sobczak.wypozyczalnia.service.WaitlistService;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/reservations")
@@ -16,30 +22,61 @@ public class ReservationController {
 
     private final ReservationService reservationService;
     private final ReservationRepository reservationRepo;
+    private final WaitlistService waitlistService;
 
-    public ReservationController(ReservationService reservationService, ReservationRepository reservationRepo) {
+    public ReservationController(ReservationService reservationService, ReservationRepository reservationRepo,
+                                 WaitlistService waitlistService) {
         this.reservationService = reservationService;
         this.reservationRepo = reservationRepo;
+        this.waitlistService = waitlistService;
     }
 
     @PostMapping
-    public Reservation create(@Valid @RequestBody ReservationCreateDto dto) {
-        return reservationService.create(dto);
+    public ReservationDto create(@Valid @RequestBody ReservationCreateDto dto) {
+        return ReservationDto.of(reservationService.create(dto));
+    }
+
+    /** Rezerwacja zestawu urządzeń: wszystkie pozycje albo żadna (błędy per pozycja w odpowiedzi 409) */
+    @PostMapping("/batch")
+    public List<ReservationDto> createBatch(@Valid @RequestBody ReservationBatchCreateDto dto) {
+        return reservationService.createBatch(dto.items()).stream().map(ReservationDto::of).toList();
+    }
+
+    /** Dowolny wolny egzemplarz typu (np. "laptop" w "Budynek B") na podany termin – serwer wybiera urządzenie */
+    @PostMapping("/allocate")
+    public ReservationDto allocate(@Valid @RequestBody ReservationAllocateDto dto) {
+        return ReservationDto.of(reservationService.allocate(dto));
+    }
+
+    /** Zapis na listę oczekujących, gdy allocate nie znalazł wolnego urządzenia; zwolniony termin przydzieli się sam */
+    @PostMapping("/waitlist")
+    public WaitlistEntryDto joinWaitlist(@Valid @RequestBody ReservationAllocateDto dto) {
+        return WaitlistEntryDto.of(waitlistService.join(dto));
+    }
+
+    @GetMapping("/waitlist")
+    public Page<WaitlistEntryDto> waitlist(@RequestParam(required = false) Long userId, Pageable pageable) {
+        return waitlistService.list(userId, pageable).map(WaitlistEntryDto::of);
+    }
+
+    @PostMapping("/waitlist/{id}/cancel")
+    public WaitlistEntryDto cancelWaitlist(@PathVariable Long id) {
+        return WaitlistEntryDto.of(waitlistService.cancel(id));
     }
 
     @PostMapping("/{id}/cancel")
-    public Reservation cancel(@PathVariable Long id) {
-        return reservationService.cancel(id);
+    public ReservationDto cancel(@PathVariable Long id) {
+        return ReservationDto.of(reservationService.cancel(id));
     }
 
     @GetMapping
-    public Page<Reservation> list(@RequestParam(required = false) Long userId,
+    public Page<ReservationDto> list(@RequestParam(required = false) Long userId,
                                   @RequestParam(required = false) Long deviceId,
                                   @RequestParam(required = false) ReservationStatus status,
                                   Pageable pageable) {
-        if (userId != null) return reservationRepo.findByUserId(userId, pageable);
-        if (deviceId != null) return reservationRepo.findByDeviceId(deviceId, pageable);
-        if (status != null) return reservationRepo.findByStatus(status, pageable);
-        return reservationRepo.findAll(pageable);
+        if (userId != null) return reservationRepo.findDtosByUserId(userId, pageable);
+        if (deviceId != null) return reservationRepo.findDtosByDeviceId(deviceId, pageable);
+        if (status != null) return reservationRepo.findDtosByStatus(status, pageable);
+        return reservationRepo.findAllDtos(pageable);
     }
 }
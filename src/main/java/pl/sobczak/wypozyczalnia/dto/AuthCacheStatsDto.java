@@ -0,0 +1,3 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+public record AuthCacheStatsDto(long hits, long misses, int size) {}
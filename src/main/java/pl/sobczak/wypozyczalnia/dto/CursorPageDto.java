@@ -0,0 +1,6 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.util.List;
+
+/** Strona w trybie kursorowym: bez count(*), "next" przekazujemy jako ?after= w kolejnym żądaniu */
+public record CursorPageDto<T>(List<T> content, int size, boolean hasNext, String next) {}
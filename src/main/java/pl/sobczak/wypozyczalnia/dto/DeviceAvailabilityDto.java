@@ -0,0 +1,24 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/** Kalendarz urządzenia w [from, to]: zajęte okresy (rezerwacje i wypożyczenia) sklejone w przedziały dni */
+public record DeviceAvailabilityDto(Long deviceId, LocalDate from, LocalDate to, boolean free, List<Period> busy) {
+
+    /** Domknięty przedział dni */
+    public record Period(LocalDate from, LocalDate to) {}
+
+    /** busy: bit 0 = from */
+    public static DeviceAvailabilityDto of(Long deviceId, LocalDate from, LocalDate to, BitSet busy) {
+        List<Period> periods = new ArrayList<>();
+        for (int start = busy.nextSetBit(0); start >= 0; start = busy.nextSetBit(start)) {
+            int end = busy.nextClearBit(start); // pierwszy wolny po serii
+            periods.add(new Period(from.plusDays(start), from.plusDays(end - 1)));
+            start = end;
+        }
+        return new DeviceAvailabilityDto(deviceId, from, to, periods.isEmpty(), periods);
+    }
+}
@@ -0,0 +1,4 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+/** Wersja i liczba rezerwacji/wypożyczeń urządzenia – do budowy indeksu w pamięci */
+public record DeviceCountDto(Long deviceId, Long version, Long bookings) {}
@@ -0,0 +1,12 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+
+/** Urządzenie w odpowiedziach API (bez pól technicznych encji, np. wersji) */
+public record DeviceDto(Long id, String name, String type, String serialNumber, String location, DeviceStatus status) {
+
+    public static DeviceDto of(Device d) {
+        return new DeviceDto(d.getId(), d.getName(), d.getType(), d.getSerialNumber(), d.getLocation(), d.getStatus());
+    }
+}
@@ -0,0 +1,13 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.util.List;
+
+/**
+ * Wynik importu urządzeń z CSV: ile wierszy zapisano, ile odrzucono i dlaczego.
+ * Lista błędów jest przycięta (errorsTruncated), licznik rejected obejmuje wszystkie.
+ */
+public record DeviceImportResultDto(long imported, long rejected, List<RowError> errors, boolean errorsTruncated) {
+
+    /** line – numer wiersza w pliku (nagłówek to wiersz 1) */
+    public record RowError(long line, String serialNumber, String message) {}
+}
@@ -0,0 +1,6 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.time.LocalDate;
+
+/** Aktywny przedział zajętości urządzenia (rezerwacja lub wypożyczenie) – do budowy indeksu w pamięci */
+public record DeviceIntervalDto(Long deviceId, Long id, LocalDate from, LocalDate to) {}
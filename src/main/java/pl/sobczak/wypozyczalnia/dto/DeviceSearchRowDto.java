@@ -0,0 +1,6 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+
+public record DeviceSearchRowDto(Long id, String name, String serialNumber, String type, String location,
+                                 DeviceStatus status) {}
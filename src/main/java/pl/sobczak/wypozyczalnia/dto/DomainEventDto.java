@@ -0,0 +1,27 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEvent;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/** Zdarzenie domenowe z outboxu w postaci przekazywanej słuchaczom (DomainEventRelay) */
+public record DomainEventDto(
+        Long id,
+        DomainEventType type,
+        String origin,
+        Long aggregateId,
+        Long deviceId,
+        Long userId,
+        LocalDate fromDate,
+        LocalDate toDate,
+        DeviceStatus deviceStatus,
+        Instant createdAt
+) {
+    public static DomainEventDto of(DomainEvent e) {
+        return new DomainEventDto(e.getId(), e.getType(), e.getOrigin(), e.getAggregateId(), e.getDeviceId(),
+                e.getUserId(), e.getFromDate(), e.getToDate(), e.getDeviceStatus(), e.getCreatedAt());
+    }
+}
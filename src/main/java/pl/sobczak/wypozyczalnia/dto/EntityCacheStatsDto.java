@@ -0,0 +1,3 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+public record EntityCacheStatsDto(String region, long hits, long misses, long puts, double hitRatio) {}
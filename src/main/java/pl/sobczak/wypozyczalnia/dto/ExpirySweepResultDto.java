@@ -0,0 +1,12 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+/** Wynik przebiegu ExpirySweeper – liczba zmienionych wierszy */
+public record ExpirySweepResultDto(
+        int overdueLoans,
+        int expiredReservations,
+        int fulfilledReservations,
+        int releasedDevices,
+        int expiredWaitlistEntries,
+        int purgedDomainEvents,
+        long durationMs
+) {}
@@ -0,0 +1,11 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import java.util.List;
+
+public record LoanBatchCreateDto(
+        @NotEmpty(message = "Paczka musi zawierać co najmniej jedną pozycję")
+        @Size(max = 100, message = "Paczka może zawierać najwyżej 100 pozycji")
+        List<@Valid @NotNull(message = "Pozycja paczki nie może być pusta") LoanCreateDto> items
+) {}
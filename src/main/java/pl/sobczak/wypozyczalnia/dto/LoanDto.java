@@ -0,0 +1,27 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.Loan;
+import pl.sobczak.wypozyczalnia.model.LoanStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Wypożyczenie w odpowiedziach API – płasko, z tym co widać na liście (nazwa sprzętu, login),
+ * zamiast całych encji Device i User. Listy budują go wprost w JPQL (LoanRepository.findDtos*).
+ */
+public record LoanDto(Long id,
+                      Long deviceId, String deviceName, String deviceSerialNumber,
+                      Long userId, String username,
+                      LocalDate startDate, LocalDate dueDate, LocalDate returnDate,
+                      LoanStatus status, String returnNote, Boolean damageReported) {
+
+    public static LoanDto of(Loan l) {
+        var d = l.getDevice();
+        var u = l.getUser();
+        return new LoanDto(l.getId(),
+                d.getId(), d.getName(), d.getSerialNumber(),
+                u.getId(), u.getUsername(),
+                l.getStartDate(), l.getDueDate(), l.getReturnDate(),
+                l.getStatus(), l.getReturnNote(), l.getDamageReported());
+    }
+}
@@ -0,0 +1,14 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.time.LocalDate;
+
+/** Płaski wiersz pod przypomnienie o zwrocie – bez ładowania encji Loan/User/Device */
+public record LoanReminderDto(
+        Long loanId,
+        LocalDate dueDate,
+        String email,
+        String username,
+        String deviceName,
+        String serialNumber,
+        String location
+) {}
@@ -0,0 +1,11 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+public record MailQueueStatsDto(
+        int inMemoryQueue,
+        long pending,
+        long failed,
+        long sentTotal,
+        long retriesTotal,
+        long avgLatencyMs,
+        long maxLatencyMs
+) {}
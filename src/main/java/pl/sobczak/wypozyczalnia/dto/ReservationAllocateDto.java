@@ -0,0 +1,21 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import jakarta.validation.constraints.*;
+import java.time.LocalDate;
+
+/** Rezerwacja dowolnego wolnego egzemplarza: typ (i opcjonalnie lokalizacja) zamiast konkretnego urządzenia */
+public record ReservationAllocateDto(
+        @NotBlank(message = "Typ urządzenia jest wymagany")
+        String type,
+
+        String location,
+
+        @NotNull(message = "Identyfikator użytkownika jest wymagany")
+        Long userId,
+
+        @NotNull(message = "Data od jest wymagana")
+        LocalDate fromDate,
+
+        @NotNull(message = "Data do jest wymagana")
+        LocalDate toDate
+) {}
@@ -0,0 +1,21 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.model.ReservationStatus;
+
+import java.time.LocalDate;
+
+/** Rezerwacja w odpowiedziach API – płasko, listy budują ją wprost w JPQL (ReservationRepository.findDtos*) */
+public record ReservationDto(Long id,
+                             Long deviceId, String deviceName,
+                             Long userId, String username,
+                             LocalDate fromDate, LocalDate toDate,
+                             ReservationStatus status) {
+
+    public static ReservationDto of(Reservation r) {
+        var d = r.getDevice();
+        var u = r.getUser();
+        return new ReservationDto(r.getId(), d.getId(), d.getName(), u.getId(), u.getUsername(),
+                r.getFromDate(), r.getToDate(), r.getStatus());
+    }
+}
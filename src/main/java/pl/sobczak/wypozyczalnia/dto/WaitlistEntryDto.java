@@ -0,0 +1,21 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import pl.sobczak.wypozyczalnia.model.WaitlistEntry;
+import pl.sobczak.wypozyczalnia.model.WaitlistStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/** Wpis listy oczekujących w odpowiedziach API; reservationId po przydziale */
+public record WaitlistEntryDto(Long id, Long userId,
+                               String type, String location,
+                               LocalDate fromDate, LocalDate toDate,
+                               WaitlistStatus status, Instant createdAt, Instant expiresAt,
+                               Long reservationId) {
+
+    public static WaitlistEntryDto of(WaitlistEntry e) {
+        return new WaitlistEntryDto(e.getId(), e.getUser().getId(), e.getType(), e.getLocation(),
+                e.getFromDate(), e.getToDate(), e.getStatus(), e.getCreatedAt(), e.getExpiresAt(),
+                e.getReservationId());
+    }
+}
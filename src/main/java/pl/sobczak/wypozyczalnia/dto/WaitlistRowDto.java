@@ -0,0 +1,9 @@
+package pl.sobczak.wypozyczalnia.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/** Oczekujący wpis listy z adresem użytkownika – do kolejki w pamięci i powiadomień (bez encji) */
+public record WaitlistRowDto(Long id, Long userId, String email, String username,
+                             String type, String location, LocalDate fromDate, LocalDate toDate,
+                             Instant createdAt, Instant expiresAt) {}
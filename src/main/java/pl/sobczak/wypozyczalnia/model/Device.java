@@ -1,22 +1,61 @@
 package pl.sobczak.wypozyczalnia.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 @Entity
+// cache drugiego poziomu (Caffeine, limity w hibernate-cache.conf); zapis przez Hibernate odświeża wpis po commicie
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "device")
+@NaturalIdCache(region = "device-by-serial")
 public class Device {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // sekwencja z pulą 50 id (V5) – import CSV wstawia urządzenia paczkami JDBC
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "device_seq")
+    @SequenceGenerator(name = "device_seq", sequenceName = "device_seq", allocationSize = 50)
     private Long id;
 
+    @Column(nullable = false)
     private String name;
+    @Column(nullable = false)
     private String type;
+    /** Numer seryjny nie zmienia się po dodaniu urządzenia – naturalny klucz (existsBySerialNumber z cache) */
+    @NaturalId
+    @Column(nullable = false)
     private String serialNumber;
+    @Column(nullable = false)
     private String location;
 
     //@Enumerated(EnumType.STRING)
     private DeviceStatus status = DeviceStatus.AVAILABLE; // domyślnie dostępny
 
+    /** Wersja do optymistycznego blokowania – każda rezerwacja/wypożyczenie ją podbija */
+    @JsonIgnore
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version = 0L;
+
+    /** Liczba rezerwacji i wypożyczeń (zużycie przy przydziale z puli), podbijana w ich transakcji */
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long bookingCount;
+
+    /** Nowa rezerwacja albo wypożyczenie tego urządzenia (w transakcji, która je zapisuje) */
+    public void recordBooking() {
+        bookingCount++;
+    }
+
+    public long getBookingCount() {
+        return bookingCount;
+    }
+
     // --- Gettery i settery ---
     public Long getId() {
         return id;
@@ -65,4 +104,8 @@ public class Device {
     public void setStatus(DeviceStatus status) {
         this.status = status;
     }
+
+    public Long getVersion() {
+        return version;
+    }
 }
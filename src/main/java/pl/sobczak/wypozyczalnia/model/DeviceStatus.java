@@ -11,6 +11,8 @@ public enum DeviceStatus {
     LOST("ZGUBIONY"),
     DAMAGED("USZKODZONY");
 
+    private static final EnumLabels<DeviceStatus> LABELS = EnumLabels.of(DeviceStatus.class, DeviceStatus::getPl);
+
     private final String pl;
 
     DeviceStatus(String pl) { this.pl = pl; }
@@ -23,14 +25,15 @@ public enum DeviceStatus {
     @JsonCreator
     public static DeviceStatus fromJson(String value) {
         if (value == null) return null;
-        String v = value.trim();
-        for (DeviceStatus s : values()) {
-            if (s.pl.equalsIgnoreCase(v) || s.name().equalsIgnoreCase(v)) {
-                return s;
-            }
-        }
+        DeviceStatus s = LABELS.parse(value);
+        if (s != null) return s;
         throw new IllegalArgumentException("Nieznany status: " + value);
     }
 
     public String getPl() { return pl; }
+
+    /** Serwis, zgubione, uszkodzone – nie przydzielamy automatycznie (ReservationService.allocate) */
+    public boolean isOutOfService() {
+        return this == MAINTENANCE || this == LOST || this == DAMAGED;
+    }
 }
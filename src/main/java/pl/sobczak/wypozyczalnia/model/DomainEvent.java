@@ -0,0 +1,78 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Zdarzenie domenowe w outboxie (domain_event) – zapisywane w tej samej transakcji co wypożyczenie/rezerwacja,
+ * przekazuje je słuchaczom DomainEventRelay. Bez relacji do encji: wiersz przeżywa zmiany i sprzątanie źródła.
+ */
+@Entity
+@Table(name = "domain_event")
+public class DomainEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "domain_event_seq")
+    @SequenceGenerator(name = "domain_event_seq", sequenceName = "domain_event_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private DomainEventType type;
+
+    /** Węzeł, który zapisał zdarzenie (SchedulerLeaseService.owner) – jego słuchacze dostają je bez odpytywania */
+    @Column(nullable = false)
+    private String origin;
+
+    /** Id wypożyczenia albo rezerwacji (dla DEVICE_CREATED – urządzenia) */
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false)
+    private Long deviceId;
+
+    /** Puste dla DEVICE_CREATED, podobnie jak termin */
+    private Long userId;
+
+    /** Termin wypożyczenia (start – termin zwrotu) albo rezerwacji */
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    /** Status urządzenia po zmianie */
+    private DeviceStatus deviceStatus;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // --- gettery i settery ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public DomainEventType getType() { return type; }
+    public void setType(DomainEventType type) { this.type = type; }
+
+    public String getOrigin() { return origin; }
+    public void setOrigin(String origin) { this.origin = origin; }
+
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+
+    public Long getDeviceId() { return deviceId; }
+    public void setDeviceId(Long deviceId) { this.deviceId = deviceId; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public LocalDate getFromDate() { return fromDate; }
+    public void setFromDate(LocalDate fromDate) { this.fromDate = fromDate; }
+
+    public LocalDate getToDate() { return toDate; }
+    public void setToDate(LocalDate toDate) { this.toDate = toDate; }
+
+    public DeviceStatus getDeviceStatus() { return deviceStatus; }
+    public void setDeviceStatus(DeviceStatus deviceStatus) { this.deviceStatus = deviceStatus; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
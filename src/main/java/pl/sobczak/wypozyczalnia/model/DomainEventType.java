@@ -0,0 +1,25 @@
+package pl.sobczak.wypozyczalnia.model;
+
+/** Rodzaj zdarzenia domenowego w domain_event (nazwy stałych w bazie) */
+public enum DomainEventType {
+    LOAN_CREATED,
+    LOAN_RETURNED,
+    RESERVATION_CREATED,
+    RESERVATION_CANCELED,
+    /** Nowe urządzenie (bez użytkownika i terminu) – dla indeksu wyszukiwania innych węzłów */
+    DEVICE_CREATED;
+
+    /** Zdarzenie dotyczy przedziału wypożyczenia/rezerwacji (ma użytkownika i termin) */
+    public boolean isInterval() {
+        return this != DEVICE_CREATED;
+    }
+
+    public boolean isReservation() {
+        return this == RESERVATION_CREATED || this == RESERVATION_CANCELED;
+    }
+
+    /** Przedział przestał zajmować urządzenie (zwrot, anulowanie) */
+    public boolean closesInterval() {
+        return this == LOAN_RETURNED || this == RESERVATION_CANCELED;
+    }
+}
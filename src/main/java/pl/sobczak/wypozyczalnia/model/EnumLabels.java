@@ -0,0 +1,44 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Słownik nazwa/etykieta PL -> stała enuma dla statusów przyjmowanych w JSON i parametrach.
+ * Budowany raz na enum; dokładny zapis trafia w mapę bez alokacji, inny (wielkość liter, spacje)
+ * jest raz ujednolicany i szukany w kluczach wielkimi literami.
+ */
+final class EnumLabels<E extends Enum<E>> {
+
+    private final Map<String, E> exact;
+    private final Map<String, E> folded;
+
+    private EnumLabels(Map<String, E> exact, Map<String, E> folded) {
+        this.exact = exact;
+        this.folded = folded;
+    }
+
+    static <E extends Enum<E>> EnumLabels<E> of(Class<E> type, Function<E, String> label) {
+        Map<String, E> exact = new HashMap<>();
+        Map<String, E> folded = new HashMap<>();
+        for (E e : type.getEnumConstants()) {
+            for (String key : new String[]{e.name(), label.apply(e)}) {
+                exact.put(key, e);
+                folded.put(fold(key), e);
+            }
+        }
+        return new EnumLabels<>(Map.copyOf(exact), Map.copyOf(folded));
+    }
+
+    /** Stała dla nazwy lub etykiety PL (bez względu na wielkość liter i spacje) albo null */
+    E parse(String value) {
+        E e = exact.get(value);
+        return e != null ? e : folded.get(fold(value.trim()));
+    }
+
+    private static String fold(String s) {
+        return s.toUpperCase(Locale.ROOT);
+    }
+}
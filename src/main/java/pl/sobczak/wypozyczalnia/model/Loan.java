@@ -7,7 +7,9 @@ import java.time.LocalDate;
 public class Loan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // sekwencja z pulą 50 id (V4) – inserty mogą iść paczkami JDBC, identity by to wyłączało
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -16,6 +18,8 @@ public class Loan {
     @ManyToOne(optional = false)
     private User user;
 
+    /** NOT NULL od V12 – klucz kursora historii urządzenia */
+    @Column(nullable = false)
     private LocalDate startDate;
     private LocalDate dueDate;
     private LocalDate returnDate;
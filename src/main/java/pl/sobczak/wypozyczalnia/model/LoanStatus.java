@@ -9,6 +9,8 @@ public enum LoanStatus {
     OVERDUE("PRZETERMINOWANE"),
     CANCELED("ANULOWANE");
 
+    private static final EnumLabels<LoanStatus> LABELS = EnumLabels.of(LoanStatus.class, LoanStatus::getPl);
+
     private final String pl;
 
     LoanStatus(String pl) { this.pl = pl; }
@@ -21,12 +23,8 @@ public enum LoanStatus {
     @JsonCreator
     public static LoanStatus fromJson(String value) {
         if (value == null) return null;
-        String v = value.trim();
-        for (LoanStatus s : values()) {
-            if (s.pl.equalsIgnoreCase(v) || s.name().equalsIgnoreCase(v)) {
-                return s;
-            }
-        }
+        LoanStatus s = LABELS.parse(value);
+        if (s != null) return s;
         throw new IllegalArgumentException("Nieznany status wypożyczenia: " + value);
     }
 
@@ -0,0 +1,85 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/** Trwała kolejka (outbox) poczty wychodzącej – przeżywa restart, wysyłkę robi MailDispatcher */
+@Entity
+@Table(name = "outbound_mail")
+public class OutboundMail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false, length = 1000)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String body;
+
+    private String replyTo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboundMailStatus status = OutboundMailStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    /** Najwcześniejsza kolejna próba; dla SENDING – do kiedy ważne jest przejęcie */
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    /** Token węzła/wątku, który przejął wiadomość do wysyłki */
+    @Column(length = 64)
+    private String claimToken;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant sentAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // --- gettery i settery ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public String getReplyTo() { return replyTo; }
+    public void setReplyTo(String replyTo) { this.replyTo = replyTo; }
+
+    public OutboundMailStatus getStatus() { return status; }
+    public void setStatus(OutboundMailStatus status) { this.status = status; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getClaimToken() { return claimToken; }
+    public void setClaimToken(String claimToken) { this.claimToken = claimToken; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getSentAt() { return sentAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
@@ -0,0 +1,9 @@
+package pl.sobczak.wypozyczalnia.model;
+
+/** Stan wiadomości w kolejce wychodzącej (wewnętrzny, nie trafia do JSON) */
+public enum OutboundMailStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,53 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/** Dziennik wysłanych przypomnień – para (wypożyczenie, dni przed terminem) tylko raz */
+@Entity
+@Table(name = "reminder_log",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reminder_log_loan_offset", columnNames = {"loan_id", "offset_days"}))
+public class ReminderLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "loan_id", nullable = false)
+    private Long loanId;
+
+    /** Ile dni przed terminem zwrotu (wg app.reminders.days-ahead) */
+    @Column(name = "offset_days", nullable = false)
+    private Integer offsetDays;
+
+    private LocalDate dueDate;
+
+    @Column(nullable = false)
+    private Instant sentAt;
+
+    public ReminderLog() {}
+
+    public ReminderLog(Long loanId, Integer offsetDays, LocalDate dueDate, Instant sentAt) {
+        this.loanId = loanId;
+        this.offsetDays = offsetDays;
+        this.dueDate = dueDate;
+        this.sentAt = sentAt;
+    }
+
+    // --- gettery i settery ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getLoanId() { return loanId; }
+    public void setLoanId(Long loanId) { this.loanId = loanId; }
+
+    public Integer getOffsetDays() { return offsetDays; }
+    public void setOffsetDays(Integer offsetDays) { this.offsetDays = offsetDays; }
+
+    public LocalDate getDueDate() { return dueDate; }
+    public void setDueDate(LocalDate dueDate) { this.dueDate = dueDate; }
+
+    public Instant getSentAt() { return sentAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+}
@@ -9,6 +9,8 @@ public enum ReservationStatus {
     EXPIRED("WYGASŁA"),
     FULFILLED("ZREALIZOWANA");
 
+    private static final EnumLabels<ReservationStatus> LABELS = EnumLabels.of(ReservationStatus.class, ReservationStatus::getPl);
+
     private final String pl;
 
     ReservationStatus(String pl) { this.pl = pl; }
@@ -19,10 +21,8 @@ public enum ReservationStatus {
     @JsonCreator
     public static ReservationStatus fromJson(String value) {
         if (value == null) return null;
-        String v = value.trim();
-        for (ReservationStatus s : values()) {
-            if (s.pl.equalsIgnoreCase(v) || s.name().equalsIgnoreCase(v)) return s;
-        }
+        ReservationStatus s = LABELS.parse(value);
+        if (s != null) return s;
         throw new IllegalArgumentException("Nieznany status rezerwacji: " + value);
     }
 
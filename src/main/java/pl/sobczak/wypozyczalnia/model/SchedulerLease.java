@@ -0,0 +1,44 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/** Dzierżawa zadania cyklicznego – w klastrze zadanie wykonuje tylko węzeł, który ją trzyma */
+@Entity
+@Table(name = "scheduler_lease")
+public class SchedulerLease {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private Instant lockedUntil;
+
+    /** Kiedy zadanie ostatnio zakończyło się sukcesem (do nadrabiania po przestoju) */
+    private Instant lastCompletedAt;
+
+    public SchedulerLease() {}
+
+    public SchedulerLease(String name, String owner, Instant lockedUntil) {
+        this.name = name;
+        this.owner = owner;
+        this.lockedUntil = lockedUntil;
+    }
+
+    // --- gettery i settery ---
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getOwner() { return owner; }
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public Instant getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(Instant lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public Instant getLastCompletedAt() { return lastCompletedAt; }
+    public void setLastCompletedAt(Instant lastCompletedAt) { this.lastCompletedAt = lastCompletedAt; }
+}
@@ -3,15 +3,25 @@ package pl.sobczak.wypozyczalnia.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import pl.sobczak.wypozyczalnia.security.UserCredentialsListener;
 
 @Entity
 @Table(name = "users") // Postgres: 'user' to słowo kluczowe – musi być w cudzysłowie
+@EntityListeners(UserCredentialsListener.class) // unieważnia cache poświadczeń przy zmianie hasła/roli
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@NaturalIdCache(region = "user-by-username")
 public class User {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /** Login nie zmienia się po rejestracji – naturalny klucz (findByUsername z cache) */
+    @NaturalId
     @Column(unique = true, nullable = false)
     private String username;
 
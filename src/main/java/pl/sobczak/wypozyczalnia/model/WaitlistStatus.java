@@ -0,0 +1,30 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum WaitlistStatus {
+    WAITING("OCZEKUJE"),
+    PROMOTED("PRZYDZIELONY"),
+    EXPIRED("WYGASŁY"),
+    CANCELED("ANULOWANY");
+
+    private static final EnumLabels<WaitlistStatus> LABELS = EnumLabels.of(WaitlistStatus.class, WaitlistStatus::getPl);
+
+    private final String pl;
+
+    WaitlistStatus(String pl) { this.pl = pl; }
+
+    @JsonValue
+    public String toJson() { return pl; }
+
+    @JsonCreator
+    public static WaitlistStatus fromJson(String value) {
+        if (value == null) return null;
+        WaitlistStatus s = LABELS.parse(value);
+        if (s != null) return s;
+        throw new IllegalArgumentException("Nieznany status wpisu listy oczekujących: " + value);
+    }
+
+    public String getPl() { return pl; }
+}
@@ -6,11 +6,50 @@ import jakarta.persistence.Converter;
 import pl.sobczak.wypozyczalnia.model.DeviceStatus;
 
 import java.text.Normalizer;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Status urządzenia w DB zapisywany jako nazwa stałej enuma (AVAILABLE, LOANED...).
+ * Odczyt przyjmuje też stare zapisy (DOSTĘPNY, Wypożyczony, serwis) – migracja V3 przepisuje je na nazwy stałych.
+ * Wołany dla każdego wczytanego wiersza, więc ścieżka dla nazw kanonicznych to jedno trafienie w gotową mapę, bez alokacji.
+ */
 @Converter(autoApply = true)
 public class DeviceStatusConverter implements AttributeConverter<DeviceStatus, String> {
 
+    /** Po normalizacji (wielkie litery, bez polskich znaków) -> stała enuma */
+    private static final Map<String, DeviceStatus> BY_NORMALIZED;
+
+    /** Limit zapamiętanych surowych zapisów spoza BY_NORMALIZED (różnice wielkości liter, spacje) */
+    private static final int LEGACY_CACHE_LIMIT = 256;
+
+    static {
+        Map<String, DeviceStatus> m = new HashMap<>();
+        for (DeviceStatus s : DeviceStatus.values()) {
+            m.put(s.name(), s);
+            m.put(normalize(s.getPl()), s);
+        }
+        // dawne nazwy spotykane w danych
+        m.put("SERVICE", DeviceStatus.MAINTENANCE);
+        m.put("IN_SERVICE", DeviceStatus.MAINTENANCE);
+        m.put("SERVICED", DeviceStatus.MAINTENANCE);
+        m.put("SERWISOWANY", DeviceStatus.MAINTENANCE);
+        m.put("ZNISZCZONY", DeviceStatus.DAMAGED);
+        BY_NORMALIZED = Map.copyOf(m);
+    }
+
+    // dokładne zapisy z DB: nazwy stałych i polskie etykiety z enuma; reszta dopisywana przy pierwszym odczycie
+    private static final Map<String, DeviceStatus> BY_RAW = new ConcurrentHashMap<>();
+
+    static {
+        for (DeviceStatus s : DeviceStatus.values()) {
+            BY_RAW.put(s.name(), s);
+            BY_RAW.put(s.getPl(), s);
+        }
+    }
+
     @Override
     public String convertToDatabaseColumn(DeviceStatus attribute) {
         return attribute == null ? null : attribute.name(); // zapisuj w DB nazwę stałej enuma
@@ -20,49 +59,20 @@ public class DeviceStatusConverter implements AttributeConverter<DeviceStatus, S
     public DeviceStatus convertToEntityAttribute(String dbData) {
         if (dbData == null) return null;
 
-        // Ujednolicenie (wielkość liter, usunięcie polskich znaków)
-        String s = normalize(dbData);
-
-        // Mapa PL/EN -> stałe enuma (pierwsze trzy wiemy, że istnieją)
-        if (s.equals("AVAILABLE") || s.equals("DOSTEPNY")) {
-            return DeviceStatus.valueOf("AVAILABLE");
-        }
-        if (s.equals("RESERVED") || s.equals("ZAREZERWOWANY")) {
-            return DeviceStatus.valueOf("RESERVED");
-        }
-        if (s.equals("LOANED") || s.equals("WYPOZYCZONY")) {
-            return DeviceStatus.valueOf("LOANED");
-        }
-
-        // SERWIS – spróbuj różnych możliwych nazw w Twoim enumie:
-        if (s.equals("SERVICE") || s.equals("SERWIS") || s.equals("SERWISOWANY")) {
-            return pickExisting("SERVICE", "IN_SERVICE", "SERVICED", "MAINTENANCE");
-        }
+        DeviceStatus status = BY_RAW.get(dbData);
+        if (status != null) return status;
 
-        // USZKODZONY
-        if (s.equals("DAMAGED") || s.equals("ZNISZCZONY")) {
-            return DeviceStatus.valueOf("DAMAGED");
-        }
-
-        // Spróbuj bez mapy – może i tak jest poprawna nazwa stałej
-        try {
-            return DeviceStatus.valueOf(s);
-        } catch (IllegalArgumentException e) {
+        status = BY_NORMALIZED.get(normalize(dbData));
+        if (status == null) {
             throw new IllegalArgumentException("Nieznany status w DB: " + dbData);
         }
+        if (BY_RAW.size() < LEGACY_CACHE_LIMIT) BY_RAW.put(dbData, status);
+        return status;
     }
 
     private static String normalize(String input) {
         String n = Normalizer.normalize(input, Normalizer.Form.NFD)
                 .replaceAll("\\p{M}+", ""); // usuń diakrytyki (Ę->E, Ż->Z)
-        return n.trim().toUpperCase();
-    }
-
-    private static DeviceStatus pickExisting(String... candidates) {
-        for (String c : candidates) {
-            try { return DeviceStatus.valueOf(c); }
-            catch (IllegalArgumentException ignored) {}
-        }
-        throw new IllegalArgumentException("Brak pasującej stałej enuma dla: " + Arrays.toString(candidates));
+        return n.trim().toUpperCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,7 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+/** Sprawdzenie numeru seryjnego przez natural id Hibernate – znane numery z cache drugiego poziomu */
+public interface DeviceNaturalIdRepository {
+
+    boolean existsBySerialNumber(String serialNumber);
+}
@@ -0,0 +1,19 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import pl.sobczak.wypozyczalnia.model.Device;
+
+class DeviceNaturalIdRepositoryImpl implements DeviceNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsBySerialNumber(String serialNumber) {
+        return em.unwrap(Session.class).bySimpleNaturalId(Device.class).loadOptional(serialNumber).isPresent();
+    }
+}
@@ -1,11 +1,95 @@
 package pl.sobczak.wypozyczalnia.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.dto.DeviceCountDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceSearchRowDto;
 import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface DeviceRepository
-        extends JpaRepository<Device, Long>, JpaSpecificationExecutor<Device> {
+        extends JpaRepository<Device, Long>, JpaSpecificationExecutor<Device>, DeviceNaturalIdRepository {
+
+    /** Odczyt pod rezerwację/wypożyczenie: commit podbija wersję, więc równoległa operacja na tym urządzeniu dostanie konflikt */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<Device> findForBookingById(Long id);
+
+    /** Jak findForBookingById, dla całej paczki jednym zapytaniem */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    List<Device> findForBookingByIdIn(Collection<Long> ids);
+
+    // 🔹 eksport (GET /api/devices/export): strumień po id z kursorem bazy (fetch size), wymaga otwartej transakcji
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceDto(d.id, d.name, d.type, d.serialNumber, d.location, d.status)
+        from Device d
+        where (:status is null or d.status = :status)
+        order by d.id
+    """)
+    Stream<DeviceDto> streamForExport(@Param("status") DeviceStatus status);
+
+    // 🔹 import CSV: które z numerów seryjnych porcji już są w bazie (jedno zapytanie na porcję zamiast existsBySerialNumber per wiersz)
+    @Query("select d.serialNumber from Device d where d.serialNumber in :serials")
+    List<String> findExistingSerialNumbers(@Param("serials") Collection<String> serials);
+
+    // 🔹 rozgrzewanie indeksu wyszukiwania (DeviceSearchIndex), porcjami po id
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceSearchRowDto(d.id, d.name, d.serialNumber, d.type, d.location, d.status)
+        from Device d
+        where d.id > :afterId
+        order by d.id
+    """)
+    List<DeviceSearchRowDto> findSearchRows(@Param("afterId") Long afterId, Limit limit);
+
+    // 🔹 urządzenia dodane na innych węzłach (zdarzenia DEVICE_CREATED) – do indeksu wyszukiwania
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceSearchRowDto(d.id, d.name, d.serialNumber, d.type, d.location, d.status)
+        from Device d
+        where d.id in :ids
+    """)
+    List<DeviceSearchRowDto> findSearchRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Rozgrzewanie DeviceAvailabilityIndex: wersja (do której indeks jest aktualny) i licznik zużycia (booking_count)
+     * w jednym odczycie. Urządzenia nigdy niezmieniane i nieużywane pomijamy.
+     */
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceCountDto(d.id, d.version, d.bookingCount)
+        from Device d
+        where d.version > 0 or d.bookingCount > 0
+    """)
+    List<DeviceCountDto> findBookingCounts();
 
-    boolean existsBySerialNumber(String serialNumber);
+    /**
+     * Sprzątanie terminów (ExpirySweeper): urządzenia RESERVED, którym nie została żadna aktywna rezerwacja, wracają
+     * do AVAILABLE. Podbija wersję – równoległa rezerwacja (OPTIMISTIC_FORCE_INCREMENT) dostanie konflikt i ponowi próbę.
+     */
+    @Modifying
+    @Query("""
+        update Device d
+        set d.status = :available, d.version = d.version + 1
+        where d.id in :ids
+          and d.status = :reserved
+          and not exists (select 1 from Reservation r
+                          where r.device = d
+                            and r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE)
+    """)
+    int releaseReserved(@Param("ids") Collection<Long> ids,
+                        @Param("reserved") DeviceStatus reserved,
+                        @Param("available") DeviceStatus available);
 }
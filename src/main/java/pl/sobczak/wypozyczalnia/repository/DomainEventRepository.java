@@ -0,0 +1,39 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.DomainEvent;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface DomainEventRepository extends JpaRepository<DomainEvent, Long> {
+
+    // 🔹 odpytywanie przez DomainEventRelay: zdarzenia po (createdAt, id), keyset po ix_domain_event_created
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DomainEventDto(
+            e.id, e.type, e.origin, e.aggregateId, e.deviceId, e.userId, e.fromDate, e.toDate, e.deviceStatus, e.createdAt)
+        from DomainEvent e
+        where e.createdAt > :createdAt or (e.createdAt = :createdAt and e.id > :afterId)
+        order by e.createdAt, e.id
+    """)
+    List<DomainEventDto> findAfter(@Param("createdAt") Instant createdAt, @Param("afterId") Long afterId, Limit limit);
+
+    // 🔹 zegar bazy dla created_at i okna odpytywania (zdarzenia, lista oczekujących) – jeden dla wszystkich węzłów, niezależnie od rozjazdu zegarów JVM;
+    //    clock_timestamp, nie now(): now() to początek transakcji, a długa transakcja zapisałaby created_at daleko przed commitem
+    @Query(value = "select clock_timestamp()", nativeQuery = true)
+    Instant databaseNow();
+
+    // 🔹 sprzątanie po czasie przechowywania (ExpirySweeper), porcjami
+    @Query("select e.id from DomainEvent e where e.createdAt < :before order by e.createdAt")
+    List<Long> findIdsCreatedBefore(@Param("before") Instant before, Limit limit);
+
+    @Modifying
+    @Query("delete from DomainEvent e where e.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
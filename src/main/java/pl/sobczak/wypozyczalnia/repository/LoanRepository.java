@@ -1,14 +1,25 @@
 package pl.sobczak.wypozyczalnia.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.dto.LoanDto;
+import pl.sobczak.wypozyczalnia.dto.LoanReminderDto;
 import pl.sobczak.wypozyczalnia.model.Loan;
 import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
@@ -16,7 +27,57 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
 
     List<Loan> findByDeviceIdAndStatus(Long deviceId, LoanStatus status);
 
-    Page<Loan> findByDeviceIdOrderByStartDateDesc(Long deviceId, Pageable pageable);
+    @Query("select l.device.id from Loan l where l.id = :id")
+    Optional<Long> findDeviceIdById(@Param("id") Long id);
+
+    // 🔹 historia urządzenia: płaskie DTO z jednego zapytania (bez encji Device/User per wiersz)
+    @Query(value = """
+        select new pl.sobczak.wypozyczalnia.dto.LoanDto(
+            l.id, d.id, d.name, d.serialNumber, u.id, u.username,
+            l.startDate, l.dueDate, l.returnDate, l.status, l.returnNote, l.damageReported)
+        from Loan l
+        join l.device d
+        join l.user u
+        where d.id = :deviceId
+        order by l.startDate desc, l.id desc
+    """, countQuery = "select count(l) from Loan l where l.device.id = :deviceId")
+    Page<LoanDto> findDtosByDeviceId(@Param("deviceId") Long deviceId, Pageable pageable);
+
+    // 🔹 to samo w trybie kursorowym: keyset po (startDate, id) malejąco
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.LoanDto(
+            l.id, d.id, d.name, d.serialNumber, u.id, u.username,
+            l.startDate, l.dueDate, l.returnDate, l.status, l.returnNote, l.damageReported)
+        from Loan l
+        join l.device d
+        join l.user u
+        where d.id = :deviceId
+          and (l.startDate < :startDate or (l.startDate = :startDate and l.id < :id))
+        order by l.startDate desc, l.id desc
+    """)
+    List<LoanDto> findDtosByDeviceIdAfter(@Param("deviceId") Long deviceId,
+                                          @Param("startDate") LocalDate startDate,
+                                          @Param("id") Long id,
+                                          Limit limit);
+
+    // 🔹 eksport (GET /api/loans/export): strumień po id z kursorem bazy (fetch size), wymaga otwartej transakcji
+    //    cast przy "is null" – inaczej PostgreSQL nie zna typu pustego parametru daty
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.LoanDto(
+            l.id, d.id, d.name, d.serialNumber, u.id, u.username,
+            l.startDate, l.dueDate, l.returnDate, l.status, l.returnNote, l.damageReported)
+        from Loan l
+        join l.device d
+        join l.user u
+        where (:deviceId is null or d.id = :deviceId)
+          and (cast(:from as LocalDate) is null or l.startDate >= :from)
+          and (cast(:to as LocalDate) is null or l.startDate <= :to)
+        order by l.id
+    """)
+    Stream<LoanDto> streamForExport(@Param("deviceId") Long deviceId,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to);
 
     @Query("""
         select (count(l) > 0) from Loan l
@@ -30,6 +91,61 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
                                         @Param("to") LocalDate to,
                                         @Param("active") LoanStatus active);
 
-    // 🔹 używane przez scheduler przypomnień
-    List<Loan> findByStatusAndReturnDateIsNullAndDueDate(LoanStatus status, LocalDate dueDate);
+    // 🔹 rozgrzewanie indeksu dostępności (DeviceAvailabilityIndex)
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(l.device.id, l.id, l.startDate, l.dueDate)
+        from Loan l
+        where l.status = :active
+    """)
+    List<DeviceIntervalDto> findActiveIntervals(@Param("active") LoanStatus active);
+
+    // 🔹 indeks dostępności: przedziały jednego urządzenia, gdy indeks jest nieaktualny dla jego wersji
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(l.device.id, l.id, l.startDate, l.dueDate)
+        from Loan l
+        where l.device.id = :deviceId
+          and l.status = :active
+    """)
+    List<DeviceIntervalDto> findActiveIntervalsByDeviceId(@Param("deviceId") Long deviceId,
+                                                          @Param("active") LoanStatus active);
+
+    // 🔹 scheduler przypomnień: jedno zapytanie na wszystkie terminy, porcjami po id (keyset)
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.LoanReminderDto(
+            l.id, l.dueDate, u.email, u.username, d.name, d.serialNumber, d.location)
+        from Loan l
+        join l.user u
+        join l.device d
+        where l.status = :status
+          and l.returnDate is null
+          and l.dueDate in :dates
+          and l.id > :afterId
+        order by l.id
+    """)
+    List<LoanReminderDto> findDueForReminder(@Param("status") LoanStatus status,
+                                             @Param("dates") Collection<LocalDate> dates,
+                                             @Param("afterId") Long afterId,
+                                             Limit limit);
+
+    // 🔹 sprzątanie terminów (ExpirySweeper): porcja niezwróconych po terminie, potem jeden UPDATE na porcję.
+    // Status jako literał, żeby PostgreSQL dopasował indeks częściowy ix_loan_active_due.
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(l.device.id, l.id, l.startDate, l.dueDate)
+        from Loan l
+        where l.status = pl.sobczak.wypozyczalnia.model.LoanStatus.ACTIVE
+          and l.returnDate is null
+          and l.dueDate < :today
+    """)
+    List<DeviceIntervalDto> findOverdueIntervals(@Param("today") LocalDate today, Limit limit);
+
+    @Modifying
+    @Query("""
+        update Loan l
+        set l.status = pl.sobczak.wypozyczalnia.model.LoanStatus.OVERDUE
+        where l.id in :ids
+          and l.status = pl.sobczak.wypozyczalnia.model.LoanStatus.ACTIVE
+          and l.returnDate is null
+          and l.dueDate < :today
+    """)
+    int markOverdue(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
 }
@@ -0,0 +1,47 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.model.OutboundMail;
+import pl.sobczak.wypozyczalnia.model.OutboundMailStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboundMailRepository extends JpaRepository<OutboundMail, Long> {
+
+    /** Do wysłania: oczekujące, którym minął czas ponowienia, oraz porzucone przejęcia (padnięty węzeł) */
+    @Query("""
+        select m.id from OutboundMail m
+        where m.status in (pl.sobczak.wypozyczalnia.model.OutboundMailStatus.PENDING,
+                           pl.sobczak.wypozyczalnia.model.OutboundMailStatus.SENDING)
+          and m.nextAttemptAt <= :now
+        order by m.id
+    """)
+    List<Long> findDueIds(@Param("now") Instant now, Limit limit);
+
+    /** Atomowe przejęcie porcji – wiersz przejmuje tylko jeden wątek/węzeł */
+    @Modifying
+    @Query("""
+        update OutboundMail m
+        set m.status = pl.sobczak.wypozyczalnia.model.OutboundMailStatus.SENDING,
+            m.claimToken = :token,
+            m.nextAttemptAt = :claimUntil
+        where m.id in :ids
+          and m.status in (pl.sobczak.wypozyczalnia.model.OutboundMailStatus.PENDING,
+                           pl.sobczak.wypozyczalnia.model.OutboundMailStatus.SENDING)
+          and m.nextAttemptAt <= :now
+    """)
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("now") Instant now,
+              @Param("claimUntil") Instant claimUntil);
+
+    List<OutboundMail> findByClaimTokenAndStatus(String claimToken, OutboundMailStatus status);
+
+    long countByStatus(OutboundMailStatus status);
+}
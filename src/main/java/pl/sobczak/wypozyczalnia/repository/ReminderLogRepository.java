@@ -0,0 +1,12 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import pl.sobczak.wypozyczalnia.model.ReminderLog;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ReminderLogRepository extends JpaRepository<ReminderLog, Long> {
+
+    List<ReminderLog> findByLoanIdIn(Collection<Long> loanIds);
+}
@@ -1,10 +1,14 @@
 package pl.sobczak.wypozyczalnia.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.dto.ReservationDto;
 import pl.sobczak.wypozyczalnia.model.Reservation;
 import pl.sobczak.wypozyczalnia.model.ReservationStatus;
 
@@ -21,7 +25,80 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
                                                @Param("from") java.time.LocalDate from,
                                                @Param("to") java.time.LocalDate to);
 
-    Page<Reservation> findByUserId(Long userId, Pageable pageable);
-    Page<Reservation> findByDeviceId(Long deviceId, Pageable pageable);
-    Page<Reservation> findByStatus(ReservationStatus status, Pageable pageable);
+    // rozgrzewanie indeksu dostępności (DeviceAvailabilityIndex)
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(r.device.id, r.id, r.fromDate, r.toDate)
+        from Reservation r
+        where r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE
+    """)
+    java.util.List<DeviceIntervalDto> findActiveIntervals();
+
+    // indeks dostępności: przedziały jednego urządzenia, gdy indeks jest nieaktualny dla jego wersji
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(r.device.id, r.id, r.fromDate, r.toDate)
+        from Reservation r
+        where r.device.id = :deviceId
+          and r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE
+    """)
+    java.util.List<DeviceIntervalDto> findActiveIntervalsByDeviceId(@Param("deviceId") Long deviceId);
+
+    @Query("select r.device.id from Reservation r where r.id = :id")
+    java.util.Optional<Long> findDeviceIdById(@Param("id") Long id);
+
+    // listy rezerwacji: płaskie DTO z jednego zapytania (bez encji Device/User per wiersz)
+    String DTO_SELECT = """
+        select new pl.sobczak.wypozyczalnia.dto.ReservationDto(
+            r.id, d.id, d.name, u.id, u.username, r.fromDate, r.toDate, r.status)
+        from Reservation r
+        join r.device d
+        join r.user u
+    """;
+
+    @Query(value = DTO_SELECT + " where u.id = :userId",
+           countQuery = "select count(r) from Reservation r where r.user.id = :userId")
+    Page<ReservationDto> findDtosByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(value = DTO_SELECT + " where d.id = :deviceId",
+           countQuery = "select count(r) from Reservation r where r.device.id = :deviceId")
+    Page<ReservationDto> findDtosByDeviceId(@Param("deviceId") Long deviceId, Pageable pageable);
+
+    @Query(value = DTO_SELECT + " where r.status = :status",
+           countQuery = "select count(r) from Reservation r where r.status = :status")
+    Page<ReservationDto> findDtosByStatus(@Param("status") ReservationStatus status, Pageable pageable);
+
+    @Query(value = DTO_SELECT, countQuery = "select count(r) from Reservation r")
+    Page<ReservationDto> findAllDtos(Pageable pageable);
+
+    // 🔹 sprzątanie terminów (ExpirySweeper): porcja aktywnych po dacie "do" (indeks ix_reservation_active_to_date)
+    @Query("""
+        select new pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto(r.device.id, r.id, r.fromDate, r.toDate)
+        from Reservation r
+        where r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE
+          and r.toDate < :today
+    """)
+    java.util.List<DeviceIntervalDto> findExpiredIntervals(@Param("today") java.time.LocalDate today, Limit limit);
+
+    /** Zrealizowane: ten sam użytkownik wypożyczył urządzenie w okresie rezerwacji */
+    @Modifying
+    @Query("""
+        update Reservation r
+        set r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.FULFILLED
+        where r.id in :ids
+          and r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE
+          and exists (select 1 from Loan l
+                      where l.device = r.device
+                        and l.user = r.user
+                        and l.startDate between r.fromDate and r.toDate)
+    """)
+    int markFulfilled(@Param("ids") java.util.Collection<Long> ids);
+
+    /** Pozostałe z porcji (bez wypożyczenia) – wygasłe */
+    @Modifying
+    @Query("""
+        update Reservation r
+        set r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.EXPIRED
+        where r.id in :ids
+          and r.status = pl.sobczak.wypozyczalnia.model.ReservationStatus.ACTIVE
+    """)
+    int markExpired(@Param("ids") java.util.Collection<Long> ids);
 }
@@ -0,0 +1,33 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.model.SchedulerLease;
+
+import java.time.Instant;
+
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLease, String> {
+
+    /** Przejęcie dzierżawy, jeśli wygasła albo już nasza; 1 = mamy ją */
+    @Modifying
+    @Query("""
+        update SchedulerLease l
+        set l.owner = :owner, l.lockedUntil = :until
+        where l.name = :name
+          and (l.lockedUntil < :now or l.owner = :owner)
+    """)
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") Instant now,
+                   @Param("until") Instant until);
+
+    @Modifying
+    @Query("update SchedulerLease l set l.lockedUntil = :now where l.name = :name and l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update SchedulerLease l set l.lastCompletedAt = :now where l.name = :name and l.owner = :owner")
+    int markCompleted(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+}
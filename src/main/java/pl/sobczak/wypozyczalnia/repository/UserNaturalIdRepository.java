@@ -0,0 +1,11 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import pl.sobczak.wypozyczalnia.model.User;
+
+import java.util.Optional;
+
+/** Odczyt użytkownika po loginie przez natural id Hibernate – trafia w cache drugiego poziomu zamiast w bazę */
+public interface UserNaturalIdRepository {
+
+    Optional<User> findByUsername(String username);
+}
@@ -0,0 +1,21 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import pl.sobczak.wypozyczalnia.model.User;
+
+import java.util.Optional;
+
+class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByUsername(String username) {
+        return em.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+    }
+}
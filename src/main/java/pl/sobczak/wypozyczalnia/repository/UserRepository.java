@@ -3,10 +3,8 @@ package pl.sobczak.wypozyczalnia.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import pl.sobczak.wypozyczalnia.model.User;
 
-import java.util.Optional;
-
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username); // ⬅️ potrzebne dla logowania
+// findByUsername (logowanie) – w UserNaturalIdRepository, przez cache drugiego poziomu
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
 }
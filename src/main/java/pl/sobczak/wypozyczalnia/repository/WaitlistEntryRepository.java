@@ -0,0 +1,59 @@
+package pl.sobczak.wypozyczalnia.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.sobczak.wypozyczalnia.dto.WaitlistRowDto;
+import pl.sobczak.wypozyczalnia.model.WaitlistEntry;
+import pl.sobczak.wypozyczalnia.model.WaitlistStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    // oczekujące wpisy jako płaskie DTO (kolejka w pamięci, powiadomienia o wygaśnięciu)
+    String ROW_SELECT = """
+        select new pl.sobczak.wypozyczalnia.dto.WaitlistRowDto(
+            e.id, u.id, u.email, u.username, e.type, e.location, e.fromDate, e.toDate, e.createdAt, e.expiresAt)
+        from WaitlistEntry e join e.user u
+        where e.status = pl.sobczak.wypozyczalnia.model.WaitlistStatus.WAITING
+        """;
+
+    // 🔹 rozgrzewanie kolejki, porcjami po id (keyset)
+    @Query(ROW_SELECT + " and e.id > :afterId order by e.id")
+    List<WaitlistRowDto> findWaitingRows(@Param("afterId") Long afterId, Limit limit);
+
+    // 🔹 wpisy dodane od ostatniego dopasowania (także na innych węzłach) – ix_waitlist_waiting_created
+    @Query(ROW_SELECT + " and e.createdAt >= :since")
+    List<WaitlistRowDto> findWaitingCreatedSince(@Param("since") Instant since);
+
+    // 🔹 sprzątanie terminów: wpisy po czasie życia – ix_waitlist_waiting_expires
+    @Query(ROW_SELECT + " and e.expiresAt <= :now order by e.id")
+    List<WaitlistRowDto> findExpiredRows(@Param("now") Instant now, Limit limit);
+
+    long countByUser_IdAndStatus(Long userId, WaitlistStatus status);
+
+    Page<WaitlistEntry> findByUser_Id(Long userId, Pageable pageable);
+
+    /** Przydział tylko wpisu, który nadal czeka (anulowany lub przydzielony na innym węźle → 0) */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        update WaitlistEntry e
+        set e.status = pl.sobczak.wypozyczalnia.model.WaitlistStatus.PROMOTED, e.reservationId = :reservationId
+        where e.id = :id and e.status = pl.sobczak.wypozyczalnia.model.WaitlistStatus.WAITING
+    """)
+    int markPromoted(@Param("id") Long id, @Param("reservationId") Long reservationId);
+
+    @Modifying
+    @Query("""
+        update WaitlistEntry e set e.status = :status
+        where e.id in :ids and e.status = pl.sobczak.wypozyczalnia.model.WaitlistStatus.WAITING
+    """)
+    int closeWaiting(@Param("ids") Collection<Long> ids, @Param("status") WaitlistStatus status);
+}
@@ -4,6 +4,8 @@ import org.springframework.data.jpa.domain.Specification;
 import pl.sobczak.wypozyczalnia.model.Device;
 import pl.sobczak.wypozyczalnia.model.DeviceStatus;
 
+import java.util.Collection;
+
 public class DeviceSpecifications {
 
     public static Specification<Device> hasStatus(DeviceStatus status) {
@@ -35,4 +37,9 @@ public class DeviceSpecifications {
             );
         };
     }
+
+    /** Zawężenie do id wyliczonych przez DeviceSearchIndex (pusta lista = brak wyników) */
+    public static Specification<Device> idIn(Collection<Long> ids) {
+        return (root, cq, cb) -> ids.isEmpty() ? cb.disjunction() : root.get("id").in(ids);
+    }
 }
@@ -0,0 +1,52 @@
+package pl.sobczak.wypozyczalnia.security;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Dekorator providera: trafienie w {@link CredentialCache} pomija zapytanie o użytkownika i BCrypt.
+ * Chybienie idzie do zwykłego providera, a sukces zapisujemy w cache (o ile w międzyczasie nikt nie zmienił konta).
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final CredentialCache cache;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CredentialCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+        String password = credentials.toString();
+
+        var cached = cache.get(username, password);
+        if (cached != null) {
+            var result = UsernamePasswordAuthenticationToken.authenticated(
+                    cached.principal(), null, cached.authorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        long generation = cache.generation();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            Long userId = (result.getPrincipal() instanceof CustomUserDetails cud) ? cud.getUserId() : null;
+            cache.put(username, password, userId, result.getPrincipal(), result.getAuthorities(), generation);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,143 @@
+package pl.sobczak.wypozyczalnia.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pamięć podręczna zweryfikowanych poświadczeń HTTP Basic.
+ * Kluczem jest solony skrót SHA-256 (sól losowana przy starcie), więc hasła nie leżą w pamięci jawnie.
+ * Wpisy wygasają po TTL, a przy przekroczeniu rozmiaru usuwany jest najdawniej używany.
+ * Logowanie, w trakcie którego unieważniono poświadczenia (generation), nie zapisuje wyniku –
+ * mogło przeczytać wiersz użytkownika sprzed zmiany.
+ */
+@Component
+public class CredentialCache {
+
+    /** Zweryfikowany użytkownik – to, czego potrzebujemy do odtworzenia Authentication bez BCrypt */
+    public record Entry(Long userId, Object principal, List<GrantedAuthority> authorities, Instant expiresAt) {}
+
+    private final byte[] salt = new byte[16];
+    private final Duration ttl;
+    private final int maxSize;
+    private final Clock clock;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /** Licznik unieważnień, zmieniany pod blokadą entries */
+    private long invalidations;
+
+    @Autowired
+    public CredentialCache(@Value("${app.security.auth-cache.ttl:PT5M}") Duration ttl,
+                           @Value("${app.security.auth-cache.max-size:10000}") int maxSize) {
+        this(ttl, maxSize, Clock.systemUTC());
+    }
+
+    CredentialCache(Duration ttl, int maxSize, Clock clock) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        new SecureRandom().nextBytes(salt);
+        // accessOrder = true -> LRU
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CredentialCache.this.maxSize;
+            }
+        };
+    }
+
+    /** Zwraca wpis dla pary login/hasło albo null (brak, wygasł lub cache wyłączony) */
+    public Entry get(String username, String password) {
+        if (maxSize <= 0) return null;
+        String key = digest(username, password);
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.expiresAt().isAfter(clock.instant())) {
+                hits.incrementAndGet();
+                return e;
+            }
+            if (e != null) entries.remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String username, String password, Long userId, Object principal,
+                    Collection<? extends GrantedAuthority> authorities) {
+        put(username, password, userId, principal, authorities, generation());
+    }
+
+    /** Zapis wyniku logowania rozpoczętego przy danej generacji; pomijany, gdy od tego czasu było unieważnienie */
+    public void put(String username, String password, Long userId, Object principal,
+                    Collection<? extends GrantedAuthority> authorities, long generation) {
+        if (maxSize <= 0) return;
+        var e = new Entry(userId, principal, List.copyOf(authorities), clock.instant().plus(ttl));
+        String key = digest(username, password);
+        synchronized (entries) {
+            if (generation != invalidations) return;
+            entries.put(key, e);
+        }
+    }
+
+    /** Generacja do przekazania w put – odczytana przed weryfikacją hasła w bazie */
+    public long generation() {
+        synchronized (entries) {
+            return invalidations;
+        }
+    }
+
+    /** Usuwa wszystkie wpisy danego użytkownika (zmiana hasła, roli, usunięcie konta) */
+    public void invalidateUser(Long userId) {
+        if (userId == null) return;
+        synchronized (entries) {
+            invalidations++;
+            entries.values().removeIf(e -> userId.equals(e.userId()));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private String digest(String username, String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            md.update(username.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0); // separator, żeby "ab"+"c" != "a"+"bc"
+            md.update(password.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Brak algorytmu SHA-256", e);
+        }
+    }
+}
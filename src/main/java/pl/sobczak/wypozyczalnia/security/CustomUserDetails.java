@@ -15,6 +15,8 @@ public class CustomUserDetails implements UserDetails {
 
     public CustomUserDetails(User user) { this.user = user; }
 
+    public Long getUserId() { return user.getId(); }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Collections.singleton(new SimpleGrantedAuthority(user.getRole()));
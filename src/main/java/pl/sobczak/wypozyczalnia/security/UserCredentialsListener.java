@@ -0,0 +1,38 @@
+package pl.sobczak.wypozyczalnia.security;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.sobczak.wypozyczalnia.model.User;
+
+/**
+ * Zmiana hasła/roli albo usunięcie konta unieważnia zapamiętane poświadczenia użytkownika – przy flushu
+ * i jeszcze raz po commicie: logowanie między flushem a commitem czyta stary wiersz (READ COMMITTED)
+ * i zapisałoby stare poświadczenia na cały TTL.
+ */
+@Component
+public class UserCredentialsListener {
+
+    private final CredentialCache credentialCache;
+
+    public UserCredentialsListener(CredentialCache credentialCache) {
+        this.credentialCache = credentialCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(User user) {
+        Long userId = user.getId();
+        credentialCache.invalidateUser(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    credentialCache.invalidateUser(userId);
+                }
+            });
+        }
+    }
+}
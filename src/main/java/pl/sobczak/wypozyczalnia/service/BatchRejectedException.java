@@ -0,0 +1,23 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Odrzucona operacja paczkowa – nic nie zostało zapisane.
+ * Niesie błędy per pozycja (indeks w paczce -> komunikat), żeby klient poprawił tylko wadliwe pozycje.
+ */
+public class BatchRejectedException extends IllegalStateException {
+
+    private final SortedMap<Integer, String> errors;
+
+    public BatchRejectedException(Map<Integer, String> errors, int size) {
+        super("Paczka odrzucona: błędne pozycje " + errors.size() + " z " + size);
+        this.errors = new TreeMap<>(errors);
+    }
+
+    public SortedMap<Integer, String> getErrors() {
+        return errors;
+    }
+}
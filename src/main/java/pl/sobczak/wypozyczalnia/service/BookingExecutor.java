@@ -0,0 +1,66 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Wykonuje operację na urządzeniu: blokada paska → transakcja → commit → zwolnienie blokady.
+ * Konflikt wersji urządzenia (inny węzeł zmienił je w międzyczasie) kończy się ponowieniem całej transakcji.
+ * Naruszenie ograniczenia kolizji terminów w bazie (V9) to ten sam błąd co kolizja wykryta przez indeks.
+ */
+@Component
+public class BookingExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingExecutor.class);
+
+    private final DeviceLocks locks;
+    private final TransactionTemplate tx;
+    private final int maxAttempts;
+
+    public BookingExecutor(DeviceLocks locks,
+                           TransactionTemplate tx,
+                           @Value("${app.booking.max-attempts:3}") int maxAttempts) {
+        this.locks = locks;
+        this.tx = tx;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public <T> T execute(Long deviceId, Supplier<T> work) {
+        return locks.withLock(deviceId, () -> inTransaction(work, deviceId));
+    }
+
+    /** Operacja paczkowa: blokady wszystkich urządzeń paczki, jedna transakcja na całość */
+    public <T> T executeAll(Collection<Long> deviceIds, Supplier<T> work) {
+        return locks.withLocks(deviceIds, () -> inTransaction(work, deviceIds));
+    }
+
+    private <T> T inTransaction(Supplier<T> work, Object devices) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(status -> work.get());
+            } catch (ConcurrencyFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    throw new IllegalStateException("Urządzenie zostało w międzyczasie zmienione, spróbuj ponownie");
+                }
+                log.debug("Konflikt wersji urządzenia {} (próba {}/{})", devices, attempt, maxAttempts);
+            } catch (DataIntegrityViolationException ex) {
+                String cause = String.valueOf(ex.getMostSpecificCause().getMessage());
+                if (cause.contains("ex_reservation_active_overlap")) {
+                    throw new IllegalStateException("Istnieje już rezerwacja na ten termin");
+                }
+                if (cause.contains("ex_loan_active_overlap")) {
+                    throw new IllegalStateException("W wybranym okresie sprzęt jest wypożyczony");
+                }
+                throw ex;
+            }
+        }
+    }
+}
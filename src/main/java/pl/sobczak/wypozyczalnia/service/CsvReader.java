@@ -0,0 +1,97 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strumieniowy odczyt CSV (RFC 4180 – ten sam format, który zapisuje ExportService.writeCsvLine):
+ * pola w cudzysłowach mogą zawierać przecinki, "" i znaki nowej linii. Pamięta tylko bieżący rekord.
+ * Nie jest wątkowo bezpieczny.
+ */
+final class CsvReader {
+
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+    private int pushedBack = -2;
+    private long line = 1;
+    private long recordLine;
+
+    /** Reader powinien być buforowany – czytamy po znaku */
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Kolejny rekord albo null na końcu danych; puste wiersze są pomijane. Niedomknięty cudzysłów -> IllegalStateException */
+    String[] next() throws IOException {
+        List<String> values = new ArrayList<>();
+        int c;
+        do {
+            recordLine = line;
+            c = read();
+            if (c == '\r' && peek() == '\n') c = read();
+            if (c == '\n') line++;
+        } while (c == '\n');
+        if (c == -1) return null;
+
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (boolean first = true; ; first = false) {
+            if (!first) c = read();
+            if (quoted) {
+                if (c == -1) throw new IllegalStateException("Niezamknięty cudzysłów – plik urwany w rekordzie");
+                if (c == '"') {
+                    if (peek() == '"') field.append((char) read());
+                    else quoted = false;
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+                quoted = wasQuoted = true;
+            } else if (c == ',') {
+                values.add(take());
+                wasQuoted = false;
+            } else if (c == '\r' && peek() == '\n') {
+                // CRLF – obsłużone przy '\n'
+            } else if (c == '\n' || c == -1) {
+                if (c == '\n') line++;
+                values.add(take());
+                return values.toArray(String[]::new);
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    /** Numer wiersza pliku, w którym zaczyna się ostatnio zwrócony rekord (od 1) */
+    long recordLine() {
+        return recordLine;
+    }
+
+    private String take() {
+        String s = field.toString();
+        field.setLength(0);
+        return s;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        unread(c);
+        return c;
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+}
@@ -0,0 +1,412 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.sobczak.wypozyczalnia.dto.DeviceCountDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.Loan;
+import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.ReservationRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Indeks zajętości urządzeń w pamięci: aktywne rezerwacje i wypożyczenia per urządzenie.
+ * Ładowany przy starcie, aktualizowany po commicie transakcji tworzącej/anulującej/zwracającej,
+ * a zmianami z innych węzłów – ze zdarzeń domenowych (DomainEventRelay).
+ * Dopóki nie jest gotowy, pytania o kolizję idą do bazy, a zmiany (po commicie i z innych węzłów) czekają
+ * w kolejce i są stosowane po załadowaniu – przedział zamknięty między zapytaniem rozgrzewającym a końcem
+ * rozgrzewania nie zostaje w indeksie.
+ * Dla rezerwacji baza pozostaje ostatecznym źródłem prawdy: indeks pamięta wersję urządzenia, do której jest
+ * aktualny (każda rezerwacja i wypożyczenie ją podbija). Gdy urządzenie wczytane pod rezerwację ma inną wersję
+ * (zmiana z innego węzła, której zdarzenie jeszcze nie doszło), przedziały urządzenia są czytane z bazy od nowa.
+ * Ostatni bezpiecznik to ograniczenia EXCLUDE na aktywnych rezerwacjach i wypożyczeniach (V9).
+ * Dla kalendarza (GET /api/devices/{id}/availability) każde urządzenie ma też mapę bitową zajętych dni
+ * od dziś na CALENDAR_DAYS dni naprzód: nowy przedział dopisuje bity, zamknięty przelicza mapę z przedziałów
+ * urządzenia, a po północy mapa przelicza się przy pierwszym odczycie.
+ * Licznik rezerwacji i wypożyczeń urządzenia (zużycie) pozwala przydziałowi z puli wybierać najmniej używane egzemplarze.
+ */
+@Component
+public class DeviceAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceAvailabilityIndex.class);
+
+    /** Długość okna kalendarza w dniach (od dziś) */
+    public static final int CALENDAR_DAYS = 365;
+
+    /** Zajęte dni okna [start, start + CALENDAR_DAYS) – niezmienna, podmieniana w całości */
+    private record DayBitmap(long start, BitSet busy) {}
+
+    private static final class DeviceIntervals {
+        final IntervalSet reservations = new IntervalSet();
+        final IntervalSet loans = new IntervalSet();
+        volatile DayBitmap days;
+        /** Device.bookingCount z bazy przy rozgrzewaniu/odświeżeniu/własnym commicie; między nimi +1 za nowy przedział */
+        volatile long bookings;
+        /** Wersja urządzenia, do której indeks zawiera wszystkie zatwierdzone przedziały (brak wpisu = 0) */
+        volatile long version;
+    }
+
+    private final ReservationRepository reservationRepo;
+    private final LoanRepository loanRepo;
+    private final DeviceRepository deviceRepo;
+    private final ConcurrentHashMap<Long, DeviceIntervals> byDevice = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    /** Zmiany czekające na koniec rozgrzewania (null po rozgrzaniu); pod blokadą this */
+    private List<Runnable> pending = new ArrayList<>();
+
+    public DeviceAvailabilityIndex(ReservationRepository reservationRepo, LoanRepository loanRepo,
+                                   DeviceRepository deviceRepo) {
+        this.reservationRepo = reservationRepo;
+        this.loanRepo = loanRepo;
+        this.deviceRepo = deviceRepo;
+    }
+
+    /**
+     * Rozgrzanie indeksu – jedno zapytanie na wersje i liczniki zużycia urządzeń, jedno na rezerwacje i jedno
+     * na wypożyczenia. Wersje najpierw: rezerwacja zatwierdzona po ich odczycie podbije wersję ponad zapamiętaną.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        for (DeviceCountDto c : deviceRepo.findBookingCounts()) {
+            var iv = intervals(c.deviceId());
+            iv.bookings = c.bookings();
+            iv.version = c.version();
+        }
+        var reservations = reservationRepo.findActiveIntervals();
+        var loans = loanRepo.findActiveIntervals(LoanStatus.ACTIVE);
+        for (DeviceIntervalDto r : reservations) {
+            intervals(r.deviceId()).reservations.add(r.id(), r.from().toEpochDay(), r.to().toEpochDay());
+        }
+        for (DeviceIntervalDto l : loans) {
+            intervals(l.deviceId()).loans.add(l.id(), l.from().toEpochDay(), l.to().toEpochDay());
+        }
+        int replayed;
+        synchronized (this) {
+            // zmiany zatwierdzone w trakcie zapytań – dodanie jest idempotentne, zamknięcie usuwa załadowany przedział
+            replayed = pending.size();
+            pending.forEach(Runnable::run);
+            pending = null;
+            long today = LocalDate.now().toEpochDay();
+            byDevice.values().forEach(iv -> days(iv, today));
+            ready = true;
+        }
+        log.info("Indeks dostępności gotowy: {} rezerwacji, {} wypożyczeń, {} urządzeń, {} zmian z rozgrzewania ({} ms)",
+                reservations.size(), loans.size(), byDevice.size(), replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Kolizja z aktywną rezerwacją przy rezerwacji urządzenia wczytanego pod blokadą (findForBookingById):
+     * indeks nieaktualny dla wersji urządzenia najpierw wczytuje przedziały urządzenia z bazy.
+     */
+    public boolean hasReservationOverlap(Device device, LocalDate from, LocalDate to) {
+        if (!ready) return reservationRepo.existsActiveReservationOverlapping(device.getId(), from, to);
+        var iv = current(device);
+        return iv != null && iv.reservations.overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /** Kolizja z aktywnym wypożyczeniem – jak hasReservationOverlap(Device, ...) */
+    public boolean hasLoanOverlap(Device device, LocalDate from, LocalDate to) {
+        if (!ready) return loanRepo.existsActiveLoanOverlapping(device.getId(), from, to, LoanStatus.ACTIVE);
+        var iv = current(device);
+        return iv != null && iv.loans.overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /** Przedziały urządzenia aktualne dla jego wersji; przy innej wersji – od nowa z bazy */
+    private DeviceIntervals current(Device device) {
+        var iv = byDevice.get(device.getId());
+        long known = iv == null ? 0 : iv.version;
+        if (device.getVersion() == null || device.getVersion() == known) return iv;
+        return refresh(device);
+    }
+
+    /**
+     * Przedziały i licznik zużycia urządzenia z bazy, zapamiętane jako aktualne dla wersji. Wersję odczytano
+     * przed zapytaniami, więc zmiana zatwierdzona w międzyczasie podbije ją i następne sprawdzenie znów pójdzie do bazy.
+     */
+    private DeviceIntervals refresh(Device device) {
+        Long deviceId = device.getId();
+        long version = device.getVersion();
+        var reservations = reservationRepo.findActiveIntervalsByDeviceId(deviceId);
+        var loans = loanRepo.findActiveIntervalsByDeviceId(deviceId, LoanStatus.ACTIVE);
+        var iv = intervals(deviceId);
+        synchronized (iv) {
+            iv.reservations.clear();
+            iv.loans.clear();
+            reservations.forEach(r -> iv.reservations.add(r.id(), r.from().toEpochDay(), r.to().toEpochDay()));
+            loans.forEach(l -> iv.loans.add(l.id(), l.from().toEpochDay(), l.to().toEpochDay()));
+            iv.version = version;
+            iv.bookings = device.getBookingCount();
+            var d = iv.days;
+            if (d != null) iv.days = bitmap(iv, d.start());
+        }
+        log.debug("Indeks dostępności: urządzenie {} wczytane z bazy dla wersji {}", deviceId, version);
+        return iv;
+    }
+
+    /** Kolizja z aktywną rezerwacją (odpowiednik ReservationRepository.existsActiveReservationOverlapping) */
+    public boolean hasReservationOverlap(Long deviceId, LocalDate from, LocalDate to) {
+        if (!ready) return reservationRepo.existsActiveReservationOverlapping(deviceId, from, to);
+        var iv = byDevice.get(deviceId);
+        return iv != null && iv.reservations.overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /** Kolizja z aktywnym wypożyczeniem (odpowiednik LoanRepository.existsActiveLoanOverlapping) */
+    public boolean hasLoanOverlap(Long deviceId, LocalDate from, LocalDate to) {
+        if (!ready) return loanRepo.existsActiveLoanOverlapping(deviceId, from, to, LoanStatus.ACTIVE);
+        var iv = byDevice.get(deviceId);
+        return iv != null && iv.loans.overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // --- kalendarz ---
+
+    /**
+     * Dni zajęte rezerwacją lub wypożyczeniem w [from, to] dla każdego z urządzeń (bit 0 = from), w kolejności ids.
+     * Zakres musi mieścić się w oknie kalendarza; bez zapytań do bazy.
+     */
+    public Map<Long, BitSet> busyDays(Collection<Long> deviceIds, LocalDate from, LocalDate to) {
+        if (!ready) throw new IllegalStateException("Kalendarz dostępności jest jeszcze ładowany, spróbuj za chwilę");
+        long today = LocalDate.now().toEpochDay();
+        long last = today + CALENDAR_DAYS - 1;
+        if (from.isAfter(to)) throw new IllegalStateException("Data 'od' nie może być po dacie 'do'");
+        if (from.toEpochDay() < today || to.toEpochDay() > last) {
+            throw new IllegalStateException("Kalendarz obejmuje dni od " + LocalDate.ofEpochDay(today)
+                    + " do " + LocalDate.ofEpochDay(last));
+        }
+        int fromBit = (int) (from.toEpochDay() - today);
+        int toBit = (int) (to.toEpochDay() - today) + 1;
+        Map<Long, BitSet> result = new LinkedHashMap<>();
+        for (Long id : deviceIds) {
+            var iv = byDevice.get(id);
+            result.put(id, iv == null ? new BitSet() : days(iv, today).busy().get(fromBit, toBit));
+        }
+        return result;
+    }
+
+    /**
+     * Przydział z puli: do limit urządzeń wolnych w całym [from, to], od najmniej zużytego
+     * (liczba rezerwacji i wypożyczeń, potem liczba zajętych dni w oknie kalendarza, potem id).
+     * Bez zapytań do bazy; ostateczną kolizję i tak sprawdza rezerwacja pod blokadą urządzenia.
+     * skip – urządzenia już sprawdzone albo właśnie przydzielane równolegle.
+     */
+    public List<Long> leastUsedFree(long[] deviceIds, LocalDate from, LocalDate to, int limit, LongPredicate skip) {
+        if (!ready) throw new IllegalStateException("Indeks dostępności jest jeszcze ładowany, spróbuj za chwilę");
+        long today = LocalDate.now().toEpochDay();
+        long f = from.toEpochDay(), t = to.toEpochDay();
+        boolean inWindow = f >= today && t < today + CALENDAR_DAYS;
+
+        // max-kopiec po (zużycie, zajęte dni, id) – zostaje limit najlepszych
+        PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1, Comparator.<long[]>comparingLong(a -> a[0])
+                .thenComparingLong(a -> a[1]).thenComparingLong(a -> a[2]).reversed());
+        for (long id : deviceIds) {
+            if (skip.test(id)) continue;
+            var iv = byDevice.get(id);
+            long bookings = 0, busyDays = 0;
+            if (iv != null) {
+                var d = days(iv, today);
+                if (inWindow) {
+                    int next = d.busy().nextSetBit((int) (f - today));
+                    if (next >= 0 && next <= t - today) continue;
+                } else if (iv.reservations.overlaps(f, t) || iv.loans.overlaps(f, t)) {
+                    continue;
+                }
+                bookings = iv.bookings;
+                busyDays = d.busy().cardinality();
+            }
+            best.add(new long[]{bookings, busyDays, id});
+            if (best.size() > limit) best.poll();
+        }
+        Long[] ids = new Long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) ids[i] = best.poll()[2];
+        return List.of(ids);
+    }
+
+    /** Mapa bitowa urządzenia na dzień today; po zmianie dnia liczona od nowa z przedziałów */
+    private static DayBitmap days(DeviceIntervals iv, long today) {
+        var d = iv.days;
+        if (d != null && d.start() == today) return d;
+        synchronized (iv) {
+            d = iv.days;
+            if (d == null || d.start() != today) {
+                d = bitmap(iv, today);
+                iv.days = d;
+            }
+            return d;
+        }
+    }
+
+    private static DayBitmap bitmap(DeviceIntervals iv, long start) {
+        var busy = new BitSet(CALENDAR_DAYS);
+        iv.reservations.markBusy(start, start + CALENDAR_DAYS - 1, busy);
+        iv.loans.markBusy(start, start + CALENDAR_DAYS - 1, busy);
+        return new DayBitmap(start, busy);
+    }
+
+    // --- synchronizacja (wywoływane w transakcji, stosowane po commicie) ---
+
+    public void reservationCreated(Reservation r) {
+        Device device = r.getDevice();
+        long before = version(device);
+        Long id = r.getId();
+        long from = r.getFromDate().toEpochDay();
+        long to = r.getToDate().toEpochDay();
+        AfterCommit.run(() -> apply(() -> {
+            added(device.getId(), iv -> iv.reservations.add(id, from, to), from, to);
+            committed(device, before);
+        }));
+    }
+
+    public void reservationClosed(Reservation r) {
+        Device device = r.getDevice();
+        long before = version(device);
+        Long id = r.getId();
+        AfterCommit.run(() -> apply(() -> {
+            removed(device.getId(), iv -> iv.reservations.remove(id));
+            committed(device, before);
+        }));
+    }
+
+    public void loanCreated(Loan l) {
+        Device device = l.getDevice();
+        long before = version(device);
+        Long id = l.getId();
+        long from = l.getStartDate().toEpochDay();
+        long to = l.getDueDate().toEpochDay();
+        AfterCommit.run(() -> apply(() -> {
+            added(device.getId(), iv -> iv.loans.add(id, from, to), from, to);
+            committed(device, before);
+        }));
+    }
+
+    public void loanClosed(Loan l) {
+        Device device = l.getDevice();
+        long before = version(device);
+        Long id = l.getId();
+        AfterCommit.run(() -> apply(() -> {
+            removed(device.getId(), iv -> iv.loans.remove(id));
+            committed(device, before);
+        }));
+    }
+
+    private static long version(Device device) {
+        return device.getVersion() != null ? device.getVersion() : 0;
+    }
+
+    /**
+     * Po commicie zmiany na urządzeniu (pod jego blokadą): jeśli indeks był aktualny dla wersji sprzed transakcji,
+     * jest aktualny i dla wersji po niej (commit sprawdził, że nikt inny jej nie zmienił) – licznik zużycia też
+     * jest wtedy dokładnie ten zatwierdzony. Inaczej zostaje nieaktualny i następna rezerwacja wczyta urządzenie z bazy.
+     */
+    private void committed(Device device, long before) {
+        long after = version(device);
+        if (after == before) return;
+        var iv = intervals(device.getId());
+        synchronized (iv) {
+            if (iv.version == before) {
+                iv.version = after;
+                iv.bookings = device.getBookingCount();
+            }
+        }
+    }
+
+    /** Rezerwacje zamknięte hurtowo (ExpirySweeper) */
+    public void reservationsClosed(List<DeviceIntervalDto> rows) {
+        AfterCommit.run(() -> apply(() -> rows.forEach(r -> removed(r.deviceId(), iv -> iv.reservations.remove(r.id())))));
+    }
+
+    /** Wypożyczenia po terminie (ExpirySweeper) – ich przedział jest już w przeszłości */
+    public void loansClosed(List<DeviceIntervalDto> rows) {
+        AfterCommit.run(() -> apply(() -> rows.forEach(l -> removed(l.deviceId(), iv -> iv.loans.remove(l.id())))));
+    }
+
+    /**
+     * Zmiany zatwierdzone na innych węzłach (DomainEventRelay); zdarzenia tego węzła są już zastosowane po commicie.
+     * W trakcie rozgrzewania czekają w kolejce jak zmiany lokalne.
+     */
+    @EventListener
+    public void onDomainEvents(DomainEventBatch batch) {
+        if (batch.local()) return;
+        apply(() -> applyRemote(batch.events()));
+    }
+
+    private void applyRemote(List<DomainEventDto> events) {
+        for (DomainEventDto e : events) {
+            if (!e.type().isInterval()) continue;
+            long from = e.fromDate().toEpochDay(), to = e.toDate().toEpochDay();
+            Long id = e.aggregateId();
+            switch (e.type()) {
+                case RESERVATION_CREATED -> added(e.deviceId(), iv -> iv.reservations.add(id, from, to), from, to);
+                case RESERVATION_CANCELED -> removed(e.deviceId(), iv -> iv.reservations.remove(id));
+                case LOAN_CREATED -> added(e.deviceId(), iv -> iv.loans.add(id, from, to), from, to);
+                case LOAN_RETURNED -> removed(e.deviceId(), iv -> iv.loans.remove(id));
+            }
+        }
+    }
+
+    /** Zmiana od razu albo – przed końcem rozgrzewania – do kolejki */
+    private void apply(Runnable change) {
+        if (!ready) {
+            synchronized (this) {
+                if (pending != null) {
+                    pending.add(change);
+                    return;
+                }
+            }
+        }
+        change.run();
+    }
+
+    /** Nowy przedział: licznik zużycia +1 (jak booking_count w jego transakcji), dopisanie bitów do kopii mapy (czytelnicy widzą starą albo nową, nigdy w połowie) */
+    private void added(Long deviceId, Consumer<DeviceIntervals> change, long from, long to) {
+        var iv = intervals(deviceId);
+        synchronized (iv) {
+            change.accept(iv);
+            iv.bookings++;
+            var d = iv.days;
+            if (d == null) return; // policzy się przy pierwszym odczycie
+            long end = d.start() + CALENDAR_DAYS - 1;
+            if (to < d.start() || from > end) return;
+            var busy = (BitSet) d.busy().clone();
+            busy.set((int) (Math.max(from, d.start()) - d.start()), (int) (Math.min(to, end) - d.start()) + 1);
+            iv.days = new DayBitmap(d.start(), busy);
+        }
+    }
+
+    /** Zamknięty przedział: bity mogą należeć też do innego (np. wypożyczenie w okresie rezerwacji), więc przeliczenie */
+    private void removed(Long deviceId, Consumer<DeviceIntervals> change) {
+        var iv = intervals(deviceId);
+        synchronized (iv) {
+            change.accept(iv);
+            var d = iv.days;
+            if (d != null) iv.days = bitmap(iv, d.start());
+        }
+    }
+
+    private DeviceIntervals intervals(Long deviceId) {
+        return byDevice.computeIfAbsent(deviceId, k -> new DeviceIntervals());
+    }
+}
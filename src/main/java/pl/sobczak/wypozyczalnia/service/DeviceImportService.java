@@ -0,0 +1,214 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DeviceImportResultDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceImportResultDto.RowError;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import urządzeń z CSV (nagłówek: name,type,serialNumber,location[,status]; inne kolumny, np. id z eksportu, są pomijane).
+ * Plik czytany strumieniowo porcjami: walidacja wierszy, jedno zapytanie o istniejące numery seryjne na porcję
+ * i zapis porcji w osobnej transakcji (inserty paczkami JDBC). Błędne wiersze trafiają do raportu, reszta się zapisuje.
+ */
+@Service
+public class DeviceImportService {
+
+    static final int CHUNK = 1000;
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_LENGTH = 255; // varchar(255) w tabeli device
+
+    private final DeviceRepository deviceRepository;
+    private final DeviceSearchIndex searchIndex;
+    private final DomainEventOutbox domainEvents;
+    private final EntityManager entityManager;
+    private final TransactionTemplate tx;
+
+    public DeviceImportService(DeviceRepository deviceRepository, DeviceSearchIndex searchIndex,
+                               DomainEventOutbox domainEvents, EntityManager entityManager, PlatformTransactionManager txManager) {
+        this.deviceRepository = deviceRepository;
+        this.searchIndex = searchIndex;
+        this.domainEvents = domainEvents;
+        this.entityManager = entityManager;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    /** Wiersz po walidacji, czekający na zapis porcji */
+    private record Row(long line, Device device) {}
+
+    /** Zbiera wynik importu; błędy ponad limit tylko liczy */
+    private static final class Report {
+        long imported;
+        long rejected;
+        final List<RowError> errors = new ArrayList<>();
+
+        void reject(long line, String serialNumber, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new RowError(line, serialNumber, message));
+        }
+
+        DeviceImportResultDto toDto() {
+            return new DeviceImportResultDto(imported, rejected, errors, rejected > errors.size());
+        }
+    }
+
+    public DeviceImportResultDto importCsv(InputStream in) throws IOException {
+        var csv = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024));
+        String[] header = csv.next();
+        if (header == null) throw new IllegalStateException("Pusty plik – brak nagłówka CSV");
+        Columns columns = Columns.of(header);
+
+        var report = new Report();
+        Set<String> seenSerials = new HashSet<>(); // duplikaty w obrębie pliku
+        List<Row> chunk = new ArrayList<>(CHUNK);
+        while (true) {
+            String[] values;
+            try {
+                values = csv.next();
+            } catch (IllegalStateException e) {
+                report.reject(csv.recordLine(), null, e.getMessage());
+                break;
+            }
+            if (values == null) break;
+            long line = csv.recordLine();
+            try {
+                Device d = columns.toDevice(values);
+                if (!seenSerials.add(d.getSerialNumber())) {
+                    throw new IllegalStateException("Numer seryjny powtarza się w pliku");
+                }
+                chunk.add(new Row(line, d));
+            } catch (IllegalStateException e) {
+                report.reject(line, columns.serialNumber(values), e.getMessage());
+            }
+            if (chunk.size() == CHUNK) {
+                saveChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) saveChunk(chunk, report);
+        return report.toDto();
+    }
+
+    /**
+     * Porcja: odsianie numerów już obecnych w bazie i zapis reszty.
+     * Jeśli między sprawdzeniem a zapisem ktoś równolegle doda ten sam numer, unikalny indeks odrzuci porcję –
+     * wtedy sprawdzamy jeszcze raz i zapisujemy bez kolizji (drugi konflikt przerywa import jak każdy inny 409).
+     */
+    private void saveChunk(List<Row> chunk, Report report) {
+        for (int attempt = 1; ; attempt++) {
+            List<Row> fresh = withoutExisting(chunk, report);
+            if (fresh.isEmpty()) return;
+            try {
+                // saveAll zwraca zarządzane kopie (z id) – wiersze porcji zostają nietknięte na wypadek ponowienia
+                tx.executeWithoutResult(status -> {
+                    // cała porcja jedną paczką JDBC (globalnie hibernate.jdbc.batch_size=50)
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(CHUNK);
+                    List<Device> saved = deviceRepository.saveAll(fresh.stream().map(Row::device).toList());
+                    saved.forEach(searchIndex::deviceSaved);
+                    domainEvents.devicesCreated(saved);
+                });
+                report.imported += fresh.size();
+                // open-in-view trzyma jeden kontekst na całe żądanie – bez czyszczenia każdy flush
+                // przeglądałby wszystkie urządzenia zapisane wcześniejszymi porcjami
+                entityManager.clear();
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == 2) throw e;
+                chunk = fresh;
+            }
+        }
+    }
+
+    private List<Row> withoutExisting(List<Row> chunk, Report report) {
+        Set<String> existing = new HashSet<>(deviceRepository.findExistingSerialNumbers(
+                chunk.stream().map(r -> r.device().getSerialNumber()).toList()));
+        if (existing.isEmpty()) return chunk;
+        List<Row> fresh = new ArrayList<>(chunk.size());
+        for (Row r : chunk) {
+            if (existing.contains(r.device().getSerialNumber())) {
+                report.reject(r.line(), r.device().getSerialNumber(), "Urządzenie o podanym numerze seryjnym już istnieje");
+            } else {
+                fresh.add(r);
+            }
+        }
+        return fresh;
+    }
+
+    /** Położenie kolumn według nagłówka (bez wielkości liter) */
+    record Columns(int name, int type, int serialNumber, int location, int status) {
+
+        static Columns of(String[] header) {
+            Map<String, Integer> at = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                String h = header[i].strip();
+                if (i == 0 && h.startsWith("\uFEFF")) h = h.substring(1); // BOM z Excela
+                at.putIfAbsent(h.toLowerCase(Locale.ROOT), i);
+            }
+            List<String> missing = new ArrayList<>();
+            for (String required : List.of("name", "type", "serialNumber", "location")) {
+                if (!at.containsKey(required.toLowerCase(Locale.ROOT))) missing.add(required);
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("Brak kolumn w nagłówku CSV: " + String.join(", ", missing)
+                        + " (wymagane: name, type, serialNumber, location; opcjonalnie status)");
+            }
+            return new Columns(at.get("name"), at.get("type"), at.get("serialnumber"), at.get("location"),
+                    at.getOrDefault("status", -1));
+        }
+
+        /** Walidacja jak w DeviceCreateDto; błąd wiersza -> IllegalStateException z komunikatem do raportu */
+        Device toDevice(String[] values) {
+            Device d = new Device();
+            d.setName(required(values, name, "Nazwa urządzenia jest wymagana"));
+            d.setType(required(values, type, "Typ urządzenia jest wymagany"));
+            d.setSerialNumber(required(values, serialNumber, "Numer seryjny jest wymagany"));
+            d.setLocation(required(values, location, "Lokalizacja jest wymagana"));
+            String st = value(values, status);
+            if (st != null) {
+                try {
+                    d.setStatus(DeviceStatus.fromJson(st));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Nieprawidłowy status: " + st);
+                }
+            }
+            return d;
+        }
+
+        String serialNumber(String[] values) {
+            return value(values, serialNumber);
+        }
+
+        private static String required(String[] values, int at, String message) {
+            String v = value(values, at);
+            if (v == null) throw new IllegalStateException(message);
+            if (v.length() > MAX_LENGTH) throw new IllegalStateException("Wartość dłuższa niż " + MAX_LENGTH + " znaków: " + v.substring(0, 20) + "…");
+            return v;
+        }
+
+        /** Wartość bez skrajnych spacji; pusta lub brakująca kolumna -> null */
+        private static String value(String[] values, int at) {
+            if (at < 0 || at >= values.length) return null;
+            String v = values[at].strip();
+            return v.isEmpty() ? null : v;
+        }
+    }
+}
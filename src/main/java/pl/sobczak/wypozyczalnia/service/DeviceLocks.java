@@ -0,0 +1,82 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Paskowane (striped) blokady per urządzenie w obrębie procesu.
+ * Operacje na tym samym urządzeniu wykonują się po kolei, na różnych – równolegle
+ * (poza rzadkimi kolizjami paska). Liczba pasków zaokrąglana w górę do potęgi dwójki.
+ */
+@Component
+public class DeviceLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutMillis;
+
+    @Autowired
+    public DeviceLocks(@Value("${app.booking.lock-stripes:256}") int stripeCount,
+                       @Value("${app.booking.lock-timeout:PT5S}") Duration timeout) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) stripes[i] = new ReentrantLock();
+        this.mask = n - 1;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    public <T> T withLock(Long deviceId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeIndex(deviceId)];
+        acquire(lock);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blokada kilku urządzeń naraz (operacje paczkowe). Paski brane rosnąco po indeksie,
+     * więc dwie paczki z tymi samymi urządzeniami w innej kolejności się nie zakleszczą.
+     */
+    public <T> T withLocks(Collection<Long> deviceIds, Supplier<T> action) {
+        int[] indexes = deviceIds.stream().mapToInt(this::stripeIndex).distinct().sorted().toArray();
+        int held = 0;
+        try {
+            for (int i : indexes) {
+                acquire(stripes[i]);
+                held++;
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) stripes[indexes[i]].unlock();
+        }
+    }
+
+    private void acquire(ReentrantLock lock) {
+        boolean locked;
+        try {
+            locked = lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano oczekiwanie na urządzenie");
+        }
+        if (!locked) {
+            throw new IllegalStateException("Urządzenie jest właśnie rezerwowane przez kogoś innego, spróbuj ponownie");
+        }
+    }
+
+    int stripeIndex(Long deviceId) {
+        int h = Long.hashCode(deviceId);
+        h ^= (h >>> 16); // rozproszenie jak w HashMap – kolejne id trafiają w różne paski
+        h *= 0x9E3779B9;
+        return (h ^ (h >>> 15)) & mask;
+    }
+}
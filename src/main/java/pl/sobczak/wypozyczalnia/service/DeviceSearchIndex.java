@@ -0,0 +1,379 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import pl.sobczak.wypozyczalnia.dto.DeviceSearchRowDto;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indeks wyszukiwania urządzeń w pamięci: nazwa, numer seryjny, typ i lokalizacja.
+ * Zastępuje filtry lower(kolumna) like '%q%', które w bazie zawsze kończą się pełnym skanem.
+ * Ładowany przy starcie porcjami po id, aktualizowany po commicie zapisu urządzenia,
+ * urządzeniami dodanymi na innych węzłach (DEVICE_CREATED) i zmianami statusu ze zdarzeń domenowych.
+ * Dopóki nie jest gotowy, kontroler filtruje w bazie jak dotąd.
+ * Urządzenia są też pogrupowane w pule identycznych egzemplarzy (typ, lokalizacja) – dla przydziału
+ * "dowolny laptop w budynku B" (ReservationService.allocate); sprzęt w serwisie/zgubiony/uszkodzony jest pomijany.
+ */
+@Component
+public class DeviceSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceSearchIndex.class);
+
+    private static final int WARM_UP_CHUNK = 5000;
+
+    // wagi pól w rankingu: trafienie w numer seryjny mówi najwięcej
+    private static final int W_SERIAL = 3, W_NAME = 2, W_TYPE = 1, W_LOCATION = 1;
+    // rodzaj trafienia: cała wartość / początek słowa / dowolny podciąg
+    private static final int EXACT = 8, PREFIX = 4, SUBSTRING = 1;
+
+    private final DeviceRepository deviceRepository;
+    private final int maxFilterIds;
+
+    private final ValueIndex names = new ValueIndex();
+    private final ValueIndex serials = new ValueIndex();
+    private final ValueIndex types = new ValueIndex();
+    private final ValueIndex locations = new ValueIndex();
+    private final Map<Long, Integer> docOfId = new HashMap<>();
+    // pule: (ord typu << 32 | ord lokalizacji) → dokumenty
+    private final Map<Long, BitSet> pools = new HashMap<>();
+    private final BitSet outOfService = new BitSet();
+    private long[] idOfDoc = new long[1024];
+    private int docCount;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public DeviceSearchIndex(DeviceRepository deviceRepository,
+                             @Value("${app.search.max-filter-ids:1000}") int maxFilterIds) {
+        this.deviceRepository = deviceRepository;
+        this.maxFilterIds = maxFilterIds;
+    }
+
+    /** Rozgrzanie indeksu – projekcja bez encji, porcjami po id (keyset) */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        long afterId = 0;
+        while (true) {
+            List<DeviceSearchRowDto> rows = deviceRepository.findSearchRows(afterId, Limit.of(WARM_UP_CHUNK));
+            for (DeviceSearchRowDto r : rows) {
+                put(r.id(), r.name(), r.serialNumber(), r.type(), r.location(), r.status());
+            }
+            if (rows.size() < WARM_UP_CHUNK) break;
+            afterId = rows.get(rows.size() - 1).id();
+        }
+        ready = true;
+        log.info("Indeks wyszukiwania gotowy: {} urządzeń, {} różnych nazw ({} ms)",
+                docCount, names.distinctValues(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Wywoływane przy zapisie urządzenia (w transakcji) – indeks zmienia się dopiero po commicie */
+    public void deviceSaved(Device d) {
+        AfterCommit.run(() -> put(d.getId(), d.getName(), d.getSerialNumber(), d.getType(), d.getLocation(), d.getStatus()));
+    }
+
+    /**
+     * Status urządzenia po wypożyczeniu/rezerwacji/zwrocie (DomainEventRelay, z tego i innych węzłów) –
+     * np. egzemplarz zwrócony jako uszkodzony wypada z pul przydziału.
+     * Urządzenia dodane na innych węzłach doczytujemy z bazy (zdarzenie nie niesie nazwy ani numeru seryjnego);
+     * własne są już w indeksie po commicie (deviceSaved).
+     */
+    @EventListener
+    public void onDomainEvents(DomainEventBatch batch) {
+        if (!batch.local()) {
+            List<Long> created = new ArrayList<>();
+            for (DomainEventDto e : batch.events()) {
+                if (e.type() == DomainEventType.DEVICE_CREATED) created.add(e.deviceId());
+            }
+            if (!created.isEmpty()) {
+                for (DeviceSearchRowDto r : deviceRepository.findSearchRowsByIdIn(created)) {
+                    put(r.id(), r.name(), r.serialNumber(), r.type(), r.location(), r.status());
+                }
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (DomainEventDto e : batch.events()) {
+                Integer doc = docOfId.get(e.deviceId());
+                if (doc != null && e.deviceStatus() != null) outOfService.set(doc, e.deviceStatus().isOutOfService());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(long id, String name, String serialNumber, String type, String location, DeviceStatus status) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docOfId.get(id);
+            if (doc == null) {
+                doc = docCount++;
+                if (doc == idOfDoc.length) idOfDoc = Arrays.copyOf(idOfDoc, doc * 2);
+                idOfDoc[doc] = id;
+                docOfId.put(id, doc);
+            } else {
+                var pool = pools.get(poolKey(doc));
+                if (pool != null) pool.clear(doc);
+            }
+            names.set(doc, name);
+            serials.set(doc, serialNumber);
+            types.set(doc, type);
+            locations.set(doc, location);
+            if (types.valueOf(doc) >= 0) pools.computeIfAbsent(poolKey(doc), k -> new BitSet()).set(doc);
+            outOfService.set(doc, status != null && status.isOutOfService());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Odpowiednik DeviceSpecifications.hasType + inLocation + matchesQuery (te same reguły: podciąg, bez wielkości liter).
+     * Zwraca rosnące id pasujących urządzeń albo Optional.empty(), gdy nie ma czego filtrować
+     * lub trafień jest więcej niż app.search.max-filter-ids – wtedy gęste trafienia i tak szybko znajdzie baza.
+     */
+    public Optional<List<Long>> filter(String type, String location, String query) {
+        List<Condition> conditions = new ArrayList<>(3);
+        lock.readLock().lock();
+        try {
+            if (type != null && !type.isBlank()) conditions.add(new Condition(ValueIndex.normalize(type), types));
+            if (location != null && !location.isBlank()) conditions.add(new Condition(ValueIndex.normalize(location), locations));
+            if (query != null && !query.isBlank()) conditions.add(new Condition(ValueIndex.normalize(query), names, serials));
+            if (conditions.isEmpty()) return Optional.empty();
+
+            // kandydaci z najbardziej selektywnego warunku, reszta sprawdzana na wartościach kandydata
+            Condition driver = conditions.stream().min(Comparator.comparingLong(Condition::estimatedDocs)).orElseThrow();
+            var matched = new ValueIndex.IntList();
+            for (int f = 0; f < driver.fields.length; f++) {
+                for (int v = 0; v < driver.values[f].size(); v++) {
+                    var docs = driver.fields[f].docs(driver.values[f].get(v));
+                    for (int i = 0; i < docs.size(); i++) {
+                        int doc = docs.get(i);
+                        if (driver.matchedByEarlierField(doc, f)) continue;
+                        if (!matchesAll(conditions, driver, doc)) continue;
+                        matched.add(doc);
+                        if (matched.size() > maxFilterIds) return Optional.empty();
+                    }
+                }
+            }
+            List<Long> ids = new ArrayList<>(matched.size());
+            for (int i = 0; i < matched.size(); i++) ids.add(idOfDoc[matched.get(i)]);
+            ids.sort(null);
+            return Optional.of(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sprawne urządzenia z pul, których typ i lokalizacja zawierają podane frazy (te same reguły co filter;
+     * pusta lokalizacja = wszystkie). Bez limitu – pula tysięcy identycznych egzemplarzy to kilka map bitowych.
+     */
+    public long[] pool(String type, String location) {
+        lock.readLock().lock();
+        try {
+            BitSet typeOrds = ords(types.valuesContaining(ValueIndex.normalize(type)));
+            BitSet locationOrds = location == null || location.isBlank()
+                    ? null : ords(locations.valuesContaining(ValueIndex.normalize(location)));
+            BitSet docs = new BitSet();
+            for (var e : pools.entrySet()) {
+                int typeOrd = (int) (e.getKey() >>> 32);
+                int locationOrd = (int) (long) e.getKey();
+                if (!typeOrds.get(typeOrd)) continue;
+                if (locationOrds != null && (locationOrd < 0 || !locationOrds.get(locationOrd))) continue;
+                docs.or(e.getValue());
+            }
+            docs.andNot(outOfService);
+            long[] ids = new long[docs.cardinality()];
+            int i = 0;
+            for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)) ids[i++] = idOfDoc[doc];
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long poolKey(int doc) {
+        return ((long) types.valueOf(doc) << 32) | (locations.valueOf(doc) & 0xffffffffL);
+    }
+
+    private static BitSet ords(ValueIndex.IntList values) {
+        BitSet out = new BitSet();
+        for (int i = 0; i < values.size(); i++) out.set(values.get(i));
+        return out;
+    }
+
+    /**
+     * Wyszukiwanie z rankingiem: każde słowo zapytania musi trafić w któreś pole,
+     * wynik to suma najlepszych trafień słów (pełna wartość > początek słowa > podciąg, ważone polem).
+     * Zwraca id najlepszych urządzeń, od najtrafniejszego; przy remisie nowsze pierwsze.
+     */
+    public List<Long> search(String query, int limit) {
+        if (query == null || query.isBlank() || limit <= 0) return List.of();
+        String[] terms = ValueIndex.normalize(query).trim().split("\\s+");
+
+        lock.readLock().lock();
+        try {
+            // kandydatów wyznacza najrzadsze słowo z trigramami; krótkie słowa tylko weryfikujemy
+            // drugie najrzadsze słowo jako bitmapa odsiewa kandydatów przed liczeniem wyniku
+            Condition driver = null, second = null;
+            for (String term : terms) {
+                if (term.length() < 3) continue;
+                var c = new Condition(term, serials, names, types, locations);
+                if (driver == null || c.estimatedDocs() < driver.estimatedDocs()) {
+                    second = driver;
+                    driver = c;
+                } else if (second == null || c.estimatedDocs() < second.estimatedDocs()) {
+                    second = c;
+                }
+            }
+            if (driver == null) driver = new Condition(terms[0], serials, names, types, locations);
+            BitSet allowed = second != null ? second.docs() : null;
+
+            // min-kopiec po (wynik, id) – zostaje limit najlepszych
+            PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1,
+                    (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            for (int f = 0; f < driver.fields.length; f++) {
+                for (int v = 0; v < driver.values[f].size(); v++) {
+                    var docs = driver.fields[f].docs(driver.values[f].get(v));
+                    for (int i = 0; i < docs.size(); i++) {
+                        int doc = docs.get(i);
+                        if (allowed != null && !allowed.get(doc)) continue;
+                        if (driver.matchedByEarlierField(doc, f)) continue;
+                        long score = score(doc, terms);
+                        if (score == 0) continue;
+                        top.add(new long[]{score, idOfDoc[doc]});
+                        if (top.size() > limit) top.poll();
+                    }
+                }
+            }
+            Long[] ids = new Long[top.size()];
+            for (int i = ids.length - 1; i >= 0; i--) ids[i] = top.poll()[1];
+            return Arrays.asList(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Warunek "term jest podciągiem któregoś z pól" wraz z pasującymi wartościami słownika */
+    private static final class Condition {
+        final String term;
+        final ValueIndex[] fields;
+        final ValueIndex.IntList[] values;
+
+        Condition(String term, ValueIndex... fields) {
+            this.term = term;
+            this.fields = fields;
+            this.values = new ValueIndex.IntList[fields.length];
+            for (int f = 0; f < fields.length; f++) values[f] = fields[f].valuesContaining(term);
+        }
+
+        long estimatedDocs() {
+            long n = 0;
+            for (int f = 0; f < fields.length; f++) {
+                for (int v = 0; v < values[f].size(); v++) n += fields[f].docs(values[f].get(v)).size();
+            }
+            return n;
+        }
+
+        BitSet docs() {
+            BitSet out = new BitSet();
+            for (int f = 0; f < fields.length; f++) {
+                for (int v = 0; v < values[f].size(); v++) {
+                    var d = fields[f].docs(values[f].get(v));
+                    for (int i = 0; i < d.size(); i++) out.set(d.get(i));
+                }
+            }
+            return out;
+        }
+
+        boolean matches(int doc) {
+            for (ValueIndex field : fields) {
+                if (contains(field, doc, term)) return true;
+            }
+            return false;
+        }
+
+        /** Dokument trafiony przez kilka pól liczymy tylko przy pierwszym z nich */
+        boolean matchedByEarlierField(int doc, int f) {
+            for (int g = 0; g < f; g++) {
+                if (contains(fields[g], doc, term)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static boolean matchesAll(List<Condition> conditions, Condition skip, int doc) {
+        for (Condition c : conditions) {
+            if (c != skip && !c.matches(doc)) return false;
+        }
+        return true;
+    }
+
+    /** Suma najlepszych trafień słów; 0 gdy któreś słowo nie trafia w żadne pole */
+    private long score(int doc, String[] terms) {
+        long score = 0;
+        for (String term : terms) {
+            int best = Math.max(
+                    Math.max(fieldScore(serials, doc, term, W_SERIAL), fieldScore(names, doc, term, W_NAME)),
+                    Math.max(fieldScore(types, doc, term, W_TYPE), fieldScore(locations, doc, term, W_LOCATION)));
+            if (best == 0) return 0;
+            score += best;
+        }
+        return score;
+    }
+
+    private static int fieldScore(ValueIndex field, int doc, String term, int weight) {
+        int ord = field.valueOf(doc);
+        return ord < 0 ? 0 : weight * matchKind(field.value(ord), term);
+    }
+
+    private static boolean contains(ValueIndex field, int doc, String term) {
+        int ord = field.valueOf(doc);
+        return ord >= 0 && field.value(ord).contains(term);
+    }
+
+    private static int matchKind(String value, String term) {
+        if (value.equals(term)) return EXACT;
+        int at = value.indexOf(term);
+        if (at < 0) return 0;
+        for (; at >= 0; at = value.indexOf(term, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(value.charAt(at - 1))) return PREFIX;
+        }
+        return SUBSTRING;
+    }
+}
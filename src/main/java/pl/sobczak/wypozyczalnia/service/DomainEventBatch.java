@@ -0,0 +1,11 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+
+import java.util.List;
+
+/**
+ * Porcja zatwierdzonych zdarzeń domenowych publikowana przez DomainEventRelay (wątek relay, po commicie).
+ * local = zapisane na tym węźle – ich skutki w pamięci (np. indeks dostępności) są już zastosowane w chwili commitu.
+ */
+public record DomainEventBatch(List<DomainEventDto> events, boolean local) {}
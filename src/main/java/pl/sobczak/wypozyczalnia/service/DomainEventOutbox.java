@@ -0,0 +1,100 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DomainEvent;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+import pl.sobczak.wypozyczalnia.model.Loan;
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.repository.DomainEventRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zapis zdarzeń domenowych (domain_event) w transakcji wywołującego – zdarzenie istnieje wtedy i tylko wtedy,
+ * gdy zatwierdzono zmianę wypożyczenia/rezerwacji albo dodanie urządzenia. Po commicie trafiają do {@link DomainEventRelay},
+ * który przekazuje je porcjami słuchaczom ({@link DomainEventBatch}); wywołujący na nich nie czeka.
+ * Zdarzenia starsze niż app.events.retention usuwa ExpirySweeper.
+ */
+@Service
+public class DomainEventOutbox {
+
+    private final DomainEventRepository eventRepo;
+    private final DomainEventRelay relay;
+    private final TransactionTemplate tx;
+    private final String origin;
+    private final Duration retention;
+
+    public DomainEventOutbox(DomainEventRepository eventRepo, DomainEventRelay relay, TransactionTemplate tx,
+                             SchedulerLeaseService leaseService,
+                             @Value("${app.events.retention:P7D}") Duration retention) {
+        this.eventRepo = eventRepo;
+        this.relay = relay;
+        this.tx = tx;
+        this.origin = leaseService.owner();
+        this.retention = retention;
+    }
+
+    public void loans(DomainEventType type, List<Loan> loans) {
+        List<DomainEvent> rows = new ArrayList<>(loans.size());
+        for (Loan l : loans) rows.add(row(type, l.getId(), l.getDevice(), l.getUser().getId(), l.getStartDate(), l.getDueDate()));
+        append(rows);
+    }
+
+    public void reservations(DomainEventType type, List<Reservation> reservations) {
+        List<DomainEvent> rows = new ArrayList<>(reservations.size());
+        for (Reservation r : reservations) rows.add(row(type, r.getId(), r.getDevice(), r.getUser().getId(), r.getFromDate(), r.getToDate()));
+        append(rows);
+    }
+
+    public void devicesCreated(List<Device> devices) {
+        List<DomainEvent> rows = new ArrayList<>(devices.size());
+        for (Device d : devices) rows.add(row(DomainEventType.DEVICE_CREATED, d.getId(), d, null, null, null));
+        append(rows);
+    }
+
+    /** Sprzątanie (ExpirySweeper): zdarzenia starsze niż app.events.retention, porcjami we własnych transakcjach */
+    public int purge(Instant now, int chunkSize) {
+        Instant before = now.minus(retention);
+        int total = 0;
+        while (true) {
+            List<Long> ids = eventRepo.findIdsCreatedBefore(before, Limit.of(chunkSize));
+            if (ids.isEmpty()) break;
+            total += tx.execute(s -> eventRepo.deleteByIds(ids));
+            if (ids.size() < chunkSize) break;
+        }
+        return total;
+    }
+
+    private DomainEvent row(DomainEventType type, Long aggregateId, Device device, Long userId, LocalDate from, LocalDate to) {
+        var e = new DomainEvent();
+        e.setType(type);
+        e.setOrigin(origin);
+        e.setAggregateId(aggregateId);
+        e.setDeviceId(device.getId());
+        e.setUserId(userId);
+        e.setFromDate(from);
+        e.setToDate(to);
+        e.setDeviceStatus(device.getStatus());
+        return e;
+    }
+
+    private void append(List<DomainEvent> rows) {
+        if (rows.isEmpty()) return;
+        tx.executeWithoutResult(s -> {
+            // czas z bazy (jeden zegar dla wszystkich węzłów), jedno zapytanie na porcję – inserty zostają w paczkach JDBC
+            Instant now = eventRepo.databaseNow();
+            rows.forEach(e -> e.setCreatedAt(now));
+            var saved = eventRepo.saveAll(rows).stream().map(DomainEventDto::of).toList();
+            AfterCommit.run(() -> relay.committed(saved));
+        });
+    }
+}
@@ -0,0 +1,183 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.repository.DomainEventRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Przekazywanie zdarzeń z domain_event słuchaczom w procesie ({@link DomainEventBatch}), jednym wątkiem, porcjami.
+ * Zdarzenia tego węzła dostaje po commicie z kolejki w pamięci (bez zapytania); co poll-interval odpytuje bazę
+ * o zdarzenia od ostatniego odpytania z zakładką commit-lag (created_at i chwila odpytania z zegara bazy) – tak dochodzą zdarzenia innych węzłów i te,
+ * które nie zmieściły się w kolejce. Id już przekazanych (w obrębie zakładki) pamięta, więc każde zdarzenie
+ * trafia do słuchaczy tego węzła raz. Wyjątek słuchacza jest logowany i nie wstrzymuje kolejnych porcji.
+ * Metryki (MeterBinder): app.events.queue.size, app.events.published (tag origin=local|remote).
+ */
+@Component
+public class DomainEventRelay implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventRelay.class);
+
+    private final DomainEventRepository eventRepo;
+    private final ApplicationEventPublisher publisher;
+    private final String origin;
+    private final LinkedBlockingQueue<DomainEventDto> queue;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration commitLag;
+
+    private final AtomicLong publishedLocal = new AtomicLong();
+    private final AtomicLong publishedRemote = new AtomicLong();
+
+    // tylko wątek relay
+    private final Map<Long, Instant> delivered = new HashMap<>();
+    /** Zdarzenia sprzed tej chwili (minus commitLag) zostały już odpytane; od utworzenia beana – starsze zna rozgrzewanie indeksów */
+    private Instant polledUntil;
+
+    private volatile Thread worker;
+    private volatile boolean running;
+
+    public DomainEventRelay(DomainEventRepository eventRepo,
+                            ApplicationEventPublisher publisher,
+                            SchedulerLeaseService leaseService,
+                            @Value("${app.events.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.events.batch-size:200}") int batchSize,
+                            @Value("${app.events.poll-interval:PT2S}") Duration pollInterval,
+                            @Value("${app.events.commit-lag:PT30S}") Duration commitLag) {
+        this.eventRepo = eventRepo;
+        this.publisher = publisher;
+        this.origin = leaseService.owner();
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollInterval = pollInterval;
+        this.commitLag = commitLag;
+        this.polledUntil = eventRepo.databaseNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(this::workLoop, "domain-event-relay");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+        log.info("Relay zdarzeń domenowych: porcje po {}, odpytywanie co {} (zakładka {})", batchSize, pollInterval, commitLag);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("app.events.queue.size", queue, LinkedBlockingQueue::size)
+                .description("Zatwierdzone zdarzenia czekające na przekazanie").register(registry);
+        FunctionCounter.builder("app.events.published", publishedLocal, AtomicLong::get)
+                .description("Zdarzenia przekazane słuchaczom").tag("origin", "local").register(registry);
+        FunctionCounter.builder("app.events.published", publishedRemote, AtomicLong::get)
+                .description("Zdarzenia przekazane słuchaczom").tag("origin", "remote").register(registry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        var t = worker;
+        if (t != null) t.interrupt();
+    }
+
+    /** Zdarzenia zatwierdzone na tym węźle (DomainEventOutbox, po commicie); przy pełnej kolejce dojdą z odpytania bazy */
+    void committed(List<DomainEventDto> events) {
+        for (DomainEventDto e : events) {
+            if (!queue.offer(e)) break;
+        }
+    }
+
+    private void workLoop() {
+        long nextPoll = System.nanoTime();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                deliverQueued(Math.max(0, nextPoll - System.nanoTime()));
+                if (System.nanoTime() - nextPoll >= 0) {
+                    pollOnce(eventRepo.databaseNow());
+                    nextPoll = System.nanoTime() + pollInterval.toNanos();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Błąd relay zdarzeń domenowych: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Porcja zdarzeń tego węzła z kolejki, czekając na pierwsze najwyżej waitNanos; false, gdy nic nie przyszło */
+    boolean deliverQueued(long waitNanos) throws InterruptedException {
+        DomainEventDto first = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+        if (first == null) return false;
+        List<DomainEventDto> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        deliver(batch);
+        return true;
+    }
+
+    /**
+     * Zdarzenia z created_at od (poprzednie odpytanie − commitLag), keyset po (createdAt, id). Zakładka łapie
+     * transakcje zatwierdzone chwilę po zapisaniu swojego created_at; przekazanych wcześniej nie powtarza.
+     */
+    void pollOnce(Instant now) {
+        Instant createdAt = polledUntil.minus(commitLag);
+        long afterId = 0;
+        while (true) {
+            List<DomainEventDto> page = eventRepo.findAfter(createdAt, afterId, Limit.of(batchSize));
+            deliver(page);
+            if (page.size() < batchSize) break;
+            var last = page.get(page.size() - 1);
+            createdAt = last.createdAt();
+            afterId = last.id();
+        }
+        polledUntil = now;
+        Instant forgetBefore = now.minus(commitLag);
+        delivered.values().removeIf(t -> t.isBefore(forgetBefore));
+    }
+
+    /** Nowe (nieprzekazane) zdarzenia porcji, osobno z tego węzła i z innych */
+    private void deliver(List<DomainEventDto> events) {
+        List<DomainEventDto> local = new ArrayList<>();
+        List<DomainEventDto> remote = new ArrayList<>();
+        for (DomainEventDto e : events) {
+            if (delivered.putIfAbsent(e.id(), e.createdAt()) != null) continue;
+            (origin.equals(e.origin()) ? local : remote).add(e);
+        }
+        publish(local, true, publishedLocal);
+        publish(remote, false, publishedRemote);
+    }
+
+    private void publish(List<DomainEventDto> events, boolean local, AtomicLong counter) {
+        if (events.isEmpty()) return;
+        try {
+            publisher.publishEvent(new DomainEventBatch(List.copyOf(events), local));
+        } catch (RuntimeException e) {
+            log.error("Słuchacz zdarzeń domenowych zgłosił błąd (porcja {} zdarzeń, pierwsze #{})",
+                    events.size(), events.get(0).id(), e);
+        }
+        counter.addAndGet(events.size());
+    }
+}
@@ -0,0 +1,61 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.dto.EntityCacheStatsDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trafienia cache drugiego poziomu Hibernate per region (device, user i ich natural id).
+ * Liczniki pochodzą ze statystyk Hibernate (hibernate.generate_statistics) i rosną od startu aplikacji.
+ * Cache jest lokalny dla węzła: urządzenia zmienione na innych węzłach (zdarzenia domenowe) są z niego usuwane.
+ */
+@Component
+public class EntityCacheStats {
+
+    private final SessionFactory sessionFactory;
+
+    public EntityCacheStats(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    public List<EntityCacheStatsDto> stats() {
+        Statistics statistics = sessionFactory.getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> toDto(region, statistics.getCacheRegionStatistics(region)))
+                .toList();
+    }
+
+    /**
+     * Wypożyczenie/rezerwacja/zwrot z innego węzła zmienia status urządzenia – wpis tego węzła byłby nieaktualny
+     * do wygaśnięcia. Zmiany z tego węzła odświeża sam Hibernate po commicie.
+     */
+    @EventListener
+    public void onDomainEvents(DomainEventBatch batch) {
+        if (batch.local()) return;
+        Cache cache = sessionFactory.getCache();
+        for (DomainEventDto e : batch.events()) cache.evictEntityData(Device.class, e.deviceId());
+    }
+
+    /** Wyczyszczenie wszystkich regionów, np. po ręcznych zmianach w bazie */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    static EntityCacheStatsDto toDto(String region, CacheRegionStatistics s) {
+        if (s == null) return new EntityCacheStatsDto(region, 0, 0, 0, 0);
+        long hits = s.getHitCount(), misses = s.getMissCount();
+        double ratio = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        return new EntityCacheStatsDto(region, hits, misses, s.getPutCount(), ratio);
+    }
+}
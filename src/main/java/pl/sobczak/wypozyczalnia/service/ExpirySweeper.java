@@ -0,0 +1,193 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.dto.ExpirySweepResultDto;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.ReservationRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sprzątanie terminów: niezwrócone wypożyczenia po terminie → OVERDUE, rezerwacje po dacie "do" → FULFILLED
+ * (ten sam użytkownik wypożyczył urządzenie w jej okresie) albo EXPIRED, a urządzenia RESERVED bez innej
+ * aktywnej rezerwacji → AVAILABLE. Porcjami: zapytanie o porcję ACTIVE i jeden UPDATE na porcję, każda porcja
+ * we własnej transakcji, więc indeksy częściowe "where status = 'ACTIVE'" obejmują tylko bieżące wiersze.
+ * Urządzenia z wypożyczeń po terminie zostają LOANED – sprzęt nadal jest u wypożyczającego.
+ * Na koniec wpisy listy oczekujących po czasie życia → EXPIRED (WaitlistService.expire, z mailem)
+ * i usunięcie zdarzeń domenowych starszych niż app.events.retention (DomainEventOutbox.purge).
+ */
+@Component
+public class ExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirySweeper.class);
+
+    private static final String LEASE_NAME = "expiry-sweeper";
+
+    private final LoanRepository loanRepo;
+    private final ReservationRepository reservationRepo;
+    private final DeviceRepository deviceRepo;
+    private final DeviceAvailabilityIndex availabilityIndex;
+    private final WaitlistService waitlistService;
+    private final DomainEventOutbox domainEvents;
+    private final SchedulerLeaseService leaseService;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration leaseTtl;
+    private final boolean catchUpOnStartup;
+    private final Counter overdueLoans;
+    private final Counter expiredReservations;
+    private final Counter fulfilledReservations;
+    private final Counter releasedDevices;
+    private final Counter expiredWaitlist;
+    private final Counter purgedEvents;
+
+    public ExpirySweeper(
+            LoanRepository loanRepo,
+            ReservationRepository reservationRepo,
+            DeviceRepository deviceRepo,
+            DeviceAvailabilityIndex availabilityIndex,
+            WaitlistService waitlistService,
+            DomainEventOutbox domainEvents,
+            SchedulerLeaseService leaseService,
+            TransactionTemplate tx,
+            MeterRegistry registry,
+            @Value("${app.sweeper.enabled:true}") boolean enabled,
+            @Value("${app.sweeper.chunk-size:1000}") int chunkSize,
+            @Value("${app.sweeper.lease-ttl:PT30M}") Duration leaseTtl,
+            @Value("${app.sweeper.catch-up-on-startup:true}") boolean catchUpOnStartup
+    ) {
+        this.loanRepo = loanRepo;
+        this.reservationRepo = reservationRepo;
+        this.deviceRepo = deviceRepo;
+        this.availabilityIndex = availabilityIndex;
+        this.waitlistService = waitlistService;
+        this.domainEvents = domainEvents;
+        this.leaseService = leaseService;
+        this.tx = tx;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.leaseTtl = leaseTtl;
+        this.catchUpOnStartup = catchUpOnStartup;
+        this.overdueLoans = rows(registry, "loan.overdue");
+        this.expiredReservations = rows(registry, "reservation.expired");
+        this.fulfilledReservations = rows(registry, "reservation.fulfilled");
+        this.releasedDevices = rows(registry, "device.released");
+        this.expiredWaitlist = rows(registry, "waitlist.expired");
+        this.purgedEvents = rows(registry, "domain-event.purged");
+    }
+
+    private static Counter rows(MeterRegistry registry, String change) {
+        return Counter.builder("app.sweeper.rows")
+                .description("Wiersze zmienione przez sprzątanie terminów")
+                .tag("change", change)
+                .register(registry);
+    }
+
+    /** Codziennie tuż po północy (app.sweeper.cron); w klastrze wykonuje tylko węzeł z dzierżawą */
+    @Timed("app.sweeper.run")
+    @Scheduled(cron = "${app.sweeper.cron:0 5 0 * * *}")
+    public void scheduledSweep() {
+        if (!enabled) {
+            log.debug("Sprzątanie terminów wyłączone (app.sweeper.enabled=false)");
+            return;
+        }
+        if (sweep() == null) log.debug("Sprzątanie terminów wykonuje inny węzeł");
+    }
+
+    /** Nadrabianie po przestoju – zaległe terminy nie czekają do następnej nocy */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        if (catchUpOnStartup) scheduledSweep();
+    }
+
+    /** Przebieg pod dzierżawą (także ręczny: POST /api/admin/expiry-sweep); null gdy trwa na innym węźle */
+    public ExpirySweepResultDto sweep() {
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseTtl)) return null;
+        boolean completed = false;
+        try {
+            var result = runOnce(LocalDate.now(), Instant.now());
+            completed = true;
+            return result;
+        } finally {
+            leaseService.release(LEASE_NAME, completed);
+        }
+    }
+
+    ExpirySweepResultDto runOnce(LocalDate today, Instant now) {
+        long start = System.nanoTime();
+
+        int overdue = 0;
+        while (true) {
+            List<DeviceIntervalDto> chunk = loanRepo.findOverdueIntervals(today, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+            overdue += tx.execute(s -> {
+                int n = loanRepo.markOverdue(ids(chunk), today);
+                availabilityIndex.loansClosed(chunk);
+                return n;
+            });
+            if (chunk.size() < chunkSize) break;
+        }
+
+        int expired = 0;
+        int fulfilled = 0;
+        int released = 0;
+        while (true) {
+            List<DeviceIntervalDto> chunk = reservationRepo.findExpiredIntervals(today, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+            int[] counts = tx.execute(s -> {
+                Set<Long> ids = ids(chunk);
+                int f = reservationRepo.markFulfilled(ids);
+                int e = reservationRepo.markExpired(ids);
+                Set<Long> deviceIds = chunk.stream().map(DeviceIntervalDto::deviceId).collect(Collectors.toSet());
+                int d = deviceRepo.releaseReserved(deviceIds, DeviceStatus.RESERVED, DeviceStatus.AVAILABLE);
+                availabilityIndex.reservationsClosed(chunk);
+                return new int[]{f, e, d};
+            });
+            fulfilled += counts[0];
+            expired += counts[1];
+            released += counts[2];
+            if (chunk.size() < chunkSize) break;
+        }
+
+        int waitlist = waitlistService.expire(now, chunkSize);
+        int purged = domainEvents.purge(now, chunkSize);
+
+        overdueLoans.increment(overdue);
+        expiredReservations.increment(expired);
+        fulfilledReservations.increment(fulfilled);
+        releasedDevices.increment(released);
+        expiredWaitlist.increment(waitlist);
+        purgedEvents.increment(purged);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        if (overdue + expired + fulfilled + released + waitlist + purged > 0) {
+            log.info("Sprzątanie terminów: {} wypożyczeń po terminie, {} rezerwacji wygasłych, {} zrealizowanych, "
+                    + "{} urządzeń zwolnionych, {} wpisów listy oczekujących wygasłych, {} starych zdarzeń usuniętych ({} ms)",
+                    overdue, expired, fulfilled, released, waitlist, purged, ms);
+        }
+        return new ExpirySweepResultDto(overdue, expired, fulfilled, released, waitlist, purged, ms);
+    }
+
+    private static Set<Long> ids(List<DeviceIntervalDto> chunk) {
+        return chunk.stream().map(DeviceIntervalDto::id).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,160 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DeviceDto;
+import pl.sobczak.wypozyczalnia.dto.LoanDto;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Eksport wypożyczeń i urządzeń wiersz po wierszu: strumień z kursora bazy (fetch size w repozytorium)
+ * zapisywany od razu do wyjścia, więc pamięć nie zależy od liczby wierszy.
+ * Strumień żyje w transakcji tylko do odczytu – Postgres trzyma kursor wyłącznie w otwartej transakcji.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String getMediaType() { return mediaType; }
+
+        public String getExtension() { return extension; }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Nieobsługiwany format eksportu: " + value + " (csv, ndjson)");
+            }
+        }
+    }
+
+    private static final int BUFFER = 64 * 1024;
+
+    private static final String[] LOAN_HEADER = {"id", "deviceId", "deviceName", "deviceSerialNumber", "userId", "username",
+            "startDate", "dueDate", "returnDate", "status", "returnNote", "damageReported"};
+    private static final String[] DEVICE_HEADER = {"id", "name", "type", "serialNumber", "location", "status"};
+
+    private final LoanRepository loanRepo;
+    private final DeviceRepository deviceRepo;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(LoanRepository loanRepo, DeviceRepository deviceRepo,
+                         PlatformTransactionManager txManager, ObjectMapper objectMapper) {
+        this.loanRepo = loanRepo;
+        this.deviceRepo = deviceRepo;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /** Wypożyczenia po id, opcjonalnie jednego urządzenia i z datą startu w [from, to]; zwraca liczbę wierszy */
+    public long exportLoans(Long deviceId, LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        return export(() -> loanRepo.streamForExport(deviceId, from, to), format, out, LoanDto.class, LOAN_HEADER,
+                l -> new Object[]{l.id(), l.deviceId(), l.deviceName(), l.deviceSerialNumber(), l.userId(), l.username(),
+                        l.startDate(), l.dueDate(), l.returnDate(), l.status() == null ? null : l.status().toJson(),
+                        l.returnNote(), l.damageReported()});
+    }
+
+    /** Urządzenia po id, opcjonalnie tylko w danym statusie; zwraca liczbę wierszy */
+    public long exportDevices(DeviceStatus status, Format format, OutputStream out) throws IOException {
+        return export(() -> deviceRepo.streamForExport(status), format, out, DeviceDto.class, DEVICE_HEADER,
+                d -> new Object[]{d.id(), d.name(), d.type(), d.serialNumber(), d.location(),
+                        d.status() == null ? null : d.status().toJson()});
+    }
+
+    private <T> long export(Supplier<Stream<T>> query, Format format, OutputStream out,
+                            Class<T> type, String[] header, Function<T, Object[]> columns) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+        try {
+            Long rows = readOnlyTx.execute(status -> {
+                try (Stream<T> stream = query.get()) {
+                    return format == Format.CSV
+                            ? writeCsv(stream.iterator(), writer, header, columns)
+                            : writeNdjson(stream.iterator(), writer, type);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            return rows == null ? 0 : rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T> long writeCsv(Iterator<T> rows, Writer w, String[] header, Function<T, Object[]> columns) throws IOException {
+        writeCsvLine(w, header);
+        long n = 0;
+        while (rows.hasNext()) {
+            writeCsvLine(w, columns.apply(rows.next()));
+            n++;
+        }
+        return n;
+    }
+
+    private <T> long writeNdjson(Iterator<T> rows, Writer w, Class<T> type) throws IOException {
+        // bez flush po każdym obiekcie – o wysyłce decyduje bufor
+        SequenceWriter seq = objectMapper.writerFor(type)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(w);
+        long n = 0;
+        while (rows.hasNext()) {
+            seq.write(rows.next());
+            n++;
+        }
+        seq.flush();
+        if (n > 0) w.write('\n');
+        return n;
+    }
+
+    /** Wiersz CSV wg RFC 4180: pole z przecinkiem, cudzysłowem lub końcem linii w cudzysłowach; null = puste pole */
+    static void writeCsvLine(Writer w, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) w.write(',');
+            Object v = values[i];
+            if (v == null) continue;
+            String s = v.toString();
+            if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+                w.write('"');
+                w.write(s.replace("\"", "\"\""));
+                w.write('"');
+            } else {
+                w.write(s);
+            }
+        }
+        w.write("\r\n");
+    }
+}
@@ -0,0 +1,73 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Zbiór domkniętych przedziałów dni [start, end] (epoch day) posortowany po początku.
+ * Kolizję sprawdzamy tylko wśród przedziałów zaczynających się w [from - maxLength, to],
+ * więc przy kilku rezerwacjach na urządzenie to kilka porównań, bez skanowania całości.
+ */
+final class IntervalSet {
+
+    private final NavigableMap<Long, List<long[]>> byStart = new TreeMap<>(); // wartości: {id, start, end}
+    private final Map<Long, long[]> byId = new HashMap<>();
+    private long maxLength;
+
+    synchronized void add(long id, long start, long end) {
+        remove(id);
+        long[] iv = {id, start, end};
+        byStart.computeIfAbsent(start, k -> new ArrayList<>(1)).add(iv);
+        byId.put(id, iv);
+        maxLength = Math.max(maxLength, end - start);
+    }
+
+    synchronized boolean remove(long id) {
+        long[] iv = byId.remove(id);
+        if (iv == null) return false;
+        List<long[]> bucket = byStart.get(iv[1]);
+        bucket.remove(iv);
+        if (bucket.isEmpty()) byStart.remove(iv[1]);
+        return true;
+    }
+
+    /** Czy jakiś przedział ma część wspólną z [from, to] (obustronnie domknięte, jak w zapytaniach JPQL) */
+    synchronized boolean overlaps(long from, long to) {
+        if (from > to) return false;
+        for (List<long[]> bucket : byStart.subMap(from - maxLength, true, to, true).values()) {
+            for (long[] iv : bucket) {
+                if (iv[2] >= from) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ustawia w busy dni z [from, to] zajęte przez któryś przedział (bit 0 = from) */
+    synchronized void markBusy(long from, long to, BitSet busy) {
+        if (from > to) return;
+        for (List<long[]> bucket : byStart.subMap(from - maxLength, true, to, true).values()) {
+            for (long[] iv : bucket) {
+                if (iv[2] >= from) busy.set((int) (Math.max(iv[1], from) - from), (int) (Math.min(iv[2], to) - from) + 1);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        byStart.clear();
+        byId.clear();
+        maxLength = 0;
+    }
+
+    synchronized boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+}
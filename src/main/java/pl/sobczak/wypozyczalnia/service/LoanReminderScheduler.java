@@ -1,37 +1,92 @@
 package pl.sobczak.wypozyczalnia.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import pl.sobczak.wypozyczalnia.model.Loan;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.LoanReminderDto;
 import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.ReminderLog;
 import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.ReminderLogRepository;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class LoanReminderScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(LoanReminderScheduler.class);
 
+    private static final String LEASE_NAME = "loan-reminders";
+
     private final LoanRepository loanRepo;
+    private final ReminderLogRepository reminderLogRepo;
     private final MailService mailService;
+    private final SchedulerLeaseService leaseService;
+    private final TransactionTemplate tx;
     private final boolean enabled;
     private final List<Integer> daysAhead;
+    private final int chunkSize;
+    private final Duration leaseTtl;
+    private final boolean catchUpOnStartup;
+    private final int catchUpMaxDays;
+
+    private static final String BODY_TEMPLATE = """
+            Cześć %s,
+
+            przypominamy o zbliżającym się terminie zwrotu sprzętu:
+
+            • Urządzenie: %s
+            • Numer seryjny: %s
+            • Lokalizacja: %s
+            • Termin zwrotu: %s
+
+            Prosimy o zwrot w terminie. W razie problemów skontaktuj się z opiekunem.
+
+            Pozdrawiamy,
+            Wypożyczalnia Uczelniana
+            """;
 
     public LoanReminderScheduler(
             LoanRepository loanRepo,
+            ReminderLogRepository reminderLogRepo,
             MailService mailService,
+            SchedulerLeaseService leaseService,
+            TransactionTemplate tx,
             @Value("${app.reminders.enabled:true}") boolean enabled,
-            @Value("${app.reminders.days-ahead:2,1,0}") String daysAheadCsv
+            @Value("${app.reminders.days-ahead:2,1,0}") String daysAheadCsv,
+            @Value("${app.reminders.chunk-size:500}") int chunkSize,
+            @Value("${app.reminders.lease-ttl:PT30M}") Duration leaseTtl,
+            @Value("${app.reminders.catch-up-on-startup:true}") boolean catchUpOnStartup,
+            @Value("${app.reminders.catch-up-max-days:7}") int catchUpMaxDays
     ) {
         this.loanRepo = loanRepo;
+        this.reminderLogRepo = reminderLogRepo;
         this.mailService = mailService;
+        this.leaseService = leaseService;
+        this.tx = tx;
         this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.leaseTtl = leaseTtl;
+        this.catchUpOnStartup = catchUpOnStartup;
+        this.catchUpMaxDays = Math.max(0, catchUpMaxDays);
         this.daysAhead = Arrays.stream(daysAheadCsv.split(","))
                 .map(String::trim)
                 .filter(s -> !s.isBlank())
@@ -39,55 +94,151 @@ public class LoanReminderScheduler {
                 .toList();
     }
 
-    /** Raz dziennie o 08:00 */
-    @Scheduled(cron = "0 * * * * *")
+    /** Raz dziennie (domyślnie o 08:00); w klastrze wykonuje tylko węzeł z dzierżawą. Czas przebiegu: app.reminders.run */
+    @Timed("app.reminders.run")
+    @Scheduled(cron = "${app.reminders.cron:0 0 8 * * *}")
     public void sendReminders() {
         if (!enabled) {
             log.debug("Reminders disabled (app.reminders.enabled=false)");
             return;
         }
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseTtl)) {
+            log.debug("Przypomnienia wykonuje inny węzeł");
+            return;
+        }
+        boolean completed = false;
+        try {
+            LocalDate lastRun = leaseService.lastCompletedAt(LEASE_NAME)
+                    .map(at -> LocalDate.ofInstant(at, ZoneId.systemDefault()))
+                    .orElse(null);
+            runOnce(LocalDate.now(), lastRun);
+            completed = true;
+        } finally {
+            leaseService.release(LEASE_NAME, completed);
+        }
+    }
 
-        LocalDate today = LocalDate.now();
-
-        for (Integer d : daysAhead) {
-            LocalDate target = today.plusDays(d);
-            List<Loan> loans = loanRepo.findByStatusAndReturnDateIsNullAndDueDate(LoanStatus.ACTIVE, target);
-
-            for (Loan loan : loans) {
-                var user = loan.getUser();
-                var device = loan.getDevice();
-
-                String when = (d == 0) ? "dzisiaj" : (d == 1) ? "jutro" : ("za " + d + " dni");
-
-                String to = user.getEmail();
-                String subject = "Przypomnienie: zwrot sprzętu \"" + device.getName() + "\" " + when + " (" + loan.getDueDate() + ")";
-                String body = """
-                        Cześć %s,
+    /**
+     * Nadrabianie po przestoju: przebieg przy starcie, ledger nie dopuści do duplikatów.
+     * Obejmuje też terminy, które minęły w czasie przestoju (runOnce z datą ostatniego udanego przebiegu).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        if (!catchUpOnStartup) return;
+        log.info("Przypomnienia: nadrabianie po starcie (ostatni udany przebieg: {})",
+                leaseService.lastCompletedAt(LEASE_NAME).map(Object::toString).orElse("brak"));
+        sendReminders();
+    }
 
-                        przypominamy o zbliżającym się terminie zwrotu sprzętu:
+    void runOnce(LocalDate today) {
+        runOnce(today, null);
+    }
 
-                        • Urządzenie: %s
-                        • Numer seryjny: %s
-                        • Lokalizacja: %s
-                        • Termin zwrotu: %s
+    /**
+     * lastRun – dzień ostatniego udanego przebiegu (null = nieznany, bez nadrabiania). Termin d powinien był dostać
+     * przypomnienie z najmniejszym wyprzedzeniem w dniu d - min; jeśli ten dzień wypadł po lastRun i przed dziś,
+     * a termin już minął, przypomnienie wychodzi teraz („po terminie”) – najwyżej catch-up-max-days wstecz.
+     * Takie wypożyczenia mogą już mieć status OVERDUE (ExpirySweeper), więc szukamy ich w obu statusach.
+     */
+    void runOnce(LocalDate today, LocalDate lastRun) {
+        // dni do terminu -> przypomnienie, które powinno już wyjść (najmniejszy próg >= k).
+        // Przy codziennych przebiegach to po prostu k; po przestoju łapie pominięty wcześniejszy próg.
+        Map<LocalDate, Integer> offsetByDueDate = new HashMap<>();
+        Map<LocalDate, String> whenByDueDate = new HashMap<>();
+        int maxOffset = daysAhead.stream().mapToInt(Integer::intValue).max().orElse(-1);
+        for (int k = 0; k <= maxOffset; k++) {
+            int days = k;
+            daysAhead.stream().filter(o -> o >= days).min(Integer::compare).ifPresent(o -> {
+                LocalDate due = today.plusDays(days);
+                offsetByDueDate.put(due, o);
+                whenByDueDate.put(due, (days == 0) ? "dzisiaj" : (days == 1) ? "jutro" : ("za " + days + " dni"));
+            });
+        }
+        Set<LocalDate> missed = new HashSet<>();
+        if (lastRun != null && maxOffset >= 0) {
+            int minOffset = daysAhead.stream().mapToInt(Integer::intValue).min().getAsInt();
+            LocalDate from = lastRun.plusDays(minOffset + 1L);
+            if (from.isBefore(today.minusDays(catchUpMaxDays))) from = today.minusDays(catchUpMaxDays);
+            for (LocalDate due = from; due.isBefore(today); due = due.plusDays(1)) {
+                offsetByDueDate.put(due, minOffset);
+                whenByDueDate.put(due, "po terminie");
+                missed.add(due);
+            }
+        }
+        if (offsetByDueDate.isEmpty()) return;
+
+        int[] result = remind(LoanStatus.ACTIVE, offsetByDueDate.keySet(), offsetByDueDate, whenByDueDate);
+        if (!missed.isEmpty()) {
+            int[] overdue = remind(LoanStatus.OVERDUE, missed, offsetByDueDate, whenByDueDate);
+            for (int i = 0; i < result.length; i++) result[i] += overdue[i];
+            log.info("Przypomnienia: nadrabianie terminów {}..{} (ostatni przebieg {})",
+                    Collections.min(missed), Collections.max(missed), lastRun);
+        }
+        if (result[0] > 0) {
+            log.info("Przypomnienia: {} wypożyczeń, zakolejkowano {}, pominięto (już wysłane) {}", result[0], result[1], result[2]);
+        }
+    }
 
-                        Prosimy o zwrot w terminie. W razie problemów skontaktuj się z opiekunem.
+    /** Porcje wypożyczeń o statusie i terminach z dates, po id (keyset); zwraca {wypożyczenia, zakolejkowane, pominięte} */
+    private int[] remind(LoanStatus status, Set<LocalDate> dates,
+                         Map<LocalDate, Integer> offsetByDueDate, Map<LocalDate, String> whenByDueDate) {
+        long afterId = 0;
+        int total = 0;
+        int sent = 0;
+        int skipped = 0;
+        while (true) {
+            List<LoanReminderDto> chunk = loanRepo.findDueForReminder(status, dates, afterId, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+
+            int[] result = tx.execute(s -> sendChunk(chunk, offsetByDueDate, whenByDueDate));
+            sent += result[0];
+            skipped += result[1];
+            total += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).loanId();
+            if (chunk.size() < chunkSize) break;
+        }
+        return new int[]{total, sent, skipped};
+    }
 
-                        Pozdrawiamy,
-                        Wypożyczalnia Uczelniana
-                        """.formatted(user.getUsername(),
-                        device.getName(),
-                        device.getSerialNumber(),
-                        device.getLocation(),
-                        loan.getDueDate());
+    /** Zapis do ledgera i do kolejki poczty w jednej transakcji; zwraca {zakolejkowane, pominięte} */
+    private int[] sendChunk(List<LoanReminderDto> chunk,
+                            Map<LocalDate, Integer> offsetByDueDate,
+                            Map<LocalDate, String> whenByDueDate) {
+        Set<String> alreadySent = new HashSet<>();
+        for (ReminderLog entry : reminderLogRepo.findByLoanIdIn(chunk.stream().map(LoanReminderDto::loanId).toList())) {
+            alreadySent.add(entry.getLoanId() + ":" + entry.getOffsetDays());
+        }
 
-                try {
-                    mailService.send(to, subject, body, null);
-                    log.info("Wysłano przypomnienie do {} (loan #{}, due {})", to, loan.getId(), loan.getDueDate());
-                } catch (Exception ex) {
-                    log.error("Błąd wysyłki maila (loan #{}): {}", loan.getId(), ex.getMessage(), ex);
-                }
-            }
+        Instant now = Instant.now();
+        List<ReminderLog> ledger = new ArrayList<>(chunk.size());
+        List<MailService.Message> batch = new ArrayList<>(chunk.size());
+        for (LoanReminderDto r : chunk) {
+            int offset = offsetByDueDate.get(r.dueDate());
+            if (alreadySent.contains(r.loanId() + ":" + offset)) continue;
+            ledger.add(new ReminderLog(r.loanId(), offset, r.dueDate(), now));
+            batch.add(render(r, whenByDueDate.get(r.dueDate())));
         }
+        if (batch.isEmpty()) return new int[]{0, chunk.size()};
+
+        reminderLogRepo.saveAll(ledger);
+        int sent;
+        try {
+            sent = mailService.sendAll(batch);
+        } catch (Exception ex) {
+            log.error("Błąd kolejkowania porcji przypomnień (loan #{}..#{}): {}",
+                    chunk.get(0).loanId(), chunk.get(chunk.size() - 1).loanId(), ex.getMessage(), ex);
+            throw ex; // wycofuje ledger – porcja pójdzie w następnym przebiegu
+        }
+        return new int[]{sent, chunk.size() - batch.size()};
+    }
+
+    private static MailService.Message render(LoanReminderDto r, String when) {
+        String subject = "Przypomnienie: zwrot sprzętu \"" + r.deviceName() + "\" " + when + " (" + r.dueDate() + ")";
+        String body = BODY_TEMPLATE.formatted(r.username(),
+                r.deviceName(),
+                r.serialNumber(),
+                r.location(),
+                r.dueDate());
+        return new MailService.Message(r.email(), subject, body, null);
     }
 }
@@ -1,41 +1,120 @@
 package pl.sobczak.wypozyczalnia.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import pl.sobczak.wypozyczalnia.dto.LoanCreateDto;
 import pl.sobczak.wypozyczalnia.model.Device;
 import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
 import pl.sobczak.wypozyczalnia.model.Loan;
 import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.User;
 import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
 import pl.sobczak.wypozyczalnia.repository.LoanRepository;
 import pl.sobczak.wypozyczalnia.repository.UserRepository;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/** Metryka app.loans: czas każdej publicznej operacji (tag method) */
+@Timed("app.loans")
 @Service
 public class LoanService {
 
     private final LoanRepository loanRepo;
     private final DeviceRepository deviceRepo;
     private final UserRepository userRepo;
+    private final DeviceAvailabilityIndex availabilityIndex;
+    private final BookingExecutor bookingExecutor;
+    private final DomainEventOutbox events;
 
-    public LoanService(LoanRepository loanRepo, DeviceRepository deviceRepo, UserRepository userRepo) {
+    public LoanService(LoanRepository loanRepo, DeviceRepository deviceRepo, UserRepository userRepo,
+                       DeviceAvailabilityIndex availabilityIndex, BookingExecutor bookingExecutor,
+                       DomainEventOutbox events) {
         this.loanRepo = loanRepo;
         this.deviceRepo = deviceRepo;
         this.userRepo = userRepo;
+        this.availabilityIndex = availabilityIndex;
+        this.bookingExecutor = bookingExecutor;
+        this.events = events;
     }
 
     private static final int MAX_DNI_WYPOZYCZENIA = 14;
 
-    @Transactional
+    /** Wypożyczenie pod blokadą urządzenia (transakcję otwiera BookingExecutor) */
     public Loan create(LoanCreateDto dto) {
-        Device device = deviceRepo.findById(dto.deviceId())
+        return bookingExecutor.execute(dto.deviceId(), () -> doCreate(dto));
+    }
+
+    /** Zwrot z notatką i flagą uszkodzenia; returnDate opcjonalny (gdy null → dziś). */
+    public Loan returnLoan(Long loanId, LocalDate returnDate, String note, boolean damaged) {
+        Long deviceId = loanRepo.findDeviceIdById(loanId)
+                .orElseThrow(() -> new IllegalStateException("Nie znaleziono wypożyczenia"));
+        return bookingExecutor.execute(deviceId, () -> doReturn(loanId, returnDate, note, damaged));
+    }
+
+    /**
+     * Wypożyczenie całego zestawu naraz: wszystkie urządzenia i użytkownicy wczytani dwoma zapytaniami,
+     * zapis w jednej transakcji (inserty paczkami JDBC). Błąd którejkolwiek pozycji odrzuca całość.
+     */
+    public List<Loan> createBatch(List<LoanCreateDto> dtos) {
+        Set<Long> deviceIds = dtos.stream().map(LoanCreateDto::deviceId).collect(Collectors.toSet());
+        return bookingExecutor.executeAll(deviceIds, () -> doCreateBatch(dtos, deviceIds));
+    }
+
+    private Loan doCreate(LoanCreateDto dto) {
+        Device device = deviceRepo.findForBookingById(dto.deviceId())
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono urządzenia"));
         var user = userRepo.findById(dto.userId())
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono użytkownika"));
 
+        var loan = newLoan(device, user, dto);
+        deviceRepo.save(device);
+
+        var saved = loanRepo.save(loan);
+        availabilityIndex.loanCreated(saved);
+        events.loans(DomainEventType.LOAN_CREATED, List.of(saved));
+        return saved;
+    }
+
+    private List<Loan> doCreateBatch(List<LoanCreateDto> dtos, Set<Long> deviceIds) {
+        Map<Long, Device> devices = deviceRepo.findForBookingByIdIn(deviceIds).stream()
+                .collect(Collectors.toMap(Device::getId, d -> d));
+        Map<Long, User> users = userRepo.findAllById(dtos.stream().map(LoanCreateDto::userId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(User::getId, u -> u));
+
+        // pozycje po kolei – urządzenie wypożyczone wcześniejszą pozycją jest już niedostępne dla kolejnej
+        Map<Integer, String> errors = new HashMap<>();
+        List<Loan> loans = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            var dto = dtos.get(i);
+            try {
+                Device device = devices.get(dto.deviceId());
+                if (device == null) throw new IllegalStateException("Nie znaleziono urządzenia");
+                User user = users.get(dto.userId());
+                if (user == null) throw new IllegalStateException("Nie znaleziono użytkownika");
+                loans.add(newLoan(device, user, dto));
+            } catch (IllegalStateException e) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) throw new BatchRejectedException(errors, dtos.size());
+
+        // zmiany statusów urządzeń zapisze flush (encje zarządzane)
+        var saved = loanRepo.saveAll(loans);
+        saved.forEach(availabilityIndex::loanCreated);
+        events.loans(DomainEventType.LOAN_CREATED, saved);
+        return saved;
+    }
+
+    /** Reguły wypożyczenia; gdy spełnione – nowe (niezapisane) wypożyczenie i urządzenie oznaczone jako wypożyczone */
+    private Loan newLoan(Device device, User user, LoanCreateDto dto) {
         if (device.getStatus() != DeviceStatus.AVAILABLE) {
             throw new IllegalStateException("Sprzęt niedostępny do wypożyczenia");
         }
@@ -52,23 +131,21 @@ public class LoanService {
         loan.setStartDate(dto.startDate());
         loan.setDueDate(dto.dueDate());
         loan.setStatus(LoanStatus.ACTIVE);
+        device.recordBooking();
 
         device.setStatus(DeviceStatus.LOANED);
-        deviceRepo.save(device);
-
-        return loanRepo.save(loan);
+        return loan;
     }
 
-    /** Zwrot z notatką i flagą uszkodzenia; returnDate opcjonalny (gdy null → dziś). */
-    @Transactional
-    public Loan returnLoan(Long loanId, LocalDate returnDate, String note, boolean damaged) {
+    private Loan doReturn(Long loanId, LocalDate returnDate, String note, boolean damaged) {
         var loan = loanRepo.findById(loanId)
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono wypożyczenia"));
 
-        if (loan.getReturnDate() != null || loan.getStatus() == LoanStatus.RETURNED || loan.getStatus() == LoanStatus.OVERDUE) {
+        if (loan.getReturnDate() != null || loan.getStatus() == LoanStatus.RETURNED) {
             throw new IllegalStateException("To wypożyczenie zostało już zwrócone.");
         }
-        if (loan.getStatus() != LoanStatus.ACTIVE) {
+        // OVERDUE bez daty zwrotu: termin minął i ExpirySweeper oznaczył je przed zwrotem
+        if (loan.getStatus() != LoanStatus.ACTIVE && loan.getStatus() != LoanStatus.OVERDUE) {
             throw new IllegalStateException("Wypożyczenie nie jest aktywne – nie można go zwrócić.");
         }
 
@@ -91,6 +168,9 @@ public class LoanService {
         device.setStatus(damaged ? DeviceStatus.DAMAGED : DeviceStatus.AVAILABLE);
         deviceRepo.save(device);
 
+        availabilityIndex.loanClosed(loan);
+        // status urządzenia w zdarzeniu: uszkodzony egzemplarz wypada z pul przydziału, sprawny zwalnia dni do terminu
+        events.loans(DomainEventType.LOAN_RETURNED, List.of(loan));
         return loanRepo.save(loan);
     }
 }
@@ -0,0 +1,278 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.MailQueueStatsDto;
+import pl.sobczak.wypozyczalnia.model.OutboundMail;
+import pl.sobczak.wypozyczalnia.model.OutboundMailStatus;
+import pl.sobczak.wypozyczalnia.repository.OutboundMailRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wysyłka z kolejki outbound_mail: kilka wątków roboczych bierze porcje (id z kolejki w pamięci
+ * albo zaległe z bazy), przejmuje je atomowo, wysyła jednym połączeniem SMTP z limitem tempa
+ * i zapisuje wynik. Błąd = ponowienie z wykładniczym odstępem, po max-attempts status FAILED.
+ * Metryki (MeterBinder): app.mail.queue.size, app.mail.sent, app.mail.retries i czas porcji SMTP app.mail.smtp.
+ */
+@Component
+public class MailDispatcher implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+    @Nullable
+    private final JavaMailSender mailSender;
+    private final boolean realMailEnabled;
+    private final OutboundMailRepository outboxRepo;
+    private final TransactionTemplate tx;
+
+    private final LinkedBlockingQueue<Long> queue;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration backoffMax;
+    private final Duration pollInterval;
+    private final Duration claimTimeout;
+    private final double ratePerSecond;
+    private final RateLimiter rateLimiter;
+
+    private final AtomicLong sentTotal = new AtomicLong();
+    private final AtomicLong retriesTotal = new AtomicLong();
+    private final AtomicLong latencySumMs = new AtomicLong();
+    private final AtomicLong latencyMaxMs = new AtomicLong();
+
+    private volatile ExecutorService executor;
+    private volatile boolean running;
+    @Nullable
+    private volatile Timer smtpTimer; // ustawiany w bindTo; bez rejestru metryk (testy) nie mierzymy
+
+    public MailDispatcher(ObjectProvider<JavaMailSender> mailSenderProvider,
+                          @Value("${spring.mail.username:}") String username,
+                          OutboundMailRepository outboxRepo,
+                          TransactionTemplate tx,
+                          @Value("${app.mail.workers:2}") int workers,
+                          @Value("${app.mail.queue-capacity:10000}") int queueCapacity,
+                          @Value("${app.mail.batch-size:50}") int batchSize,
+                          @Value("${app.mail.rate-per-second:10}") double ratePerSecond,
+                          @Value("${app.mail.max-attempts:5}") int maxAttempts,
+                          @Value("${app.mail.retry-backoff:PT30S}") Duration backoff,
+                          @Value("${app.mail.retry-backoff-max:PT1H}") Duration backoffMax,
+                          @Value("${app.mail.poll-interval:PT5S}") Duration pollInterval,
+                          @Value("${app.mail.claim-timeout:PT5M}") Duration claimTimeout) {
+        this.mailSender = mailSenderProvider.getIfAvailable(); // null, jeśli beana brak
+        this.realMailEnabled = (this.mailSender != null && username != null && !username.isBlank());
+        this.outboxRepo = outboxRepo;
+        this.tx = tx;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.ratePerSecond = ratePerSecond;
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+        this.backoffMax = backoffMax;
+        this.pollInterval = pollInterval;
+        this.claimTimeout = claimTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (running) return;
+        running = true;
+        AtomicInteger n = new AtomicInteger();
+        // wątki platformowe także w profilu virtual: SMTPTransport (Angus Mail) rozmawia z serwerem w metodach
+        // synchronized, więc wątek wirtualny byłby przypięty do nośnika przez całą porcję; workers jest i tak mało
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "mail-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workers; i++) executor.submit(this::workLoop);
+        log.info("Kolejka poczty: {} wątków, porcje po {}, limit {}/s (SMTP {})",
+                workers, batchSize, ratePerSecond > 0 ? ratePerSecond : "∞", realMailEnabled ? "włączony" : "wyłączony – tylko log");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("app.mail.queue.size", queue, LinkedBlockingQueue::size)
+                .description("Wiadomości czekające w kolejce w pamięci").register(registry);
+        FunctionCounter.builder("app.mail.sent", sentTotal, AtomicLong::get)
+                .description("Wiadomości wysłane").register(registry);
+        FunctionCounter.builder("app.mail.retries", retriesTotal, AtomicLong::get)
+                .description("Nieudane próby z ponowieniem").register(registry);
+        smtpTimer = Timer.builder("app.mail.smtp")
+                .description("Wysyłka porcji jednym połączeniem SMTP").register(registry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /** Świeżo zapisane wiadomości – wątki robocze wezmą je od razu; przy pełnej kolejce zostaną w bazie do odpytywania */
+    void signal(List<Long> ids) {
+        for (Long id : ids) {
+            if (!queue.offer(id)) break;
+        }
+    }
+
+    public MailQueueStatsDto stats() {
+        long sent = sentTotal.get();
+        return new MailQueueStatsDto(
+                queue.size(),
+                outboxRepo.countByStatus(OutboundMailStatus.PENDING) + outboxRepo.countByStatus(OutboundMailStatus.SENDING),
+                outboxRepo.countByStatus(OutboundMailStatus.FAILED),
+                sent,
+                retriesTotal.get(),
+                sent == 0 ? 0 : latencySumMs.get() / sent,
+                latencyMaxMs.get());
+    }
+
+    private void workLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<Long> ids = new ArrayList<>(batchSize);
+                Long first = queue.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    ids.add(first);
+                    queue.drainTo(ids, batchSize - 1);
+                } else {
+                    // nic świeżego – zaległe ponowienia, przepełnienie kolejki, stan sprzed restartu
+                    ids = outboxRepo.findDueIds(Instant.now(), Limit.of(batchSize));
+                }
+                if (!ids.isEmpty()) processBatch(ids);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Błąd pętli wysyłki poczty: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Przejęcie → wysyłka jednym połączeniem → zapis wyników */
+    void processBatch(List<Long> ids) throws InterruptedException {
+        String token = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        List<OutboundMail> claimed = tx.execute(s -> {
+            outboxRepo.claim(ids, token, now, now.plus(claimTimeout));
+            return outboxRepo.findByClaimTokenAndStatus(token, OutboundMailStatus.SENDING);
+        });
+        if (claimed == null || claimed.isEmpty()) return;
+
+        rateLimiter.acquire(claimed.size());
+        Timer timer = smtpTimer;
+        Map<OutboundMail, Exception> failures = timer != null ? timer.record(() -> deliver(claimed)) : deliver(claimed);
+
+        Instant done = Instant.now();
+        for (OutboundMail m : claimed) {
+            Exception error = failures.get(m);
+            m.setClaimToken(null);
+            m.setAttempts(m.getAttempts() + 1);
+            if (error == null) {
+                m.setStatus(OutboundMailStatus.SENT);
+                m.setSentAt(done);
+                m.setLastError(null);
+                recordLatency(Duration.between(m.getCreatedAt(), done).toMillis());
+            } else if (m.getAttempts() >= maxAttempts) {
+                m.setStatus(OutboundMailStatus.FAILED);
+                m.setLastError(truncate(error.getMessage()));
+                log.error("Wiadomość #{} do {} odrzucona po {} próbach: {}", m.getId(), m.getRecipient(), m.getAttempts(), error.getMessage());
+            } else {
+                m.setStatus(OutboundMailStatus.PENDING);
+                m.setNextAttemptAt(done.plus(backoffFor(m.getAttempts())));
+                m.setLastError(truncate(error.getMessage()));
+                retriesTotal.incrementAndGet();
+                log.warn("Wiadomość #{} do {}: próba {} nieudana, ponowienie o {}", m.getId(), m.getRecipient(), m.getAttempts(), m.getNextAttemptAt());
+            }
+        }
+        tx.executeWithoutResult(s -> outboxRepo.saveAll(claimed));
+    }
+
+    /** Zwraca wiadomości, których nie udało się wysłać (pusta mapa = wszystkie poszły) */
+    private Map<OutboundMail, Exception> deliver(List<OutboundMail> batch) {
+        Map<OutboundMail, Exception> failures = new IdentityHashMap<>();
+        if (!realMailEnabled) {
+            for (OutboundMail m : batch) {
+                log.info("[MAIL-LOG] to={} | subject={} | body={}", m.getRecipient(), m.getSubject(), m.getBody());
+            }
+            return failures;
+        }
+
+        Map<SimpleMailMessage, OutboundMail> byMessage = new IdentityHashMap<>();
+        for (OutboundMail m : batch) byMessage.put(toSimpleMessage(m), m);
+        try {
+            mailSender.send(byMessage.keySet().toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException ex) {
+            if (ex.getFailedMessages().isEmpty()) {
+                batch.forEach(m -> failures.put(m, ex)); // np. brak połączenia – cała porcja
+            } else {
+                ex.getFailedMessages().forEach((msg, err) -> {
+                    OutboundMail m = byMessage.get(msg);
+                    if (m != null) failures.put(m, err);
+                });
+            }
+        } catch (Exception ex) {
+            batch.forEach(m -> failures.put(m, ex));
+        }
+        return failures;
+    }
+
+    private Duration backoffFor(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration d = backoff.multipliedBy(factor);
+        return d.compareTo(backoffMax) > 0 ? backoffMax : d;
+    }
+
+    private void recordLatency(long ms) {
+        sentTotal.incrementAndGet();
+        latencySumMs.addAndGet(ms);
+        latencyMaxMs.accumulateAndGet(ms, Math::max);
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+
+    private static SimpleMailMessage toSimpleMessage(OutboundMail m) {
+        SimpleMailMessage msg = new SimpleMailMessage();
+        msg.setTo(m.getRecipient());
+        if (m.getReplyTo() != null && !m.getReplyTo().isBlank()) {
+            msg.setReplyTo(m.getReplyTo());
+        }
+        msg.setSubject(m.getSubject());
+        msg.setText(m.getBody());
+        return msg;
+    }
+}
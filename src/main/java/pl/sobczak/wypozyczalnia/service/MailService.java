@@ -1,43 +1,65 @@
 package pl.sobczak.wypozyczalnia.service;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.ObjectProvider;
-import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.lang.Nullable;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.model.OutboundMail;
+import pl.sobczak.wypozyczalnia.repository.OutboundMailRepository;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wysyłka poczty przez trwałą kolejkę: wiadomość trafia do outbound_mail (w transakcji wywołującego,
+ * jeśli jest), a właściwą wysyłkę SMTP robi w tle {@link MailDispatcher}. Wywołujący nie czeka na SMTP.
+ * Metryka app.mail.enqueue to czas zakolejkowania; wysyłkę SMTP mierzy MailDispatcher (app.mail.smtp).
+ */
+@Timed("app.mail.enqueue")
 @Service
 public class MailService {
-    private static final Logger log = LoggerFactory.getLogger(MailService.class);
 
-    // może być null, gdy starter/bean nie jest dostępny
-    @Nullable
-    private final JavaMailSender mailSender;
-    private final boolean realMailEnabled;
+    private final OutboundMailRepository outboxRepo;
+    private final MailDispatcher dispatcher;
+    private final TransactionTemplate tx;
 
-    public MailService(ObjectProvider<JavaMailSender> mailSenderProvider,
-                       @Value("${spring.mail.username:}") String username) {
-        this.mailSender = mailSenderProvider.getIfAvailable(); // null, jeśli beana brak
-        this.realMailEnabled = (this.mailSender != null && username != null && !username.isBlank());
+    public MailService(OutboundMailRepository outboxRepo, MailDispatcher dispatcher, TransactionTemplate tx) {
+        this.outboxRepo = outboxRepo;
+        this.dispatcher = dispatcher;
+        this.tx = tx;
     }
 
+    /** Wiadomość do wysyłki zbiorczej */
+    public record Message(String to, String subject, String body, @Nullable String replyTo) {}
+
     public void send(String to, String subject, String body, @Nullable String replyTo) {
-        // fallback do logów, jeśli nie ma prawdziwego nadawcy
-        if (!realMailEnabled) {
-            log.info("[MAIL-LOG] to={} | subject={} | body={}", to, subject, body);
-            return;
-        }
+        sendAll(List.of(new Message(to, subject, body, replyTo)));
+    }
 
-        SimpleMailMessage msg = new SimpleMailMessage();
-        msg.setTo(to);
-        if (replyTo != null && !replyTo.isBlank()) {
-            msg.setReplyTo(replyTo);
+    /**
+     * Zakolejkowanie porcji wiadomości. W transakcji wywołującego zapis jest atomowy z jego zmianami
+     * (np. ledger przypomnień); wątki wysyłki dostają sygnał dopiero po commicie. Zwraca liczbę zakolejkowanych.
+     */
+    public int sendAll(List<Message> messages) {
+        if (messages.isEmpty()) return 0;
+        Instant now = Instant.now();
+        List<OutboundMail> rows = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            var row = new OutboundMail();
+            row.setRecipient(m.to());
+            row.setSubject(m.subject());
+            row.setBody(m.body());
+            row.setReplyTo(m.replyTo());
+            row.setCreatedAt(now);
+            row.setNextAttemptAt(now);
+            rows.add(row);
         }
-        msg.setSubject(subject);
-        msg.setText(body);
-        mailSender.send(msg);
+        tx.executeWithoutResult(s -> {
+            var saved = outboxRepo.saveAll(rows);
+            var ids = saved.stream().map(OutboundMail::getId).toList();
+            AfterCommit.run(() -> dispatcher.signal(ids));
+        });
+        return rows.size();
     }
 }
@@ -0,0 +1,27 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.util.concurrent.TimeUnit;
+
+/** Prosty limiter "n zezwoleń na sekundę" – kolejne wywołania są rozkładane równo w czasie */
+final class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    /** permitsPerSecond <= 0 oznacza brak limitu */
+    RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0;
+    }
+
+    void acquire(int permits) throws InterruptedException {
+        if (intervalNanos == 0 || permits <= 0) return;
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFreeNanos < now) nextFreeNanos = now;
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += intervalNanos * permits;
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
@@ -1,52 +1,202 @@
 package pl.sobczak.wypozyczalnia.service;
 
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import pl.sobczak.wypozyczalnia.dto.ReservationAllocateDto;
 import pl.sobczak.wypozyczalnia.dto.ReservationCreateDto;
 import pl.sobczak.wypozyczalnia.model.*;
 import pl.sobczak.wypozyczalnia.repository.*;
 
+import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/** Metryka app.reservations: czas każdej publicznej operacji (tag method) */
+@Timed("app.reservations")
 @Service
 public class ReservationService {
 
+    private static final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
     private final ReservationRepository reservationRepo;
     private final DeviceRepository deviceRepo;
     private final UserRepository userRepo;
-    private final LoanRepository loanRepo;
+    private final DeviceAvailabilityIndex availabilityIndex;
+    private final DeviceSearchIndex searchIndex;
+    private final BookingExecutor bookingExecutor;
+    private final DomainEventOutbox events;
+    private final int allocationCandidates;
+    /** Urządzenia, które właśnie rezerwuje któryś przydział na tym węźle – równoległe przydziały biorą kolejne */
+    private final Set<Long> allocating = ConcurrentHashMap.newKeySet();
 
     public ReservationService(ReservationRepository reservationRepo,
                               DeviceRepository deviceRepo,
                               UserRepository userRepo,
-                              LoanRepository loanRepo) {
+                              DeviceAvailabilityIndex availabilityIndex,
+                              DeviceSearchIndex searchIndex,
+                              BookingExecutor bookingExecutor,
+                              DomainEventOutbox events,
+                              @Value("${app.allocation.candidates:5}") int allocationCandidates) {
         this.reservationRepo = reservationRepo;
         this.deviceRepo = deviceRepo;
         this.userRepo = userRepo;
-        this.loanRepo = loanRepo;
+        this.availabilityIndex = availabilityIndex;
+        this.searchIndex = searchIndex;
+        this.bookingExecutor = bookingExecutor;
+        this.events = events;
+        this.allocationCandidates = Math.max(1, allocationCandidates);
     }
 
-    @Transactional
+    /** Sprawdzenie kolizji i zapis pod blokadą urządzenia (transakcję otwiera BookingExecutor) */
     public Reservation create(ReservationCreateDto dto) {
-        var device = deviceRepo.findById(dto.deviceId())
+        return bookingExecutor.execute(dto.deviceId(), () -> doCreate(dto, false));
+    }
+
+    /**
+     * Rezerwacja dowolnego wolnego egzemplarza typu (i lokalizacji) jednym wywołaniem: pula z indeksu wyszukiwania,
+     * kandydaci od najmniej zużytego z indeksu dostępności, każdy rezerwowany jak zwykle pod blokadą urządzenia.
+     * Urządzenie rezerwowane właśnie przez równoległy przydział jest pomijane, a kandydat, którego rezerwacja
+     * się nie udała (np. zajął go inny węzeł) – zastępowany kolejnym; najwyżej app.allocation.candidates prób.
+     */
+    public Reservation allocate(ReservationAllocateDto dto) {
+        checkDates(dto.fromDate(), dto.toDate());
+        if (!searchIndex.isReady()) {
+            throw new IllegalStateException("Indeks wyszukiwania jest jeszcze ładowany, spróbuj za chwilę");
+        }
+        // użytkownik z cache L2; błąd użytkownika nie powinien przechodzić po kolejnych kandydatach
+        userRepo.findById(dto.userId()).orElseThrow(() -> new IllegalStateException("Nie znaleziono użytkownika"));
+
+        long[] pool = searchIndex.pool(dto.type(), dto.location());
+        if (pool.length == 0) throw new IllegalStateException("Brak sprawnych urządzeń tego typu w podanej lokalizacji");
+        Set<Long> tried = new HashSet<>();
+        while (tried.size() < allocationCandidates) {
+            List<Long> candidates = availabilityIndex.leastUsedFree(pool, dto.fromDate(), dto.toDate(),
+                    allocationCandidates - tried.size(), id -> tried.contains(id) || allocating.contains(id));
+            if (candidates.isEmpty()) break;
+            for (Long deviceId : candidates) {
+                if (!allocating.add(deviceId)) continue;
+                tried.add(deviceId);
+                var one = new ReservationCreateDto(deviceId, dto.userId(), dto.fromDate(), dto.toDate());
+                try {
+                    return allocateDevice(one, r -> {});
+                } catch (IllegalStateException e) {
+                    log.debug("Przydział: urządzenie {} odpadło ({}), próbuję następnego", deviceId, e.getMessage());
+                } finally {
+                    allocating.remove(deviceId);
+                }
+            }
+        }
+        if (tried.isEmpty()) throw new IllegalStateException("Brak wolnego urządzenia w wybranym terminie");
+        throw new IllegalStateException("Wolne urządzenia zostały w międzyczasie zajęte, spróbuj ponownie");
+    }
+
+    /**
+     * Rezerwacja urządzenia wybranego przez serwer (przydział z puli, lista oczekujących): pomija niesprawne,
+     * a sameTransaction działa w transakcji rezerwacji – wyjątek z niego ją wycofuje.
+     */
+    public Reservation allocateDevice(ReservationCreateDto dto, Consumer<Reservation> sameTransaction) {
+        return bookingExecutor.execute(dto.deviceId(), () -> {
+            var r = doCreate(dto, true);
+            sameTransaction.accept(r);
+            return r;
+        });
+    }
+
+    public Reservation cancel(Long id) {
+        Long deviceId = reservationRepo.findDeviceIdById(id)
+                .orElseThrow(() -> new IllegalStateException("Nie znaleziono rezerwacji"));
+        return bookingExecutor.execute(deviceId, () -> doCancel(id));
+    }
+
+    /**
+     * Rezerwacja całego zestawu naraz: urządzenia i użytkownicy wczytani dwoma zapytaniami,
+     * zapis w jednej transakcji (inserty paczkami JDBC). Błąd którejkolwiek pozycji odrzuca całość.
+     */
+    public List<Reservation> createBatch(List<ReservationCreateDto> dtos) {
+        Set<Long> deviceIds = dtos.stream().map(ReservationCreateDto::deviceId).collect(Collectors.toSet());
+        return bookingExecutor.executeAll(deviceIds, () -> doCreateBatch(dtos, deviceIds));
+    }
+
+    private Reservation doCreate(ReservationCreateDto dto, boolean inServiceOnly) {
+        var device = deviceRepo.findForBookingById(dto.deviceId())
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono urządzenia"));
+        if (inServiceOnly && device.getStatus() != null && device.getStatus().isOutOfService()) {
+            throw new IllegalStateException("Urządzenie jest niesprawne");
+        }
         var user = userRepo.findById(dto.userId())
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono użytkownika"));
 
-        if (dto.toDate().isBefore(dto.fromDate()) || dto.toDate().isEqual(dto.fromDate()))
-            throw new IllegalStateException("Data 'do' musi być po dacie 'od'");
+        var r = newReservation(device, user, dto);
+        deviceRepo.save(device);
 
-        long dni = ChronoUnit.DAYS.between(dto.fromDate(), dto.toDate());
-        if (dni > 30) throw new IllegalStateException("Maksymalny czas rezerwacji to 30 dni");
+        var saved = reservationRepo.save(r);
+        availabilityIndex.reservationCreated(saved);
+        events.reservations(DomainEventType.RESERVATION_CREATED, List.of(saved));
+        return saved;
+    }
+
+    private List<Reservation> doCreateBatch(List<ReservationCreateDto> dtos, Set<Long> deviceIds) {
+        Map<Long, Device> devices = deviceRepo.findForBookingByIdIn(deviceIds).stream()
+                .collect(Collectors.toMap(Device::getId, d -> d));
+        Map<Long, User> users = userRepo.findAllById(dtos.stream().map(ReservationCreateDto::userId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(User::getId, u -> u));
+
+        // indeks dostępności widzi zapisy dopiero po commicie – kolizje w obrębie paczki sprawdzamy tutaj
+        Map<Long, List<Reservation>> accepted = new HashMap<>();
+        Map<Integer, String> errors = new HashMap<>();
+        List<Reservation> reservations = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            var dto = dtos.get(i);
+            try {
+                Device device = devices.get(dto.deviceId());
+                if (device == null) throw new IllegalStateException("Nie znaleziono urządzenia");
+                User user = users.get(dto.userId());
+                if (user == null) throw new IllegalStateException("Nie znaleziono użytkownika");
+                var sameDevice = accepted.computeIfAbsent(device.getId(), k -> new ArrayList<>());
+                for (Reservation other : sameDevice) {
+                    if (!dto.fromDate().isAfter(other.getToDate()) && !dto.toDate().isBefore(other.getFromDate())) {
+                        throw new IllegalStateException("Istnieje już rezerwacja na ten termin");
+                    }
+                }
+                var r = newReservation(device, user, dto);
+                sameDevice.add(r);
+                reservations.add(r);
+            } catch (IllegalStateException e) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) throw new BatchRejectedException(errors, dtos.size());
+
+        // zmiany statusów urządzeń zapisze flush (encje zarządzane)
+        var saved = reservationRepo.saveAll(reservations);
+        saved.forEach(availabilityIndex::reservationCreated);
+        events.reservations(DomainEventType.RESERVATION_CREATED, saved);
+        return saved;
+    }
+
+    /** Reguły rezerwacji i kolizje z zapisanymi terminami; gdy spełnione – nowa (niezapisana) rezerwacja */
+    private Reservation newReservation(Device device, User user, ReservationCreateDto dto) {
+        checkDates(dto.fromDate(), dto.toDate());
 
-        // kolizja z inną aktywną rezerwacją
-        boolean overlapsReservation = reservationRepo
-                .existsActiveReservationOverlapping(device.getId(), dto.fromDate(), dto.toDate());
+        // kolizja z inną aktywną rezerwacją (indeks w pamięci; baza, gdy indeks się ładuje albo nie zna wersji urządzenia)
+        boolean overlapsReservation = availabilityIndex
+                .hasReservationOverlap(device, dto.fromDate(), dto.toDate());
         if (overlapsReservation) throw new IllegalStateException("Istnieje już rezerwacja na ten termin");
 
         // kolizja z aktywnym wypożyczeniem w tym okresie
-        boolean overlapsLoan = loanRepo
-                .existsActiveLoanOverlapping(device.getId(), dto.fromDate(), dto.toDate(), LoanStatus.ACTIVE);
+        boolean overlapsLoan = availabilityIndex
+                .hasLoanOverlap(device, dto.fromDate(), dto.toDate());
         if (overlapsLoan) throw new IllegalStateException("W wybranym okresie sprzęt jest wypożyczony");
 
         var r = new Reservation();
@@ -55,22 +205,29 @@ public class ReservationService {
         r.setFromDate(dto.fromDate());
         r.setToDate(dto.toDate());
         r.setStatus(ReservationStatus.ACTIVE);
+        device.recordBooking();
 
         // jeśli sprzęt jest dostępny, oznacz jako zarezerwowany (prosta wersja)
         if (device.getStatus() == DeviceStatus.AVAILABLE) {
             device.setStatus(DeviceStatus.RESERVED);
-            deviceRepo.save(device);
         }
+        return r;
+    }
 
-        return reservationRepo.save(r);
+    static void checkDates(LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || to.isEqual(from))
+            throw new IllegalStateException("Data 'do' musi być po dacie 'od'");
+
+        long dni = ChronoUnit.DAYS.between(from, to);
+        if (dni > 30) throw new IllegalStateException("Maksymalny czas rezerwacji to 30 dni");
     }
 
-    @Transactional
-    public Reservation cancel(Long id) {
+    private Reservation doCancel(Long id) {
         var r = reservationRepo.findById(id)
                 .orElseThrow(() -> new IllegalStateException("Nie znaleziono rezerwacji"));
         if (r.getStatus() != ReservationStatus.ACTIVE) return r;
         r.setStatus(ReservationStatus.CANCELED);
+        availabilityIndex.reservationClosed(r);
 
         // jeśli po anulacji urządzenie nie ma już innych aktywnych rezerwacji -> udostępnij
         boolean hasOther = reservationRepo
@@ -79,6 +236,7 @@ public class ReservationService {
             r.getDevice().setStatus(DeviceStatus.AVAILABLE);
             deviceRepo.save(r.getDevice());
         }
+        events.reservations(DomainEventType.RESERVATION_CANCELED, List.of(r)); // m.in. lista oczekujących
         return reservationRepo.save(r);
     }
 }
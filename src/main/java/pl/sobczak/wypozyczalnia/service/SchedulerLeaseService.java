@@ -0,0 +1,75 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.model.SchedulerLease;
+import pl.sobczak.wypozyczalnia.repository.SchedulerLeaseRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Wybór lidera przez dzierżawę w bazie: zadanie cykliczne wykonuje węzeł, który zaktualizował wiersz
+ * scheduler_lease. Dzierżawa wygasa sama (TTL), więc padnięty węzeł nie blokuje reszty.
+ */
+@Service
+public class SchedulerLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerLeaseService.class);
+
+    private final SchedulerLeaseRepository leaseRepo;
+    private final TransactionTemplate tx;
+    /** Identyfikator tego węzła, np. "12345@host/8c1f…" */
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    public SchedulerLeaseService(SchedulerLeaseRepository leaseRepo, PlatformTransactionManager txManager) {
+        this.leaseRepo = leaseRepo;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /** Identyfikator węzła – także pochodzenie zdarzeń domenowych (DomainEventOutbox) */
+    public String owner() {
+        return owner;
+    }
+
+    public boolean tryAcquire(String name, Duration ttl) {
+        Instant now = Instant.now();
+        Instant until = now.plus(ttl);
+        try {
+            Integer updated = tx.execute(s -> {
+                if (!leaseRepo.existsById(name)) {
+                    leaseRepo.saveAndFlush(new SchedulerLease(name, owner, until));
+                    return 1;
+                }
+                return leaseRepo.tryAcquire(name, owner, now, until);
+            });
+            return updated != null && updated > 0;
+        } catch (DataIntegrityViolationException e) {
+            // inny węzeł w tej samej chwili utworzył wiersz – on jest liderem
+            log.debug("Dzierżawa {} przejęta równolegle przez inny węzeł", name);
+            return false;
+        }
+    }
+
+    /** Zwolnienie po zakończeniu; completed=true zapisuje czas udanego przebiegu */
+    public void release(String name, boolean completed) {
+        Instant now = Instant.now();
+        tx.executeWithoutResult(s -> {
+            if (completed) leaseRepo.markCompleted(name, owner, now);
+            leaseRepo.release(name, owner, now);
+        });
+    }
+
+    public Optional<Instant> lastCompletedAt(String name) {
+        return leaseRepo.findById(name).map(SchedulerLease::getLastCompletedAt);
+    }
+}
@@ -0,0 +1,139 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indeks jednej kolumny tekstowej (np. nazwa, numer seryjny).
+ * Trzyma słownik różnych wartości (małymi literami), listę dokumentów per wartość
+ * oraz trigramy → wartości, więc wyszukanie podciągu sprawdza tylko kandydatów z najrzadszego trigramu.
+ * Nie jest wątkowo bezpieczny – synchronizację zapewnia DeviceSearchIndex.
+ */
+final class ValueIndex {
+
+    /** Rosnąca tablica intów bez pudełkowania */
+    static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void removeValue(int v) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == v) {
+                    System.arraycopy(data, i + 1, data, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<IntList> docsByValue = new ArrayList<>();
+    private final Map<Long, IntList> valuesByTrigram = new HashMap<>();
+    private int[] valueOfDoc = new int[0];
+
+    static String normalize(String raw) {
+        return raw == null ? null : raw.toLowerCase(Locale.ROOT);
+    }
+
+    /** Przypisanie wartości dokumentowi (nowy dokument albo zmiana wartości) */
+    void set(int doc, String raw) {
+        if (doc >= valueOfDoc.length) {
+            int old = valueOfDoc.length;
+            valueOfDoc = Arrays.copyOf(valueOfDoc, Math.max(doc + 1, Math.max(16, old * 2)));
+            Arrays.fill(valueOfDoc, old, valueOfDoc.length, -1);
+        }
+        String value = normalize(raw);
+        int current = valueOfDoc[doc];
+        // ta sama wartość (np. rozgrzewanie trafia na urządzenie dodane już po commicie) – removeValue jest liniowe
+        if (current >= 0 && values.get(current).equals(value)) return;
+        if (current >= 0) {
+            docsByValue.get(current).removeValue(doc);
+        }
+        if (value == null) {
+            valueOfDoc[doc] = -1;
+            return;
+        }
+        int ord = ordinals.computeIfAbsent(value, this::register);
+        docsByValue.get(ord).add(doc);
+        valueOfDoc[doc] = ord;
+    }
+
+    private int register(String value) {
+        int ord = values.size();
+        values.add(value);
+        docsByValue.add(new IntList());
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            long key = trigram(value, i);
+            if (seen.add(key)) valuesByTrigram.computeIfAbsent(key, k -> new IntList()).add(ord);
+        }
+        return ord;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Wartości zawierające podciąg term (już znormalizowany).
+     * Dla term >= 3 znaki kandydaci pochodzą z najrzadszego trigramu; krótsze przeglądają cały słownik.
+     */
+    IntList valuesContaining(String term) {
+        var out = new IntList();
+        if (term.length() < 3) {
+            for (int ord = 0; ord < values.size(); ord++) {
+                if (values.get(ord).contains(term)) out.add(ord);
+            }
+            return out;
+        }
+        IntList rarest = null;
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            IntList p = valuesByTrigram.get(trigram(term, i));
+            if (p == null) return out;
+            if (rarest == null || p.size() < rarest.size()) rarest = p;
+        }
+        for (int i = 0; i < rarest.size(); i++) {
+            int ord = rarest.get(i);
+            if (values.get(ord).contains(term)) out.add(ord);
+        }
+        return out;
+    }
+
+    String value(int ord) {
+        return values.get(ord);
+    }
+
+    IntList docs(int ord) {
+        return docsByValue.get(ord);
+    }
+
+    /** Wartość dokumentu albo -1 */
+    int valueOf(int doc) {
+        return doc < valueOfDoc.length ? valueOfDoc[doc] : -1;
+    }
+
+    int distinctValues() {
+        return values.size();
+    }
+}
@@ -0,0 +1,93 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Kolejka listy oczekujących w pamięci: wpisy pogrupowane po (typ, lokalizacja), w grupie posortowane po dacie "od".
+ * Zwolnienie terminu urządzenia przegląda tylko grupy, do których urządzenie pasuje (te same reguły podciągu co pule
+ * DeviceSearchIndex), i tylko wpisy nachodzące na zwolnione dni – jak IntervalSet, bez skanowania całej kolejki.
+ * Kandydaci wracają w kolejności zapisu: najdłużej czekający pierwszy.
+ */
+final class WaitlistQueue {
+
+    /** Wpis: typ i lokalizacja małymi literami (lokalizacja null = dowolna), daty jako epoch day, czasy w ms */
+    record Entry(long id, long userId, String type, String location, long from, long to,
+                 long createdAt, long expiresAt) {
+
+        static Entry of(long id, long userId, String type, String location, long from, long to,
+                        long createdAt, long expiresAt) {
+            String loc = location == null || location.isBlank() ? null : ValueIndex.normalize(location);
+            return new Entry(id, userId, ValueIndex.normalize(type), loc, from, to, createdAt, expiresAt);
+        }
+    }
+
+    private static final Comparator<Entry> FIFO = Comparator.comparingLong(Entry::createdAt).thenComparingLong(Entry::id);
+
+    private record GroupKey(String type, String location) {}
+
+    private static final class Group {
+        final NavigableMap<Long, List<Entry>> byFrom = new TreeMap<>();
+        long maxLength;
+        int size;
+    }
+
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    private final Map<Long, Entry> byId = new HashMap<>();
+
+    /** Dodanie wpisu; false gdy już jest (rozgrzewanie i odświeżanie mogą przynieść ten sam wpis) */
+    synchronized boolean add(Entry e) {
+        if (byId.putIfAbsent(e.id(), e) != null) return false;
+        var g = groups.computeIfAbsent(new GroupKey(e.type(), e.location()), k -> new Group());
+        g.byFrom.computeIfAbsent(e.from(), k -> new ArrayList<>(1)).add(e);
+        g.maxLength = Math.max(g.maxLength, e.to() - e.from());
+        g.size++;
+        return true;
+    }
+
+    synchronized boolean remove(long id) {
+        Entry e = byId.remove(id);
+        if (e == null) return false;
+        var key = new GroupKey(e.type(), e.location());
+        var g = groups.get(key);
+        List<Entry> bucket = g.byFrom.get(e.from());
+        bucket.remove(e);
+        if (bucket.isEmpty()) g.byFrom.remove(e.from());
+        if (--g.size == 0) groups.remove(key);
+        return true;
+    }
+
+    /**
+     * Nieprzeterminowane wpisy, którym może pomóc urządzenie (deviceType, deviceLocation) wolne w [from, to]:
+     * fraza typu (i lokalizacji) wpisu zawiera się w wartości urządzenia, a termin wpisu nachodzi na zwolnione dni.
+     * Czy urządzenie jest wolne w całym terminie wpisu, sprawdza wywołujący (indeks dostępności).
+     */
+    synchronized List<Entry> candidates(String deviceType, String deviceLocation, long from, long to, long now) {
+        String type = ValueIndex.normalize(deviceType);
+        String location = ValueIndex.normalize(deviceLocation);
+        List<Entry> out = new ArrayList<>();
+        if (type == null || from > to) return out;
+        for (var g : groups.entrySet()) {
+            GroupKey key = g.getKey();
+            if (!type.contains(key.type())) continue;
+            if (key.location() != null && (location == null || !location.contains(key.location()))) continue;
+            Group group = g.getValue();
+            for (List<Entry> bucket : group.byFrom.subMap(from - group.maxLength, true, to, true).values()) {
+                for (Entry e : bucket) {
+                    if (e.to() >= from && e.expiresAt() > now) out.add(e);
+                }
+            }
+        }
+        out.sort(FIFO);
+        return out;
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+}
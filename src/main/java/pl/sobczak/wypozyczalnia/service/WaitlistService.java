@@ -0,0 +1,335 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.dto.ReservationAllocateDto;
+import pl.sobczak.wypozyczalnia.dto.ReservationCreateDto;
+import pl.sobczak.wypozyczalnia.dto.WaitlistRowDto;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.model.WaitlistEntry;
+import pl.sobczak.wypozyczalnia.model.WaitlistStatus;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.DomainEventRepository;
+import pl.sobczak.wypozyczalnia.repository.UserRepository;
+import pl.sobczak.wypozyczalnia.repository.WaitlistEntryRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lista oczekujących: gdy w terminie nie ma wolnego urządzenia typu (i lokalizacji), użytkownik zapisuje się
+ * zamiast ponawiać rezerwację ręcznie. Wpisy są w bazie (waitlist_entry) i w kolejce w pamięci ({@link WaitlistQueue}).
+ * Anulowanie rezerwacji i zwrot przed terminem przychodzą jako zdarzenia domenowe ({@link DomainEventBatch}); jeden wątek dopasowujący
+ * rezerwuje zwolnione urządzenie dla najdłużej czekających pasujących wpisów i wysyła mail – bez odpytywania w pętli.
+ * Wpis żyje app.waitlist.ttl (najdłużej do dnia "od"); wygasłe zamyka ExpirySweeper.
+ */
+@Service
+public class WaitlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistService.class);
+
+    private static final int WARM_UP_CHUNK = 5000;
+    /** Zakładka odświeżania: wpis zatwierdzony chwilę po swoim created_at nie może przepaść */
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private static final String PROMOTED_BODY = """
+            Cześć %s,
+
+            zwolniło się urządzenie, na które czekasz na liście oczekujących – zarezerwowaliśmy je dla Ciebie:
+
+            • Urządzenie: %s
+            • Numer seryjny: %s
+            • Lokalizacja: %s
+            • Termin: %s – %s
+            • Numer rezerwacji: %d
+
+            Jeśli sprzęt nie jest już potrzebny, anuluj rezerwację – trafi do kolejnej osoby z listy.
+
+            Pozdrawiamy,
+            Wypożyczalnia Uczelniana
+            """;
+
+    private static final String EXPIRED_BODY = """
+            Cześć %s,
+
+            Twój wpis na liście oczekujących wygasł – w tym czasie nie zwolniło się żadne pasujące urządzenie:
+
+            • Typ: %s
+            • Lokalizacja: %s
+            • Termin: %s – %s
+
+            Możesz zapisać się ponownie albo wybrać inny termin.
+
+            Pozdrawiamy,
+            Wypożyczalnia Uczelniana
+            """;
+
+    private final WaitlistEntryRepository waitlistRepo;
+    private final DomainEventRepository eventRepo;
+    private final UserRepository userRepo;
+    private final DeviceRepository deviceRepo;
+    private final ReservationService reservationService;
+    private final DeviceSearchIndex searchIndex;
+    private final DeviceAvailabilityIndex availabilityIndex;
+    private final MailService mailService;
+    private final TransactionTemplate tx;
+    private final Duration ttl;
+    private final int maxPerUser;
+    private final WaitlistQueue queue = new WaitlistQueue();
+    private final Counter promoted;
+    private final Timer matchTimer;
+
+    private volatile ExecutorService matcher;
+    private Instant lastRefresh; // tylko wątek dopasowujący (ustawiane przed jego startem)
+
+    public WaitlistService(WaitlistEntryRepository waitlistRepo,
+                           DomainEventRepository eventRepo,
+                           UserRepository userRepo,
+                           DeviceRepository deviceRepo,
+                           ReservationService reservationService,
+                           DeviceSearchIndex searchIndex,
+                           DeviceAvailabilityIndex availabilityIndex,
+                           MailService mailService,
+                           TransactionTemplate tx,
+                           MeterRegistry registry,
+                           @Value("${app.waitlist.ttl:P7D}") Duration ttl,
+                           @Value("${app.waitlist.max-per-user:3}") int maxPerUser) {
+        this.waitlistRepo = waitlistRepo;
+        this.eventRepo = eventRepo;
+        this.userRepo = userRepo;
+        this.deviceRepo = deviceRepo;
+        this.reservationService = reservationService;
+        this.searchIndex = searchIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.mailService = mailService;
+        this.tx = tx;
+        this.ttl = ttl;
+        this.maxPerUser = Math.max(1, maxPerUser);
+        Gauge.builder("app.waitlist.size", queue, WaitlistQueue::size)
+                .description("Wpisy czekające na liście oczekujących").register(registry);
+        this.promoted = Counter.builder("app.waitlist.promoted")
+                .description("Wpisy, które dostały zwolnione urządzenie").register(registry);
+        this.matchTimer = Timer.builder("app.waitlist.match")
+                .description("Dopasowanie zwolnionego terminu do listy oczekujących").register(registry);
+    }
+
+    /** Rozgrzanie kolejki porcjami po id, potem start wątku dopasowującego */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        lastRefresh = eventRepo.databaseNow();
+        long afterId = 0;
+        while (true) {
+            List<WaitlistRowDto> rows = waitlistRepo.findWaitingRows(afterId, Limit.of(WARM_UP_CHUNK));
+            rows.forEach(r -> queue.add(entry(r)));
+            if (rows.size() < WARM_UP_CHUNK) break;
+            afterId = rows.get(rows.size() - 1).id();
+        }
+        matcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "waitlist-matcher");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Lista oczekujących gotowa: {} wpisów ({} ms)", queue.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (matcher != null) matcher.shutdownNow();
+    }
+
+    /**
+     * Zapis na listę – tylko gdy w terminie faktycznie nie ma wolnego urządzenia (inaczej wystarczy allocate).
+     * Limit app.waitlist.max-per-user oczekujących wpisów na użytkownika.
+     */
+    public WaitlistEntry join(ReservationAllocateDto dto) {
+        ReservationService.checkDates(dto.fromDate(), dto.toDate());
+        if (dto.fromDate().isBefore(LocalDate.now())) throw new IllegalStateException("Termin już się zaczął");
+        if (!searchIndex.isReady()) {
+            throw new IllegalStateException("Indeks wyszukiwania jest jeszcze ładowany, spróbuj za chwilę");
+        }
+        var user = userRepo.findById(dto.userId())
+                .orElseThrow(() -> new IllegalStateException("Nie znaleziono użytkownika"));
+
+        long[] pool = searchIndex.pool(dto.type(), dto.location());
+        if (pool.length == 0) throw new IllegalStateException("Brak sprawnych urządzeń tego typu w podanej lokalizacji");
+        if (!availabilityIndex.leastUsedFree(pool, dto.fromDate(), dto.toDate(), 1, id -> false).isEmpty()) {
+            throw new IllegalStateException("W tym terminie jest wolne urządzenie – zarezerwuj je (POST /api/reservations/allocate)");
+        }
+        if (waitlistRepo.countByUser_IdAndStatus(user.getId(), WaitlistStatus.WAITING) >= maxPerUser) {
+            throw new IllegalStateException("Na liście oczekujących można mieć najwyżej " + maxPerUser + " wpisy");
+        }
+
+        Instant termStart = dto.fromDate().atStartOfDay(ZoneId.systemDefault()).toInstant();
+        var e = new WaitlistEntry();
+        e.setUser(user);
+        e.setType(dto.type());
+        e.setLocation(dto.location() == null || dto.location().isBlank() ? null : dto.location());
+        e.setFromDate(dto.fromDate());
+        e.setToDate(dto.toDate());
+        return tx.execute(s -> {
+            // czas z bazy: inne węzły szukają nowych wpisów po created_at względem zegara bazy (refresh)
+            Instant now = eventRepo.databaseNow();
+            e.setCreatedAt(now);
+            e.setExpiresAt(now.plus(ttl).isBefore(termStart) ? now.plus(ttl) : termStart);
+            var saved = waitlistRepo.save(e);
+            AfterCommit.run(() -> queue.add(entry(saved)));
+            return saved;
+        });
+    }
+
+    public WaitlistEntry cancel(Long id) {
+        return tx.execute(s -> {
+            var e = waitlistRepo.findById(id)
+                    .orElseThrow(() -> new IllegalStateException("Nie znaleziono wpisu listy oczekujących"));
+            if (e.getStatus() != WaitlistStatus.WAITING) return e;
+            e.setStatus(WaitlistStatus.CANCELED);
+            AfterCommit.run(() -> queue.remove(id));
+            return e;
+        });
+    }
+
+    public Page<WaitlistEntry> list(Long userId, Pageable pageable) {
+        return userId != null ? waitlistRepo.findByUser_Id(userId, pageable) : waitlistRepo.findAll(pageable);
+    }
+
+    /**
+     * Zwolnione terminy ze zdarzeń domenowych tego węzła (anulowana rezerwacja, sprawny zwrot) – dopasowanie w tle,
+     * wywołujący nie czeka. Zdarzenia innych węzłów dopasowuje węzeł, który je zapisał.
+     */
+    @EventListener
+    public void onDomainEvents(DomainEventBatch batch) {
+        var ex = matcher;
+        if (ex == null || !batch.local()) return;
+        LocalDate today = LocalDate.now();
+        for (DomainEventDto e : batch.events()) {
+            if (!e.type().closesInterval() || e.toDate().isBefore(today)) continue;
+            if (e.deviceStatus() != null && e.deviceStatus().isOutOfService()) continue;
+            ex.execute(() -> {
+                try {
+                    matchTimer.record(() -> match(e));
+                } catch (RuntimeException err) {
+                    log.warn("Lista oczekujących: dopasowanie dla urządzenia {} nie powiodło się", e.deviceId(), err);
+                }
+            });
+        }
+    }
+
+    /**
+     * Najdłużej czekające wpisy, którym zwolnione urządzenie pasuje w całym ich terminie, dostają rezerwację.
+     * Przydział wpisu i rezerwacja w jednej transakcji pod blokadą urządzenia; wpis już nieaktualny
+     * (anulowany, przydzielony na innym węźle) wycofuje rezerwację i wypada z kolejki.
+     */
+    int match(DomainEventDto e) {
+        refresh();
+        var device = deviceRepo.findById(e.deviceId()).orElse(null); // cache L2
+        if (device == null) return 0;
+        // zwrot przed terminem zwalnia dni od dziś do terminu zwrotu, anulowanie – cały termin rezerwacji
+        long today = LocalDate.now().toEpochDay();
+        long from = e.type() == DomainEventType.LOAN_RETURNED ? today : Math.max(e.fromDate().toEpochDay(), today);
+        int count = 0;
+        for (var w : queue.candidates(device.getType(), device.getLocation(), from, e.toDate().toEpochDay(), System.currentTimeMillis())) {
+            LocalDate f = LocalDate.ofEpochDay(w.from()), t = LocalDate.ofEpochDay(w.to());
+            if (availabilityIndex.hasReservationOverlap(e.deviceId(), f, t)
+                    || availabilityIndex.hasLoanOverlap(e.deviceId(), f, t)) continue;
+            try {
+                reservationService.allocateDevice(new ReservationCreateDto(e.deviceId(), w.userId(), f, t), r -> {
+                    if (waitlistRepo.markPromoted(w.id(), r.getId()) == 0) throw new NoLongerWaiting();
+                    mailService.send(r.getUser().getEmail(), promotedSubject(r), promotedBody(r), null);
+                });
+                queue.remove(w.id());
+                promoted.increment();
+                count++;
+            } catch (NoLongerWaiting ex) {
+                queue.remove(w.id());
+            } catch (IllegalStateException ex) {
+                log.debug("Lista oczekujących: wpis {} nie dostał urządzenia {} ({})", w.id(), e.deviceId(), ex.getMessage());
+            }
+        }
+        if (count > 0) log.info("Lista oczekujących: urządzenie {} przydzielone {} wpisom", e.deviceId(), count);
+        return count;
+    }
+
+    /**
+     * Wpisy dodane od ostatniego dopasowania – z tego węzła są już w kolejce, z innych dochodzą tutaj.
+     * created_at i znacznik odpytania z zegara bazy, więc rozjazd zegarów węzłów niczego nie gubi;
+     * zakładka łapie wpisy zatwierdzone chwilę po zapisaniu swojego created_at.
+     */
+    private void refresh() {
+        Instant now = eventRepo.databaseNow();
+        waitlistRepo.findWaitingCreatedSince(lastRefresh.minus(REFRESH_OVERLAP)).forEach(r -> queue.add(entry(r)));
+        lastRefresh = now;
+    }
+
+    /** Sprzątanie terminów (ExpirySweeper): wpisy po czasie życia → EXPIRED z mailem, porcjami */
+    public int expire(Instant now, int chunkSize) {
+        int total = 0;
+        while (true) {
+            List<WaitlistRowDto> chunk = waitlistRepo.findExpiredRows(now, Limit.of(chunkSize));
+            if (chunk.isEmpty()) break;
+            total += tx.execute(s -> {
+                int n = waitlistRepo.closeWaiting(chunk.stream().map(WaitlistRowDto::id).toList(), WaitlistStatus.EXPIRED);
+                mailService.sendAll(chunk.stream().map(WaitlistService::expiredMail).toList());
+                AfterCommit.run(() -> chunk.forEach(r -> queue.remove(r.id())));
+                return n;
+            });
+            if (chunk.size() < chunkSize) break;
+        }
+        return total;
+    }
+
+    private static String promotedSubject(Reservation r) {
+        return "Lista oczekujących: zarezerwowano \"" + r.getDevice().getName() + "\" (" + r.getFromDate() + " – " + r.getToDate() + ")";
+    }
+
+    private static String promotedBody(Reservation r) {
+        var d = r.getDevice();
+        return PROMOTED_BODY.formatted(r.getUser().getUsername(), d.getName(), d.getSerialNumber(),
+                d.getLocation() == null ? "-" : d.getLocation(), r.getFromDate(), r.getToDate(), r.getId());
+    }
+
+    private static MailService.Message expiredMail(WaitlistRowDto r) {
+        String subject = "Lista oczekujących: wpis wygasł (" + r.type() + ", " + r.fromDate() + " – " + r.toDate() + ")";
+        String body = EXPIRED_BODY.formatted(r.username(), r.type(), r.location() == null ? "dowolna" : r.location(),
+                r.fromDate(), r.toDate());
+        return new MailService.Message(r.email(), subject, body, null);
+    }
+
+    private static WaitlistQueue.Entry entry(WaitlistRowDto r) {
+        return WaitlistQueue.Entry.of(r.id(), r.userId(), r.type(), r.location(), r.fromDate().toEpochDay(),
+                r.toDate().toEpochDay(), r.createdAt().toEpochMilli(), r.expiresAt().toEpochMilli());
+    }
+
+    private static WaitlistQueue.Entry entry(WaitlistEntry e) {
+        return WaitlistQueue.Entry.of(e.getId(), e.getUser().getId(), e.getType(), e.getLocation(),
+                e.getFromDate().toEpochDay(), e.getToDate().toEpochDay(),
+                e.getCreatedAt().toEpochMilli(), e.getExpiresAt().toEpochMilli());
+    }
+
+    /** Wpis przestał czekać, zanim dostał urządzenie – wycofuje rezerwację */
+    private static final class NoLongerWaiting extends IllegalStateException {
+        NoLongerWaiting() {
+            super("Wpis nie czeka już na liście");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Kolumny, po których sortuje tryb kursorowy listy urządzeń, muszą być niepuste: porównanie keyset
+-- (name > :name or name = :name and id > :id) pomija wiersze z NULL, więc znikałyby one ze stronicowania.
+-- Formularz i import i tak ich wymagają; wiersze sprzed walidacji dostają wartości zastępcze.
+
+update device set name = '' where name is null;
+update device set type = '' where type is null;
+update device set location = '' where location is null;
+update device set serial_number = 'BRAK-' || id where serial_number is null;
+
+alter table device
+    alter column name set not null,
+    alter column type set not null,
+    alter column serial_number set not null,
+    alter column location set not null;
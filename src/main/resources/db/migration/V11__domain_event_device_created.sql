@@ -0,0 +1,12 @@
+-- Zdarzenie DEVICE_CREATED: nowe urządzenie trafia do indeksów wyszukiwania pozostałych węzłów
+-- (wcześniej każdy węzeł znał tylko urządzenia dodane u siebie i te wczytane przy starcie).
+-- Nie dotyczy wypożyczenia ani rezerwacji, więc user_id i termin są dla niego puste.
+
+alter table domain_event drop constraint domain_event_type_check;
+alter table domain_event add constraint domain_event_type_check
+    check (type in ('LOAN_CREATED', 'LOAN_RETURNED', 'RESERVATION_CREATED', 'RESERVATION_CANCELED', 'DEVICE_CREATED'));
+
+alter table domain_event
+    alter column user_id drop not null,
+    alter column from_date drop not null,
+    alter column to_date drop not null;
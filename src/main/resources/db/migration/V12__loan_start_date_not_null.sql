@@ -0,0 +1,8 @@
+-- Historia urządzenia w trybie kursorowym sortuje po (start_date desc, id desc): warunek keyset
+-- (start_date < :d or start_date = :d and id < :id) pomija wiersze z NULL, więc znikałyby z kolejnych stron
+-- (tryb offsetowy je zwraca). LoanService zawsze ustawia datę rozpoczęcia; wiersze sprzed walidacji dostają
+-- termin zwrotu, a bez niego datę zwrotu albo dzień migracji.
+
+update loan set start_date = coalesce(due_date, return_date, current_date) where start_date is null;
+
+alter table loan alter column start_date set not null;
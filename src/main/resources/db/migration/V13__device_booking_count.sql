@@ -0,0 +1,10 @@
+-- Licznik zużycia urządzenia dla przydziału z puli (DeviceAvailabilityIndex.leastUsedFree): liczba rezerwacji
+-- i wypożyczeń, podbijana w transakcji rezerwacji/wypożyczenia. Wcześniej zużycie brano z wersji urządzenia,
+-- którą podbijają też anulowania, zwroty, sprzątanie i zmiany statusu – każdy węzeł i każdy restart liczył inaczej.
+-- Stan początkowy z historii.
+
+alter table device add column booking_count bigint default 0 not null;
+
+update device d
+set booking_count = (select count(*) from loan l where l.device_id = d.id)
+                  + (select count(*) from reservation r where r.device_id = d.id);
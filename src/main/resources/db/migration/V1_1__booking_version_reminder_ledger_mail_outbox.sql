@@ -0,0 +1,42 @@
+-- Zmiany schematu sprzed Flyway, których nie było w bazie zakładanej przez ddl-auto=update.
+-- Baza bazowana na V1 (baseline-on-migrate) dostaje je tutaj, zanim V2 założy na nich indeksy.
+
+-- wersja urządzenia: OPTIMISTIC_FORCE_INCREMENT przy rezerwacji i wypożyczeniu (DeviceRepository.findForBookingById)
+alter table device add column version bigint default 0 not null;
+
+-- dziennik wysłanych przypomnień: jedno przypomnienie na (wypożyczenie, wyprzedzenie)
+create table reminder_log (
+    id          bigint generated by default as identity,
+    loan_id     bigint not null,
+    offset_days integer not null,
+    due_date    date,
+    sent_at     timestamp(6) with time zone not null,
+    primary key (id),
+    constraint uk_reminder_log_loan_offset unique (loan_id, offset_days)
+);
+
+-- dzierżawy zadań cyklicznych w klastrze (SchedulerLeaseService)
+create table scheduler_lease (
+    name              varchar(100) not null,
+    owner             varchar(255) not null,
+    locked_until      timestamp(6) with time zone not null,
+    last_completed_at timestamp(6) with time zone,
+    primary key (name)
+);
+
+-- kolejka poczty (MailService, MailDispatcher)
+create table outbound_mail (
+    id              bigint generated by default as identity,
+    recipient       varchar(255) not null,
+    reply_to        varchar(255),
+    subject         varchar(1000) not null,
+    body            text not null,
+    status          varchar(20) not null check (status in ('PENDING', 'SENDING', 'SENT', 'FAILED')),
+    attempts        integer not null,
+    next_attempt_at timestamp(6) with time zone not null,
+    claim_token     varchar(64),
+    created_at      timestamp(6) with time zone not null,
+    sent_at         timestamp(6) with time zone,
+    last_error      varchar(1000),
+    primary key (id)
+);
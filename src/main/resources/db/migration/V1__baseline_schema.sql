@@ -0,0 +1,49 @@
+-- Schemat bazowy – dokładnie to, co zakładał Hibernate (ddl-auto=update) przed przejściem na Flyway.
+-- Istniejące bazy dostają ten plik jako baseline (spring.flyway.baseline-on-migrate), nowe budują się od zera.
+-- Wszystko, co doszło później (wersja urządzenia, dziennik przypomnień, dzierżawy, kolejka poczty), jest w V1_1.
+
+create table users (
+    id       bigint generated by default as identity,
+    email    varchar(255) not null unique,
+    password varchar(255) not null,
+    role     varchar(255) not null,
+    username varchar(255) not null unique,
+    primary key (id)
+);
+
+create table device (
+    id            bigint generated by default as identity,
+    location      varchar(255),
+    name          varchar(255),
+    serial_number varchar(255),
+    status        varchar(255),
+    type          varchar(255),
+    primary key (id)
+);
+
+create table loan (
+    id              bigint generated by default as identity,
+    device_id       bigint not null,
+    user_id         bigint not null,
+    start_date      date,
+    due_date        date,
+    return_date     date,
+    status          varchar(255) check (status in ('ACTIVE', 'RETURNED', 'OVERDUE', 'CANCELED')),
+    return_note     varchar(1000),
+    damage_reported boolean not null,
+    primary key (id),
+    constraint fk_loan_device foreign key (device_id) references device,
+    constraint fk_loan_user foreign key (user_id) references users
+);
+
+create table reservation (
+    id        bigint generated by default as identity,
+    device_id bigint not null,
+    user_id   bigint not null,
+    from_date date,
+    to_date   date,
+    status    varchar(255) check (status in ('ACTIVE', 'CANCELED', 'EXPIRED', 'FULFILLED')),
+    primary key (id),
+    constraint fk_reservation_device foreign key (device_id) references device,
+    constraint fk_reservation_user foreign key (user_id) references users
+);
@@ -0,0 +1,27 @@
+-- Indeksy pod zapytania z gorącej ścieżki. Postgres nie zakłada indeksów na kluczach obcych sam z siebie,
+-- więc bez nich każde sprawdzenie kolizji i każda strona historii to pełny skan loan/reservation.
+
+-- LoanRepository.existsActiveLoanOverlapping, findActiveIntervals – tylko aktywne wypożyczenia urządzenia
+create index ix_loan_active_device_dates on loan (device_id, due_date, start_date) where status = 'ACTIVE';
+
+-- LoanRepository.findDueForReminder (dawniej findByStatusAndReturnDateIsNullAndDueDate): termin + porcje po id
+create index ix_loan_active_due on loan (due_date, id) where status = 'ACTIVE' and return_date is null;
+
+-- LoanRepository.findByDeviceIdOrderByStartDateDesc i wariant kursorowy (start_date, id)
+create index ix_loan_device_start on loan (device_id, start_date desc, id desc);
+
+create index ix_loan_user on loan (user_id);
+
+-- ReservationRepository.existsActiveReservationOverlapping, findActiveIntervals
+create index ix_reservation_active_device_dates on reservation (device_id, to_date, from_date) where status = 'ACTIVE';
+
+create index ix_reservation_device on reservation (device_id);
+create index ix_reservation_user on reservation (user_id);
+
+-- unikalny numer seryjny (kontrola w DeviceController to tylko szybka ścieżka, wyścig łapie baza → 409).
+-- Na starej bazie z duplikatami ta migracja się nie powiedzie – najpierw trzeba je poprawić ręcznie.
+create unique index ux_device_serial_number on device (serial_number);
+
+-- kolejka poczty: OutboundMailRepository.findDueIds, claim, findByClaimTokenAndStatus
+create index ix_outbound_mail_due on outbound_mail (next_attempt_at, id) where status in ('PENDING', 'SENDING');
+create index ix_outbound_mail_claim_token on outbound_mail (claim_token) where claim_token is not null;
@@ -0,0 +1,27 @@
+-- Jednorazowe przepisanie starych zapisów statusu urządzenia (polskie etykiety, różna wielkość liter)
+-- na nazwy stałych enuma. Konwerter nadal czyta stare zapisy, ale po migracji odczyt trafia w szybką ścieżkę.
+-- Polskie znaki zdejmuje translate, bo upper() w bazie z lc_ctype=C ich nie zamienia.
+-- Nieznane wartości zostają bez zmian – konwerter zgłosi je przy odczycie tak jak dotąd.
+
+update device
+set status = case upper(translate(trim(status), 'ąćęłńóśźżĄĆĘŁŃÓŚŹŻ', 'acelnoszzACELNOSZZ'))
+        when 'AVAILABLE' then 'AVAILABLE'
+        when 'DOSTEPNY' then 'AVAILABLE'
+        when 'RESERVED' then 'RESERVED'
+        when 'ZAREZERWOWANY' then 'RESERVED'
+        when 'LOANED' then 'LOANED'
+        when 'WYPOZYCZONY' then 'LOANED'
+        when 'MAINTENANCE' then 'MAINTENANCE'
+        when 'SERWIS' then 'MAINTENANCE'
+        when 'SERWISOWANY' then 'MAINTENANCE'
+        when 'SERVICE' then 'MAINTENANCE'
+        when 'IN_SERVICE' then 'MAINTENANCE'
+        when 'SERVICED' then 'MAINTENANCE'
+        when 'LOST' then 'LOST'
+        when 'ZGUBIONY' then 'LOST'
+        when 'DAMAGED' then 'DAMAGED'
+        when 'USZKODZONY' then 'DAMAGED'
+        when 'ZNISZCZONY' then 'DAMAGED'
+        else status
+    end
+where status not in ('AVAILABLE', 'RESERVED', 'LOANED', 'MAINTENANCE', 'LOST', 'DAMAGED');
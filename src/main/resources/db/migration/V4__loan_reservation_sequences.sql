@@ -0,0 +1,19 @@
+-- Id wypożyczeń i rezerwacji z sekwencji z krokiem 50 (optymalizator pooled w Hibernate) zamiast identity:
+-- Hibernate zna id przed insertem, więc wstawienia z POST /api/loans/batch i /api/reservations/batch
+-- idą paczkami JDBC (hibernate.jdbc.batch_size). Przy identity każdy insert musi pójść osobno.
+--
+-- Pooled traktuje wartość z sekwencji jako górny koniec puli (v-49..v), dlatego pierwsza wartość
+-- to max(id) + 50 – pierwsza pula zaczyna się zaraz za istniejącymi wierszami.
+-- Domyślna wartość kolumny zostaje na sekwencji dla insertów spoza aplikacji (v jest końcem puli, której nikt nie dostał).
+
+create sequence loan_seq increment by 50;
+select setval('loan_seq', coalesce((select max(id) from loan), 0) + 50, false);
+alter table loan alter column id drop identity;
+alter table loan alter column id set default nextval('loan_seq');
+alter sequence loan_seq owned by loan.id;
+
+create sequence reservation_seq increment by 50;
+select setval('reservation_seq', coalesce((select max(id) from reservation), 0) + 50, false);
+alter table reservation alter column id drop identity;
+alter table reservation alter column id set default nextval('reservation_seq');
+alter sequence reservation_seq owned by reservation.id;
@@ -0,0 +1,9 @@
+-- Id urządzeń z sekwencji z krokiem 50 (jak wypożyczenia i rezerwacje w V4), żeby import CSV
+-- (POST /api/devices/import) wstawiał urządzenia paczkami JDBC – przy identity każdy insert idzie osobno.
+-- Pierwsza wartość to max(id) + 50: optymalizator pooled traktuje ją jako górny koniec puli.
+
+create sequence device_seq increment by 50;
+select setval('device_seq', coalesce((select max(id) from device), 0) + 50, false);
+alter table device alter column id drop identity;
+alter table device alter column id set default nextval('device_seq');
+alter sequence device_seq owned by device.id;
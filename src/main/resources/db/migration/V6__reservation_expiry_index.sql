@@ -0,0 +1,4 @@
+-- ExpirySweeper: aktywne rezerwacje po dacie "do" ze wszystkich urządzeń naraz
+-- (ix_reservation_active_device_dates zaczyna się od device_id, więc tu się nie nadaje).
+-- Wypożyczenia po terminie znajduje już ix_loan_active_due z V2.
+create index ix_reservation_active_to_date on reservation (to_date) where status = 'ACTIVE';
@@ -0,0 +1,27 @@
+-- Lista oczekujących (WaitlistService): wpis czeka na dowolne urządzenie typu/lokalizacji w terminie.
+-- Id z sekwencji z krokiem 50 jak pozostałe tabele z wstawianiem przez Hibernate.
+
+create sequence waitlist_entry_seq increment by 50;
+
+create table waitlist_entry (
+    id             bigint not null default nextval('waitlist_entry_seq'),
+    user_id        bigint not null,
+    type           varchar(255) not null,
+    location       varchar(255),
+    from_date      date not null,
+    to_date        date not null,
+    status         varchar(20) not null check (status in ('WAITING', 'PROMOTED', 'EXPIRED', 'CANCELED')),
+    created_at     timestamp(6) with time zone not null,
+    expires_at     timestamp(6) with time zone not null,
+    reservation_id bigint,
+    primary key (id),
+    constraint fk_waitlist_entry_user foreign key (user_id) references users,
+    constraint fk_waitlist_entry_reservation foreign key (reservation_id) references reservation
+);
+alter sequence waitlist_entry_seq owned by waitlist_entry.id;
+
+-- dopasowanie: wpisy dodane na innych węzłach od ostatniego odświeżenia; sprzątanie: wpisy po terminie
+create index ix_waitlist_waiting_created on waitlist_entry (created_at) where status = 'WAITING';
+create index ix_waitlist_waiting_expires on waitlist_entry (expires_at) where status = 'WAITING';
+-- GET /api/reservations/waitlist?userId= i limit wpisów na użytkownika
+create index ix_waitlist_user on waitlist_entry (user_id, status);
@@ -0,0 +1,24 @@
+-- Zdarzenia domenowe wypożyczeń i rezerwacji (DomainEventOutbox) zapisywane w transakcji zmiany.
+-- DomainEventRelay przekazuje je słuchaczom w procesie: zdarzenia z tego węzła od razu po commicie,
+-- zdarzenia z innych węzłów odpytując po created_at. Id z sekwencji z krokiem 50 – zdarzenia paczek
+-- (POST /api/loans/batch, /api/reservations/batch) idą insertami JDBC w paczkach jak same wiersze.
+
+create sequence domain_event_seq increment by 50;
+
+create table domain_event (
+    id             bigint not null default nextval('domain_event_seq'),
+    type           varchar(30) not null check (type in ('LOAN_CREATED', 'LOAN_RETURNED', 'RESERVATION_CREATED', 'RESERVATION_CANCELED')),
+    origin         varchar(255) not null,
+    aggregate_id   bigint not null,
+    device_id      bigint not null,
+    user_id        bigint not null,
+    from_date      date not null,
+    to_date        date not null,
+    device_status  varchar(255),
+    created_at     timestamp(6) with time zone not null,
+    primary key (id)
+);
+alter sequence domain_event_seq owned by domain_event.id;
+
+-- odpytywanie zdarzeń innych węzłów (keyset po created_at, id) i sprzątanie po czasie przechowywania
+create index ix_domain_event_created on domain_event (created_at, id);
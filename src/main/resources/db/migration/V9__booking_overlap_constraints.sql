@@ -0,0 +1,15 @@
+-- Ostateczna ochrona przed podwójną rezerwacją: dwa aktywne przedziały tego samego urządzenia nie mogą
+-- mieć wspólnego dnia (obustronnie domknięte, jak w existsActive*Overlapping). Kolizję sprawdza wcześniej
+-- indeks w pamięci; te ograniczenia łapią to, czego nie widział (np. zmianę z innego węzła).
+-- Naruszenie (23P01) BookingExecutor zamienia na 409 z komunikatem kolizji.
+-- Na bazie, w której już są nakładające się aktywne przedziały, migracja się nie powiedzie – najpierw trzeba je poprawić.
+
+create extension if not exists btree_gist;
+
+alter table reservation add constraint ex_reservation_active_overlap
+    exclude using gist (device_id with =, daterange(from_date, to_date, '[]') with &&)
+    where (status = 'ACTIVE');
+
+alter table loan add constraint ex_loan_active_overlap
+    exclude using gist (device_id with =, daterange(start_date, due_date, '[]') with &&)
+    where (status = 'ACTIVE');
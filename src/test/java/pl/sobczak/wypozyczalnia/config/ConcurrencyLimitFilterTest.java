@@ -0,0 +1,38 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void rejectsWith503WhenAllPermitsAreTaken() throws Exception {
+        var filter = new ConcurrencyLimitFilter(1, Duration.ofMillis(10));
+        var inner = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/devices"), new MockHttpServletResponse(), (req, res) ->
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/devices/2"), inner, (r2, s2) -> fail("bez limitu")));
+
+        assertEquals(503, inner.getStatus());
+        assertEquals("1", inner.getHeader("Retry-After"));
+        assertEquals(1, filter.availablePermits()); // pozwolenie oddane po zakończeniu żądania
+    }
+
+    @Test
+    void actuatorAndDisabledLimitPassThrough() throws Exception {
+        var limited = new ConcurrencyLimitFilter(1, Duration.ofMillis(10));
+        var response = new MockHttpServletResponse();
+        limited.doFilter(new MockHttpServletRequest("GET", "/api/devices"), new MockHttpServletResponse(), (req, res) ->
+                limited.doFilter(new MockHttpServletRequest("GET", "/actuator/prometheus"), response, (r2, s2) -> {}));
+        assertEquals(200, response.getStatus());
+
+        var off = new ConcurrencyLimitFilter(0, Duration.ofMillis(10));
+        off.doFilter(new MockHttpServletRequest("GET", "/api/devices"), response, (req, res) -> {});
+        assertEquals(-1, off.availablePermits());
+    }
+}
@@ -0,0 +1,40 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountFilterTest {
+
+    @Test
+    void recordsQueriesPerRequestUnderUriPattern() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        var filter = new QueryCountFilter(registry, 2);
+        var inspector = new QueryCounter();
+        var request = new MockHttpServletRequest("GET", "/api/loans/device/7");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/loans/device/{deviceId}");
+            for (int i = 0; i < 3; i++) inspector.inspect("select 1");
+        });
+
+        var summary = registry.get("app.http.queries").tag("uri", "/api/loans/device/{deviceId}").summary();
+        assertEquals(1, summary.count());
+        assertEquals(3, summary.totalAmount());
+    }
+
+    @Test
+    void countStartsFromZeroForEachRequest() throws Exception {
+        var registry = new SimpleMeterRegistry();
+        var filter = new QueryCountFilter(registry, 20);
+        new QueryCounter().inspect("select 1"); // poza żądaniem, np. wątek startowy
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/x"), new MockHttpServletResponse(), (req, res) -> {});
+
+        assertEquals(0, registry.get("app.http.queries").summary().totalAmount());
+    }
+}
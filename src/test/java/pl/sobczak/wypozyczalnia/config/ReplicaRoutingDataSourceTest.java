@@ -0,0 +1,171 @@
+package pl.sobczak.wypozyczalnia.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+            List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica)), Duration.ofSeconds(5), "select lag", registry);
+
+    ReplicaRoutingDataSourceTest() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+    }
+
+    @AfterEach
+    void clear() {
+        ReplicaRouting.clear();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readsGoToReplicaOnlyWhenAllowedAndNotInWriteTransaction() throws SQLException {
+        assertSame(primaryConnection, routing.getConnection());
+
+        ReplicaRouting.allowReads(true);
+        assertSame(replicaConnection, routing.getConnection());
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(replicaConnection, routing.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertSame(primaryConnection, routing.getConnection());
+
+        assertEquals(2, registry.get("app.db.connections").tag("target", "replica").counter().count());
+        assertEquals(2, registry.get("app.db.connections").tag("target", "primary").counter().count());
+    }
+
+    @Test
+    void sessionReadingFromReplicaStopsPuttingIntoSecondLevelCache() throws SQLException {
+        var entityManagerFactory = mock(EntityManagerFactory.class);
+        var entityManager = mock(EntityManager.class);
+        var session = mock(Session.class);
+        when(entityManager.isOpen()).thenReturn(true);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            routing.getConnection(); // baza główna – cache bez zmian
+            verifyNoInteractions(session);
+
+            ReplicaRouting.allowReads(true);
+            assertSame(replicaConnection, routing.getConnection());
+            verify(session).setCacheMode(CacheMode.GET);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void connectionWithExplicitCredentialsAlwaysGoesToPrimary() throws SQLException {
+        when(primary.getConnection("raport", "tajne")).thenReturn(primaryConnection);
+        ReplicaRouting.allowReads(true);
+
+        assertSame(primaryConnection, routing.getConnection("raport", "tajne"));
+        verify(replica, never()).getConnection(any(), any());
+    }
+
+    @Test
+    void failedReplicaFallsBackToPrimaryUntilNextSuccessfulCheck() throws SQLException {
+        ReplicaRouting.allowReads(true);
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertSame(primaryConnection, routing.getConnection());
+        verify(replica, times(1)).getConnection(); // druga próba pomija replikę oznaczoną jako niedostępna
+        assertEquals(2, registry.get("app.db.connections").tag("target", "fallback").counter().count());
+
+        reset(replica);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        lag(0.2);
+        routing.checkReplicas();
+        assertSame(replicaConnection, routing.getConnection());
+    }
+
+    @Test
+    void replicaLaggingOverLimitIsSkipped() throws SQLException {
+        ReplicaRouting.allowReads(true);
+        lag(12.5);
+        routing.checkReplicas();
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertEquals(12.5, registry.get("app.db.replica.lag").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void replicaThatLostItsWalStreamIsSkippedUntilItStreamsAgain() throws SQLException {
+        ReplicaRouting.allowReads(true);
+        lag(Double.POSITIVE_INFINITY);
+        routing.checkReplicas();
+        assertSame(primaryConnection, routing.getConnection());
+
+        lag(0);
+        routing.checkReplicas();
+        assertSame(replicaConnection, routing.getConnection());
+    }
+
+    @Test
+    void userReadsPrimaryForReadYourWritesWindowAfterWrite() {
+        var now = new AtomicLong();
+        var interceptor = new ReplicaRoutingInterceptor(Duration.ofSeconds(10), now::get);
+
+        assertTrue(allowed(interceptor, "GET", "jan"));
+        assertFalse(allowed(interceptor, "POST", "jan"));
+        interceptor.afterCompletion(request("POST", "jan"), new MockHttpServletResponse(), null, null);
+
+        assertFalse(allowed(interceptor, "GET", "jan"));
+        assertTrue(allowed(interceptor, "GET", "adm"));
+        now.set(Duration.ofSeconds(10).toNanos());
+        assertTrue(allowed(interceptor, "GET", "jan"));
+    }
+
+    private boolean allowed(ReplicaRoutingInterceptor interceptor, String method, String user) {
+        interceptor.preHandle(request(method, user), new MockHttpServletResponse(), null);
+        boolean allowed = ReplicaRouting.readsAllowed();
+        ReplicaRouting.clear();
+        return allowed;
+    }
+
+    private static MockHttpServletRequest request(String method, String user) {
+        var request = new MockHttpServletRequest(method, "/api/devices");
+        request.setUserPrincipal(() -> user);
+        return request;
+    }
+
+    private void lag(double seconds) throws SQLException {
+        var statement = mock(Statement.class);
+        var rs = mock(ResultSet.class);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("select lag")).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getDouble(1)).thenReturn(seconds);
+    }
+}
@@ -0,0 +1,34 @@
+package pl.sobczak.wypozyczalnia.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusParsingTest {
+
+    @Test
+    void namesAndLabelsInAnyCase() {
+        for (DeviceStatus s : DeviceStatus.values()) {
+            assertSame(s, DeviceStatus.fromJson(s.name()));
+            assertSame(s, DeviceStatus.fromJson(s.getPl().toLowerCase()));
+        }
+        for (LoanStatus s : LoanStatus.values()) {
+            assertSame(s, LoanStatus.fromJson(s.name().toLowerCase()));
+            assertSame(s, LoanStatus.fromJson(s.getPl()));
+        }
+        for (ReservationStatus s : ReservationStatus.values()) {
+            assertSame(s, ReservationStatus.fromJson(" " + s.name() + " "));
+            assertSame(s, ReservationStatus.fromJson(s.getPl()));
+        }
+        assertSame(ReservationStatus.EXPIRED, ReservationStatus.fromJson("Wygasła"));
+        assertSame(LoanStatus.RETURNED, LoanStatus.fromJson("zwrócone"));
+    }
+
+    @Test
+    void nullAndUnknown() {
+        assertNull(DeviceStatus.fromJson(null));
+        var ex = assertThrows(IllegalArgumentException.class, () -> LoanStatus.fromJson("ZWROT"));
+        assertEquals("Nieznany status wypożyczenia: ZWROT", ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ReservationStatus.fromJson(""));
+    }
+}
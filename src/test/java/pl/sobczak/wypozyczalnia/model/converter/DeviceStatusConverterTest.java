@@ -0,0 +1,40 @@
+package pl.sobczak.wypozyczalnia.model.converter;
+
+import org.junit.jupiter.api.Test;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceStatusConverterTest {
+
+    private final DeviceStatusConverter converter = new DeviceStatusConverter();
+
+    @Test
+    void canonicalNamesAndPolishLabels() {
+        for (DeviceStatus s : DeviceStatus.values()) {
+            assertSame(s, converter.convertToEntityAttribute(s.name()));
+            assertSame(s, converter.convertToEntityAttribute(s.getPl()));
+            assertEquals(s.name(), converter.convertToDatabaseColumn(s));
+        }
+    }
+
+    @Test
+    void legacyValuesAreNormalized() {
+        assertSame(DeviceStatus.AVAILABLE, converter.convertToEntityAttribute(" dostepny "));
+        assertSame(DeviceStatus.LOANED, converter.convertToEntityAttribute("Wypożyczony"));
+        assertSame(DeviceStatus.MAINTENANCE, converter.convertToEntityAttribute("serwis"));
+        assertSame(DeviceStatus.MAINTENANCE, converter.convertToEntityAttribute("SERVICE"));
+        assertSame(DeviceStatus.DAMAGED, converter.convertToEntityAttribute("uszkodzony"));
+        assertSame(DeviceStatus.DAMAGED, converter.convertToEntityAttribute("Zniszczony"));
+        assertSame(DeviceStatus.LOST, converter.convertToEntityAttribute("zgubiony"));
+        // drugi odczyt z zapamiętanej mapy
+        assertSame(DeviceStatus.LOANED, converter.convertToEntityAttribute("Wypożyczony"));
+    }
+
+    @Test
+    void nullsAndUnknownValues() {
+        assertNull(converter.convertToEntityAttribute(null));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute("naprawa"));
+    }
+}
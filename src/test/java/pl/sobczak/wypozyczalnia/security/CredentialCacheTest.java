@@ -0,0 +1,93 @@
+package pl.sobczak.wypozyczalnia.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.sobczak.wypozyczalnia.model.User;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CredentialCacheTest {
+
+    private static final List<SimpleGrantedAuthority> ROLES = List.of(new SimpleGrantedAuthority("ROLE_STUDENT"));
+
+    @Test
+    void hitOnlyForSamePassword() {
+        var cache = new CredentialCache(Duration.ofMinutes(5), 10, Clock.systemUTC());
+        cache.put("jan", "tajne123", 1L, "jan", ROLES);
+
+        assertNotNull(cache.get("jan", "tajne123"));
+        assertNull(cache.get("jan", "inne-haslo"));
+        assertNull(cache.get("jant", "ajne123"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        var clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        var cache = new CredentialCache(Duration.ofMinutes(5), 10, clock);
+        cache.put("jan", "tajne123", 1L, "jan", ROLES);
+
+        clock.now = clock.now.plusSeconds(299);
+        assertNotNull(cache.get("jan", "tajne123"));
+        clock.now = clock.now.plusSeconds(2);
+        assertNull(cache.get("jan", "tajne123"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void boundedAndInvalidatedPerUser() {
+        var cache = new CredentialCache(Duration.ofMinutes(5), 2, Clock.systemUTC());
+        cache.put("a", "haslo-a", 1L, "a", ROLES);
+        cache.put("b", "haslo-b", 2L, "b", ROLES);
+        cache.put("c", "haslo-c", 3L, "c", ROLES);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a", "haslo-a"));
+
+        cache.invalidateUser(3L);
+        assertNull(cache.get("c", "haslo-c"));
+        assertNotNull(cache.get("b", "haslo-b"));
+    }
+
+    @Test
+    void loginOverlappingPasswordChangeIsNotCached() {
+        var cache = new CredentialCache(Duration.ofMinutes(5), 10, Clock.systemUTC());
+        var user = new User();
+        user.setId(1L);
+
+        // logowanie zaczęte przed zmianą, zakończone po niej – wynik jest nieaktualny
+        long generation = cache.generation();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            new UserCredentialsListener(cache).onChange(user); // flush
+            cache.put("jan", "stare-haslo", 1L, "jan", ROLES, generation);
+            assertNull(cache.get("jan", "stare-haslo"));
+
+            // logowanie między flushem a commitem widzi jeszcze stary wiersz – commit je unieważnia
+            cache.put("jan", "stare-haslo", 1L, "jan", ROLES, cache.generation());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(cache.get("jan", "stare-haslo"));
+    }
+
+    private static final class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) { this.now = now; }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+}
@@ -0,0 +1,61 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void readsWhatExportWrites() throws Exception {
+        var w = new StringWriter();
+        ExportService.writeCsvLine(w, new Object[]{"name", "serialNumber"});
+        ExportService.writeCsvLine(w, new Object[]{"Laptop, model \"X\"", "SN1"});
+        ExportService.writeCsvLine(w, new Object[]{"dwie\nlinie", null});
+
+        var csv = new CsvReader(new StringReader(w.toString()));
+        assertArrayEquals(new String[]{"name", "serialNumber"}, csv.next());
+        assertArrayEquals(new String[]{"Laptop, model \"X\"", "SN1"}, csv.next());
+        assertEquals(2, csv.recordLine());
+        assertArrayEquals(new String[]{"dwie\nlinie", ""}, csv.next());
+        assertEquals(3, csv.recordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void skipsBlankLinesAndCountsThem() throws Exception {
+        var csv = new CsvReader(new StringReader("a,b\n\n\"x\ny\",1\nc,d"));
+        csv.next();
+        assertArrayEquals(new String[]{"x\ny", "1"}, csv.next());
+        assertEquals(3, csv.recordLine());
+        assertArrayEquals(new String[]{"c", "d"}, csv.next());
+        assertEquals(5, csv.recordLine());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void unterminatedQuoteIsReported() throws Exception {
+        var csv = new CsvReader(new StringReader("a,b\n\"urwany,1\n"));
+        csv.next();
+        assertThrows(IllegalStateException.class, csv::next);
+    }
+
+    @Test
+    void columnsFollowHeaderAndValidateRows() {
+        var columns = DeviceImportService.Columns.of(new String[]{"\uFEFFid", "Name", "type", "serialNumber", "location", "status"});
+
+        var d = columns.toDevice(new String[]{"7", " Projektor ", "projektor", "PR1", "Aula", "serwis"});
+        assertEquals("Projektor", d.getName());
+        assertEquals(DeviceStatus.MAINTENANCE, d.getStatus());
+        assertEquals(DeviceStatus.AVAILABLE, columns.toDevice(new String[]{"", "a", "b", "c", "d", ""}).getStatus());
+
+        var e = assertThrows(IllegalStateException.class, () -> columns.toDevice(new String[]{"", "a", "b", " ", "d"}));
+        assertEquals("Numer seryjny jest wymagany", e.getMessage());
+        assertThrows(IllegalStateException.class, () -> columns.toDevice(new String[]{"", "a", "b", "c", "d", "zepsuty"}));
+        assertThrows(IllegalStateException.class, () -> DeviceImportService.Columns.of(new String[]{"name", "type"}));
+    }
+}
@@ -0,0 +1,196 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.sobczak.wypozyczalnia.dto.DeviceAvailabilityDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceCountDto;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.Loan;
+import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.Reservation;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.ReservationRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DeviceAvailabilityIndexTest {
+
+    private final LocalDate today = LocalDate.now();
+    private final ReservationRepository reservations = mock(ReservationRepository.class);
+    private final LoanRepository loans = mock(LoanRepository.class);
+    private final DeviceRepository devices = mock(DeviceRepository.class);
+    private final DeviceAvailabilityIndex index = new DeviceAvailabilityIndex(reservations, loans, devices);
+
+    private DeviceAvailabilityDto calendar(long deviceId, int fromDay, int toDay) {
+        LocalDate from = today.plusDays(fromDay), to = today.plusDays(toDay);
+        return DeviceAvailabilityDto.of(deviceId, from, to, index.busyDays(List.of(deviceId), from, to).get(deviceId));
+    }
+
+    private static Device device(long id) {
+        var d = new Device();
+        d.setId(id);
+        return d;
+    }
+
+    private static Device device(long id, long version) {
+        var d = device(id);
+        ReflectionTestUtils.setField(d, "version", version);
+        return d;
+    }
+
+    @Test
+    void calendarFollowsCreatedAndClosedBookings() {
+        when(reservations.findActiveIntervals()).thenReturn(List.of(
+                new DeviceIntervalDto(1L, 10L, today.minusDays(3), today.plusDays(2))));
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        index.warmUp();
+
+        assertEquals(List.of(new DeviceAvailabilityDto.Period(today, today.plusDays(2))), calendar(1, 0, 9).busy());
+        assertTrue(calendar(2, 0, 9).free());
+
+        // wypożyczenie w okresie rezerwacji i tuż po niej – sklejone w jeden okres
+        var loan = new Loan();
+        loan.setId(20L);
+        loan.setDevice(device(1));
+        loan.setStartDate(today.plusDays(2));
+        loan.setDueDate(today.plusDays(4));
+        index.loanCreated(loan);
+        assertEquals(List.of(new DeviceAvailabilityDto.Period(today, today.plusDays(4))), calendar(1, 0, 9).busy());
+
+        // po anulowaniu rezerwacji zostają tylko dni wypożyczenia
+        var r = new Reservation();
+        r.setId(10L);
+        r.setDevice(device(1));
+        index.reservationClosed(r);
+        assertEquals(List.of(new DeviceAvailabilityDto.Period(today.plusDays(2), today.plusDays(4))), calendar(1, 0, 9).busy());
+        assertEquals(List.of(new DeviceAvailabilityDto.Period(today.plusDays(3), today.plusDays(4))), calendar(1, 3, 9).busy());
+    }
+
+    @Test
+    void rangeMustFitTheCalendarWindow() {
+        when(reservations.findActiveIntervals()).thenReturn(List.of());
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        index.warmUp();
+
+        assertThrows(IllegalStateException.class, () -> calendar(1, -1, 3));
+        assertThrows(IllegalStateException.class, () -> calendar(1, 0, DeviceAvailabilityIndex.CALENDAR_DAYS));
+        assertThrows(IllegalStateException.class, () -> calendar(1, 5, 4));
+        assertTrue(calendar(1, 0, DeviceAvailabilityIndex.CALENDAR_DAYS - 1).free());
+    }
+
+    @Test
+    void allocationPicksLeastUsedFreeDevices() {
+        when(reservations.findActiveIntervals()).thenReturn(List.of(
+                new DeviceIntervalDto(1L, 10L, today.plusDays(5), today.plusDays(8))));
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        when(devices.findBookingCounts()).thenReturn(List.of(new DeviceCountDto(2L, 9L, 7L), new DeviceCountDto(3L, 5L, 2L)));
+        index.warmUp();
+        long[] pool = {1, 2, 3, 4};
+
+        // 1 zajęte w terminie; 4 nieużywane, potem 3 (2 rezerwacje), 2 (7)
+        assertEquals(List.of(4L, 3L, 2L), index.leastUsedFree(pool, today.plusDays(6), today.plusDays(9), 5, id -> false));
+        assertEquals(List.of(4L, 3L), index.leastUsedFree(pool, today.plusDays(6), today.plusDays(9), 2, id -> false));
+        // poza oknem kalendarza kolizje z przedziałów; 1 ma 0 rezerwacji z bazy, ale 4 zajęte dni
+        assertEquals(List.of(4L, 1L, 3L, 2L), index.leastUsedFree(pool,
+                today.plusDays(DeviceAvailabilityIndex.CALENDAR_DAYS), today.plusDays(DeviceAvailabilityIndex.CALENDAR_DAYS + 3), 5, id -> false));
+        // urządzenie przydzielane równolegle jest pomijane
+        assertEquals(List.of(3L, 2L), index.leastUsedFree(pool, today.plusDays(6), today.plusDays(9), 5, id -> id == 4));
+
+        // rezerwacja podbija zużycie – kolejny przydział idzie do innego egzemplarza
+        for (int i = 0; i < 3; i++) {
+            var r = new Reservation();
+            r.setId(11L + i);
+            r.setDevice(device(4));
+            r.setFromDate(today.plusDays(20 + 3 * i));
+            r.setToDate(today.plusDays(21 + 3 * i));
+            index.reservationCreated(r);
+        }
+        assertEquals(List.of(3L, 4L, 2L), index.leastUsedFree(pool, today.plusDays(6), today.plusDays(9), 5, id -> false));
+    }
+
+    @Test
+    void changesCommittedDuringWarmUpAreReplayed() {
+        var canceled = new Reservation();
+        canceled.setId(10L);
+        canceled.setDevice(device(1));
+        var created = new Reservation();
+        created.setId(11L);
+        created.setDevice(device(2));
+        created.setFromDate(today.plusDays(3));
+        created.setToDate(today.plusDays(5));
+        // anulowanie i nowa rezerwacja zatwierdzone między zapytaniem o rezerwacje a końcem rozgrzewania
+        when(reservations.findActiveIntervals()).thenAnswer(inv -> {
+            index.reservationClosed(canceled);
+            index.reservationCreated(created);
+            return List.of(new DeviceIntervalDto(1L, 10L, today, today.plusDays(2)));
+        });
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        index.warmUp();
+
+        assertFalse(index.hasReservationOverlap(1L, today, today.plusDays(2)));
+        assertTrue(index.hasReservationOverlap(2L, today.plusDays(4), today.plusDays(4)));
+        verify(reservations, never()).existsActiveReservationOverlapping(any(), any(), any()); // z indeksu, nie z bazy
+    }
+
+    @Test
+    void bookingOnNewerDeviceVersionReadsDeviceFromDatabase() {
+        when(devices.findBookingCounts()).thenReturn(List.of(new DeviceCountDto(1L, 3L, 1L)));
+        when(reservations.findActiveIntervals()).thenReturn(List.of());
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        index.warmUp();
+        LocalDate from = today.plusDays(3), to = today.plusDays(5);
+
+        assertFalse(index.hasReservationOverlap(device(1, 3), from, to));
+        verify(reservations, never()).findActiveIntervalsByDeviceId(1L);
+
+        // inny węzeł zarezerwował (wersja 4), zdarzenie jeszcze nie doszło – przedziały z bazy
+        when(reservations.findActiveIntervalsByDeviceId(1L)).thenReturn(List.of(new DeviceIntervalDto(1L, 30L, from, to)));
+        assertTrue(index.hasReservationOverlap(device(1, 4), today.plusDays(4), today.plusDays(4)));
+        assertTrue(index.hasReservationOverlap(device(1, 4), today.plusDays(5), today.plusDays(6)));
+        verify(reservations, times(1)).findActiveIntervalsByDeviceId(1L);
+
+        // własna rezerwacja: commit podbija wersję 4 → 5, indeks zostaje aktualny
+        var device = device(1, 4);
+        var r = new Reservation();
+        r.setId(31L);
+        r.setDevice(device);
+        r.setFromDate(today.plusDays(10));
+        r.setToDate(today.plusDays(12));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.reservationCreated(r);
+            ReflectionTestUtils.setField(device, "version", 5L);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(index.hasReservationOverlap(device(1, 5), today.plusDays(11), today.plusDays(11)));
+        verify(reservations, times(1)).findActiveIntervalsByDeviceId(1L);
+    }
+
+    @Test
+    void wearFollowsBookingCountFromDatabaseNotVersion() {
+        // 1: wiele zmian (anulowania, zwroty), mało rezerwacji; 2: odwrotnie
+        when(devices.findBookingCounts()).thenReturn(List.of(new DeviceCountDto(1L, 10L, 2L), new DeviceCountDto(2L, 4L, 3L)));
+        when(reservations.findActiveIntervals()).thenReturn(List.of());
+        when(loans.findActiveIntervals(LoanStatus.ACTIVE)).thenReturn(List.of());
+        index.warmUp();
+        long[] pool = {1, 2};
+        assertEquals(List.of(1L, 2L), index.leastUsedFree(pool, today.plusDays(3), today.plusDays(4), 2, id -> false));
+
+        // inny węzeł dał urządzeniu 1 trzy rezerwacje – odświeżenie z bazy bierze też licznik
+        var device = device(1, 13);
+        ReflectionTestUtils.setField(device, "bookingCount", 5L);
+        assertFalse(index.hasReservationOverlap(device, today.plusDays(3), today.plusDays(4)));
+        assertEquals(List.of(2L, 1L), index.leastUsedFree(pool, today.plusDays(3), today.plusDays(4), 2, id -> false));
+    }
+}
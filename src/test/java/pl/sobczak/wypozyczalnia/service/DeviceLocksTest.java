@@ -0,0 +1,74 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceLocksTest {
+
+    private int counter;
+
+    @Test
+    void sameDeviceIsSerialized() throws Exception {
+        var locks = new DeviceLocks(16, Duration.ofSeconds(5));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    locks.withLock(42L, () -> counter++);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(80_000, counter);
+    }
+
+    @Test
+    void otherDeviceIsNotBlocked() throws Exception {
+        var locks = new DeviceLocks(256, Duration.ofMillis(200));
+        long other = 2;
+        while (locks.stripeIndex(other) == locks.stripeIndex(1L)) other++;
+        long otherDevice = other;
+
+        var held = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> locks.withLock(1L, () -> {
+            held.countDown();
+            try { release.await(); } catch (InterruptedException ignored) {}
+            return null;
+        }));
+        holder.start();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        assertEquals("ok", locks.withLock(otherDevice, () -> "ok"));
+        assertThrows(IllegalStateException.class, () -> locks.withLock(1L, () -> "zajęte"));
+
+        release.countDown();
+        holder.join();
+    }
+
+    @Test
+    void batchesInOppositeOrderDoNotDeadlock() throws Exception {
+        var locks = new DeviceLocks(256, Duration.ofSeconds(5));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        pool.submit(() -> {
+            for (int i = 0; i < 10_000; i++) locks.withLocks(List.of(1L, 2L, 3L), () -> counter++);
+        });
+        pool.submit(() -> {
+            for (int i = 0; i < 10_000; i++) locks.withLocks(List.of(3L, 2L, 1L), () -> counter++);
+        });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(20_000, counter);
+        // po paczce wszystkie paski wolne
+        assertEquals("ok", locks.withLock(2L, () -> "ok"));
+    }
+}
@@ -0,0 +1,100 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.sobczak.wypozyczalnia.dto.DeviceSearchRowDto;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeviceSearchIndexTest {
+
+    private DeviceSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DeviceSearchIndex(null, 3);
+        index.put(1, "Laptop Dell Latitude", "SN-DL-001", "laptop", "Budynek A", DeviceStatus.AVAILABLE);
+        index.put(2, "Laptop HP EliteBook", "SN-HP-002", "laptop", "Budynek B", DeviceStatus.AVAILABLE);
+        index.put(3, "Projektor Epson", "SN-EP-003", "projektor", "Aula", DeviceStatus.AVAILABLE);
+        index.put(4, "Dell monitor", "MON-777", "monitor", "Budynek A", DeviceStatus.AVAILABLE);
+    }
+
+    @Test
+    void filterMatchesLikeSubstringIgnoringCase() {
+        assertEquals(Optional.of(List.of(1L, 4L)), index.filter(null, null, "DELL"));
+        assertEquals(Optional.of(List.of(2L)), index.filter(null, null, "hp-0"));   // numer seryjny
+        assertEquals(Optional.of(List.of(1L)), index.filter("lap", "dynek a", null));
+        assertEquals(Optional.of(List.of()), index.filter(null, null, "canon"));
+        assertEquals(Optional.of(List.of(3L)), index.filter(null, null, "ep")); // krótkie zapytanie bez trigramów
+    }
+
+    @Test
+    void tooManyHitsOrNoFiltersFallBackToDatabase() {
+        assertEquals(Optional.of(List.of(1L, 2L, 3L)), index.filter(null, null, "sn"));
+        assertEquals(Optional.of(List.of(1L, 2L, 4L)), index.filter(null, "budynek", null));
+        assertTrue(index.filter(null, null, "o").isEmpty());      // 4 trafienia > limit 3
+        assertTrue(index.filter(null, null, " ").isEmpty());
+    }
+
+    @Test
+    void rankingPrefersExactAndWordPrefixMatches() {
+        assertEquals(List.of(4L), index.search("mon-777", 10));
+        assertEquals(List.of(1L), index.search("dell lat", 10));      // każde słowo musi trafić
+        assertEquals(List.of(4L, 1L), index.search("dell", 10));      // remis → nowsze pierwsze
+        assertEquals(List.of(1L, 2L), index.search("laptop", 10).stream().sorted().toList());
+        assertEquals(List.of(3L), index.search("aula", 10));
+    }
+
+    @Test
+    void updatedDeviceIsReindexed() {
+        index.put(3, "Projektor BenQ", "SN-BQ-003", "projektor", "Aula", DeviceStatus.AVAILABLE);
+
+        assertEquals(Optional.of(List.of()), index.filter(null, null, "epson"));
+        assertEquals(Optional.of(List.of(3L)), index.filter(null, null, "benq"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void poolsGroupDevicesByTypeAndLocationWithoutBrokenOnes() {
+        index.put(5, "Laptop Lenovo", "SN-LN-005", "laptop", "Budynek B", DeviceStatus.DAMAGED);
+
+        assertArrayEquals(new long[]{2}, index.pool("laptop", "budynek b"));
+        assertArrayEquals(new long[]{1, 2}, index.pool("LAPTOP", null));
+        assertArrayEquals(new long[]{1, 4}, index.pool("o", "budynek a"));   // jak filter: podciąg
+        assertArrayEquals(new long[]{}, index.pool("laptop", "aula"));
+
+        // przeniesione urządzenie zmienia pulę
+        index.put(1, "Laptop Dell Latitude", "SN-DL-001", "laptop", "Budynek B", DeviceStatus.AVAILABLE);
+        assertArrayEquals(new long[]{1, 2}, index.pool("laptop", "budynek b"));
+        assertArrayEquals(new long[]{}, index.pool("laptop", "budynek a"));
+    }
+
+    @Test
+    void devicesCreatedOnOtherNodesAreLoadedFromDatabase() {
+        DeviceRepository repo = mock(DeviceRepository.class);
+        var remote = new DeviceSearchIndex(repo, 3);
+        when(repo.findSearchRowsByIdIn(List.of(51L)))
+                .thenReturn(List.of(new DeviceSearchRowDto(51L, "Kamera Sony", "SN-SO-051", "kamera", "Aula", DeviceStatus.AVAILABLE)));
+
+        remote.onDomainEvents(new DomainEventBatch(List.of(created(51L)), false));
+        assertEquals(List.of(51L), remote.search("sony", 10));
+
+        // własne urządzenia są już w indeksie po commicie – bez zapytania
+        remote.onDomainEvents(new DomainEventBatch(List.of(created(52L)), true));
+        verify(repo, never()).findSearchRowsByIdIn(List.of(52L));
+    }
+
+    private static DomainEventDto created(long deviceId) {
+        return new DomainEventDto(1L, DomainEventType.DEVICE_CREATED, "node-b", deviceId, deviceId,
+                null, null, null, DeviceStatus.AVAILABLE, Instant.now());
+    }
+}
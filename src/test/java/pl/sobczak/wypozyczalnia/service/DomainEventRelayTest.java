@@ -0,0 +1,81 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+import pl.sobczak.wypozyczalnia.repository.DomainEventRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DomainEventRelayTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-10T12:00:00Z");
+
+    private final DomainEventRepository events = mock(DomainEventRepository.class);
+    private final List<DomainEventBatch> published = new ArrayList<>();
+    private final ApplicationEventPublisher publisher = e -> published.add((DomainEventBatch) e);
+    private final DomainEventRelay relay = relay();
+
+    private DomainEventRelay relay() {
+        when(events.databaseNow()).thenReturn(T0.minusSeconds(2));
+        return new DomainEventRelay(events, publisher, lease("node-a"), 100, 2, Duration.ofSeconds(2), Duration.ofSeconds(30));
+    }
+
+    private static SchedulerLeaseService lease(String owner) {
+        var lease = mock(SchedulerLeaseService.class);
+        when(lease.owner()).thenReturn(owner);
+        return lease;
+    }
+
+    private static DomainEventDto event(long id, String origin, Instant createdAt) {
+        return new DomainEventDto(id, DomainEventType.RESERVATION_CREATED, origin, 100 + id, 7L, 1L,
+                LocalDate.of(2026, 3, 12), LocalDate.of(2026, 3, 14), DeviceStatus.RESERVED, createdAt);
+    }
+
+    @Test
+    void localEventsAreDeliveredOnceEvenWhenPolledAgain() throws InterruptedException {
+        var local = List.of(event(1, "node-a", T0), event(2, "node-a", T0));
+        relay.committed(local);
+        assertTrue(relay.deliverQueued(0));
+        assertFalse(relay.deliverQueued(0));
+
+        // odpytanie widzi te same wiersze i jeden z innego węzła
+        var remote = event(3, "node-b", T0.plusMillis(5));
+        when(events.findAfter(any(), anyLong(), eq(Limit.of(2)))).thenReturn(local, List.of(remote));
+        relay.pollOnce(T0.plusSeconds(1));
+
+        assertEquals(2, published.size());
+        assertTrue(published.get(0).local());
+        assertEquals(local, published.get(0).events());
+        assertFalse(published.get(1).local());
+        assertEquals(List.of(remote), published.get(1).events());
+        // pełna strona → kolejna od ostatniego (createdAt, id)
+        verify(events).findAfter(T0, 2L, Limit.of(2));
+    }
+
+    @Test
+    void pollWindowOverlapsThePreviousPollByCommitLag() {
+        when(events.findAfter(any(), anyLong(), any())).thenReturn(List.of());
+        relay.pollOnce(T0);
+        // pierwsze od chwili utworzenia według zegara bazy, nie JVM
+        verify(events).findAfter(T0.minusSeconds(32), 0L, Limit.of(2));
+        relay.pollOnce(T0.plusSeconds(2));
+        relay.pollOnce(T0.plusSeconds(4));
+
+        // każde odpytanie od poprzedniego minus commit-lag
+        verify(events).findAfter(T0.minusSeconds(30), 0L, Limit.of(2));
+        verify(events).findAfter(T0.plusSeconds(2).minusSeconds(30), 0L, Limit.of(2));
+        assertTrue(published.isEmpty());
+    }
+}
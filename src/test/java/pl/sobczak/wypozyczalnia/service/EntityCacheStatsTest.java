@@ -0,0 +1,65 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import pl.sobczak.wypozyczalnia.dto.DomainEventDto;
+import pl.sobczak.wypozyczalnia.model.Device;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.model.DomainEventType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EntityCacheStatsTest {
+
+    @Test
+    void hitRatioFromRegionCounters() {
+        var region = mock(CacheRegionStatistics.class);
+        when(region.getHitCount()).thenReturn(30L);
+        when(region.getMissCount()).thenReturn(10L);
+        when(region.getPutCount()).thenReturn(12L);
+
+        var dto = EntityCacheStats.toDto("user", region);
+
+        assertEquals("user", dto.region());
+        assertEquals(30, dto.hits());
+        assertEquals(10, dto.misses());
+        assertEquals(12, dto.puts());
+        assertEquals(0.75, dto.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void devicesChangedOnOtherNodesAreEvicted() {
+        var emf = mock(EntityManagerFactory.class);
+        var sessionFactory = mock(SessionFactory.class);
+        var cache = mock(Cache.class);
+        when(emf.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(cache);
+        var stats = new EntityCacheStats(emf);
+
+        stats.onDomainEvents(new DomainEventBatch(List.of(event(7L)), true));
+        verifyNoInteractions(cache);
+
+        stats.onDomainEvents(new DomainEventBatch(List.of(event(7L), event(9L)), false));
+        verify(cache).evictEntityData(Device.class, 7L);
+        verify(cache).evictEntityData(Device.class, 9L);
+    }
+
+    private static DomainEventDto event(long deviceId) {
+        return new DomainEventDto(1L, DomainEventType.LOAN_RETURNED, "node-b", 5L, deviceId, 1L,
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 5), DeviceStatus.AVAILABLE, Instant.now());
+    }
+
+    @Test
+    void unusedRegionHasZeroRatio() {
+        assertEquals(0.0, EntityCacheStats.toDto("device", mock(CacheRegionStatistics.class)).hitRatio());
+        assertEquals(0, EntityCacheStats.toDto("device", null).hits());
+    }
+}
@@ -0,0 +1,84 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.DeviceIntervalDto;
+import pl.sobczak.wypozyczalnia.model.DeviceStatus;
+import pl.sobczak.wypozyczalnia.repository.DeviceRepository;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.ReservationRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ExpirySweeperTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+    private static final Instant NOW = Instant.parse("2026-03-10T00:05:00Z");
+
+    private final LoanRepository loans = mock(LoanRepository.class);
+    private final ReservationRepository reservations = mock(ReservationRepository.class);
+    private final DeviceRepository devices = mock(DeviceRepository.class);
+    private final DeviceAvailabilityIndex index = mock(DeviceAvailabilityIndex.class);
+    private final WaitlistService waitlist = mock(WaitlistService.class);
+    private final DomainEventOutbox domainEvents = mock(DomainEventOutbox.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExpirySweeper sweeper = new ExpirySweeper(loans, reservations, devices, index, waitlist, domainEvents,
+            mock(SchedulerLeaseService.class), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            registry, true, 2, Duration.ofMinutes(30), false);
+
+    private static DeviceIntervalDto row(long deviceId, long id) {
+        return new DeviceIntervalDto(deviceId, id, TODAY.minusDays(10), TODAY.minusDays(1));
+    }
+
+    @Test
+    void updatesInChunksUntilNothingIsLeft() {
+        var first = List.of(row(1, 10), row(2, 11));
+        var last = List.of(row(3, 12));
+        when(loans.findOverdueIntervals(TODAY, Limit.of(2))).thenReturn(first, last);
+        when(loans.markOverdue(anyCollection(), eq(TODAY))).thenReturn(2, 1);
+        when(reservations.findExpiredIntervals(TODAY, Limit.of(2))).thenReturn(List.of());
+
+        var result = sweeper.runOnce(TODAY, NOW);
+
+        assertEquals(3, result.overdueLoans());
+        verify(loans).markOverdue(Set.of(10L, 11L), TODAY);
+        verify(loans).markOverdue(Set.of(12L), TODAY);
+        verify(loans, times(2)).findOverdueIntervals(TODAY, Limit.of(2)); // niepełna porcja kończy bez trzeciego zapytania
+        verify(index).loansClosed(first);
+        verify(index).loansClosed(last);
+        assertEquals(3, registry.get("app.sweeper.rows").tag("change", "loan.overdue").counter().count());
+    }
+
+    @Test
+    void expiredReservationsReleaseTheirDevices() {
+        when(loans.findOverdueIntervals(any(), any())).thenReturn(List.of());
+        var chunk = List.of(row(5, 20), row(5, 21));
+        when(reservations.findExpiredIntervals(TODAY, Limit.of(2))).thenReturn(chunk, List.of());
+        when(reservations.markFulfilled(Set.of(20L, 21L))).thenReturn(1);
+        when(reservations.markExpired(Set.of(20L, 21L))).thenReturn(1);
+        when(devices.releaseReserved(Set.of(5L), DeviceStatus.RESERVED, DeviceStatus.AVAILABLE)).thenReturn(1);
+        when(waitlist.expire(NOW, 2)).thenReturn(4);
+        when(domainEvents.purge(NOW, 2)).thenReturn(7);
+
+        var result = sweeper.runOnce(TODAY, NOW);
+
+        assertEquals(1, result.fulfilledReservations());
+        assertEquals(1, result.expiredReservations());
+        assertEquals(1, result.releasedDevices());
+        assertEquals(0, result.overdueLoans());
+        assertEquals(4, result.expiredWaitlistEntries());
+        assertEquals(7, result.purgedDomainEvents());
+        verify(index).reservationsClosed(chunk);
+    }
+}
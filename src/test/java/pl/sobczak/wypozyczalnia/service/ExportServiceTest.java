@@ -0,0 +1,25 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportServiceTest {
+
+    @Test
+    void csvLineQuotesOnlyWhenNeeded() throws Exception {
+        var w = new StringWriter();
+        ExportService.writeCsvLine(w, new Object[]{7L, "Laptop, model \"X\"", null, LocalDate.of(2030, 1, 10), "linia\ndruga"});
+        assertEquals("7,\"Laptop, model \"\"X\"\"\",,2030-01-10,\"linia\ndruga\"\r\n", w.toString());
+    }
+
+    @Test
+    void formatParsing() {
+        assertEquals(ExportService.Format.CSV, ExportService.Format.parse("CSV"));
+        assertEquals(ExportService.Format.NDJSON, ExportService.Format.parse("ndjson"));
+        assertThrows(IllegalStateException.class, () -> ExportService.Format.parse("xml"));
+    }
+}
@@ -0,0 +1,47 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalSetTest {
+
+    @Test
+    void overlapIsInclusiveOnBothEnds() {
+        var set = new IntervalSet();
+        set.add(1, 10, 20);
+
+        assertTrue(set.overlaps(20, 25));
+        assertTrue(set.overlaps(5, 10));
+        assertTrue(set.overlaps(12, 13));
+        assertTrue(set.overlaps(0, 100));
+        assertFalse(set.overlaps(21, 30));
+        assertFalse(set.overlaps(0, 9));
+    }
+
+    @Test
+    void longIntervalStartingEarlyIsFound() {
+        var set = new IntervalSet();
+        set.add(1, 0, 30);
+        set.add(2, 40, 41);
+
+        assertTrue(set.overlaps(29, 29));
+        assertFalse(set.overlaps(31, 39));
+        assertTrue(set.overlaps(41, 50));
+    }
+
+    @Test
+    void removeAndReAdd() {
+        var set = new IntervalSet();
+        set.add(1, 10, 20);
+        set.add(2, 10, 12);
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertFalse(set.overlaps(15, 18));
+        assertTrue(set.overlaps(12, 18));
+
+        set.add(2, 30, 31); // ponowne dodanie przesuwa przedział
+        assertFalse(set.overlaps(10, 12));
+        assertEquals(1, set.size());
+    }
+}
@@ -0,0 +1,122 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.dto.LoanReminderDto;
+import pl.sobczak.wypozyczalnia.model.LoanStatus;
+import pl.sobczak.wypozyczalnia.model.OutboundMail;
+import pl.sobczak.wypozyczalnia.model.ReminderLog;
+import pl.sobczak.wypozyczalnia.repository.LoanRepository;
+import pl.sobczak.wypozyczalnia.repository.OutboundMailRepository;
+import pl.sobczak.wypozyczalnia.repository.ReminderLogRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LoanReminderSchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private final LoanRepository loans = mock(LoanRepository.class);
+    private final ReminderLogRepository ledger = mock(ReminderLogRepository.class);
+    private final OutboundMailRepository outbox = mock(OutboundMailRepository.class);
+    private final MailDispatcher dispatcher = mock(MailDispatcher.class);
+    private final SchedulerLeaseService lease = mock(SchedulerLeaseService.class);
+    private final TransactionTemplate tx = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    private final List<OutboundMail> queued = new ArrayList<>();
+
+    private LoanReminderScheduler scheduler(String daysAhead, int chunkSize) {
+        return new LoanReminderScheduler(loans, ledger, new MailService(outbox, dispatcher, tx), lease, tx,
+                true, daysAhead, chunkSize, Duration.ofMinutes(30), false, 7);
+    }
+
+    private static LoanReminderDto due(long loanId, LocalDate dueDate) {
+        return new LoanReminderDto(loanId, dueDate, "u" + loanId + "@uczelnia.pl", "u" + loanId,
+                "Laptop", "SN-" + loanId, "A-101");
+    }
+
+    LoanReminderSchedulerTest() {
+        when(outbox.saveAll(anyList())).thenAnswer(inv -> {
+            List<OutboundMail> rows = inv.getArgument(0);
+            for (OutboundMail m : rows) {
+                m.setId(100L + queued.size());
+                queued.add(m);
+            }
+            return rows;
+        });
+    }
+
+    @Test
+    void dueLoansArePagedByIdAndQueuedOneBatchPerChunk() {
+        var dates = Set.of(TODAY, TODAY.plusDays(1));
+        when(loans.findDueForReminder(eq(LoanStatus.ACTIVE), eq(dates), anyLong(), eq(Limit.of(2))))
+                .thenReturn(List.of(due(3, TODAY), due(7, TODAY.plusDays(1))), List.of(due(9, TODAY)));
+
+        scheduler("1,0", 2).runOnce(TODAY);
+
+        // keyset: kolejna porcja od ostatniego id, niepełna kończy bez dodatkowego zapytania
+        verify(loans).findDueForReminder(LoanStatus.ACTIVE, dates, 0L, Limit.of(2));
+        verify(loans).findDueForReminder(LoanStatus.ACTIVE, dates, 7L, Limit.of(2));
+        verify(loans, times(2)).findDueForReminder(any(), any(), anyLong(), any());
+        // jedna paczka inserts na porcję, sygnał dla wątków wysyłki z id zapisanych wiadomości
+        verify(outbox, times(2)).saveAll(anyList());
+        verify(dispatcher).signal(List.of(100L, 101L));
+        verify(dispatcher).signal(List.of(102L));
+        assertEquals(List.of("u3@uczelnia.pl", "u7@uczelnia.pl", "u9@uczelnia.pl"),
+                queued.stream().map(OutboundMail::getRecipient).toList());
+        assertTrue(queued.get(1).getSubject().contains("jutro"));
+        verify(ledger, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void onlyTheLeaseHolderSendsAndAlreadySentRemindersAreSkipped() {
+        when(lease.tryAcquire("loan-reminders", Duration.ofMinutes(30))).thenReturn(false, true);
+        when(lease.lastCompletedAt("loan-reminders")).thenReturn(Optional.empty());
+        LocalDate today = LocalDate.now();
+        when(loans.findDueForReminder(eq(LoanStatus.ACTIVE), eq(Set.of(today)), eq(0L), any()))
+                .thenReturn(List.of(due(3, today), due(4, today)));
+        // loan 3 dostał już przypomnienie (np. przebieg przerwany po commicie porcji)
+        when(ledger.findByLoanIdIn(List.of(3L, 4L))).thenReturn(List.of(new ReminderLog(3L, 0, today, Instant.now())));
+        var scheduler = scheduler("0", 500);
+
+        scheduler.sendReminders(); // inny węzeł ma dzierżawę
+        verifyNoInteractions(loans);
+        verify(lease, never()).release(any(), anyBoolean());
+
+        scheduler.sendReminders();
+        assertEquals(List.of("u4@uczelnia.pl"), queued.stream().map(OutboundMail::getRecipient).toList());
+        verify(ledger).saveAll(argThat(rows -> rows.spliterator().getExactSizeIfKnown() == 1));
+        verify(lease).release("loan-reminders", true);
+    }
+
+    @Test
+    void downtimeLongerThanTheSmallestOffsetRemindsMissedDueDates() {
+        when(loans.findDueForReminder(any(), any(), anyLong(), any())).thenReturn(List.of());
+        var missedDates = Set.of(TODAY.minusDays(2), TODAY.minusDays(1));
+        when(loans.findDueForReminder(LoanStatus.OVERDUE, missedDates, 0L, Limit.of(500)))
+                .thenReturn(List.of(due(5, TODAY.minusDays(2))));
+
+        // ostatni przebieg 4 dni temu, wyprzedzenia 2,1: termin sprzed 3 dni dostał "1" w dniu przebiegu
+        scheduler("2,1", 500).runOnce(TODAY, TODAY.minusDays(4));
+
+        verify(loans).findDueForReminder(LoanStatus.ACTIVE,
+                Set.of(TODAY, TODAY.plusDays(1), TODAY.plusDays(2), TODAY.minusDays(2), TODAY.minusDays(1)), 0L, Limit.of(500));
+        assertEquals(1, queued.size());
+        assertTrue(queued.get(0).getSubject().contains("po terminie"));
+        verify(ledger).saveAll(argThat(rows -> {
+            var row = rows.iterator().next();
+            return row.getLoanId() == 5L && row.getOffsetDays() == 1;
+        }));
+    }
+}
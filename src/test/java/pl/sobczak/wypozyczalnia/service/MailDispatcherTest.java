@@ -0,0 +1,128 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.sobczak.wypozyczalnia.model.OutboundMail;
+import pl.sobczak.wypozyczalnia.model.OutboundMailStatus;
+import pl.sobczak.wypozyczalnia.repository.OutboundMailRepository;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MailDispatcherTest {
+
+    /** Atrapa serwera SMTP: zapamiętuje wysłane wiadomości, wybrani adresaci "odbijają się" */
+    static class FakeSmtp implements JavaMailSender {
+        final List<SimpleMailMessage> delivered = new ArrayList<>();
+        final Set<String> rejected = new java.util.HashSet<>();
+        int connections;
+
+        @Override
+        public void send(SimpleMailMessage... messages) {
+            connections++;
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (SimpleMailMessage m : messages) {
+                if (rejected.contains(m.getTo()[0])) failed.put(m, new IllegalStateException("550 mailbox unavailable"));
+                else delivered.add(m);
+            }
+            if (!failed.isEmpty()) throw new MailSendException(failed);
+        }
+
+        @Override public MimeMessage createMimeMessage() { return new MimeMessage((Session) null); }
+        @Override public MimeMessage createMimeMessage(InputStream contentStream) { throw new UnsupportedOperationException(); }
+        @Override public void send(MimeMessage... mimeMessages) { throw new UnsupportedOperationException(); }
+    }
+
+    private final FakeSmtp smtp = new FakeSmtp();
+    private final OutboundMailRepository repo = mock(OutboundMailRepository.class);
+    private MailDispatcher dispatcher;
+    private List<OutboundMail> saved;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<JavaMailSender> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(smtp);
+        var tx = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        dispatcher = new MailDispatcher(provider, "wypozyczalnia@uczelnia.pl", repo, tx,
+                1, 100, 50, 0, 3, Duration.ofSeconds(30), Duration.ofMinutes(10), Duration.ofSeconds(1), Duration.ofMinutes(5));
+        when(repo.saveAll(anyList())).thenAnswer(inv -> {
+            saved = new ArrayList<>(inv.getArgument(0));
+            return saved;
+        });
+    }
+
+    @Test
+    void batchGoesOverOneConnectionAndFailuresAreRetriedWithBackoff() throws Exception {
+        var ok = mail(1L, "a@uczelnia.pl", 0);
+        var bounced = mail(2L, "zly@uczelnia.pl", 0);
+        smtp.rejected.add("zly@uczelnia.pl");
+        when(repo.findByClaimTokenAndStatus(anyString(), eq(OutboundMailStatus.SENDING))).thenReturn(List.of(ok, bounced));
+
+        Instant before = Instant.now();
+        dispatcher.processBatch(List.of(1L, 2L));
+
+        assertEquals(1, smtp.connections);
+        assertEquals(1, smtp.delivered.size());
+        assertEquals(2, saved.size());
+        assertEquals(OutboundMailStatus.SENT, ok.getStatus());
+        assertEquals(OutboundMailStatus.PENDING, bounced.getStatus());
+        assertEquals(1, bounced.getAttempts());
+        assertTrue(bounced.getNextAttemptAt().isAfter(before.plusSeconds(29)));
+        assertNull(bounced.getClaimToken());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        var bounced = mail(3L, "zly@uczelnia.pl", 2);
+        smtp.rejected.add("zly@uczelnia.pl");
+        when(repo.findByClaimTokenAndStatus(anyString(), eq(OutboundMailStatus.SENDING))).thenReturn(List.of(bounced));
+
+        dispatcher.processBatch(List.of(3L));
+
+        assertEquals(OutboundMailStatus.FAILED, bounced.getStatus());
+        assertEquals(3, bounced.getAttempts());
+        assertNotNull(bounced.getLastError());
+    }
+
+    @Test
+    void nothingClaimedMeansNothingSent() throws Exception {
+        when(repo.findByClaimTokenAndStatus(anyString(), eq(OutboundMailStatus.SENDING))).thenReturn(List.of());
+
+        dispatcher.processBatch(List.of(4L));
+
+        assertEquals(0, smtp.connections);
+        verify(repo, never()).saveAll(anyList());
+    }
+
+    private static OutboundMail mail(Long id, String to, int attempts) {
+        var m = new OutboundMail();
+        m.setId(id);
+        m.setRecipient(to);
+        m.setSubject("Przypomnienie");
+        m.setBody("Treść");
+        m.setStatus(OutboundMailStatus.SENDING);
+        m.setAttempts(attempts);
+        m.setCreatedAt(Instant.now().minusSeconds(5));
+        m.setNextAttemptAt(Instant.now());
+        return m;
+    }
+}
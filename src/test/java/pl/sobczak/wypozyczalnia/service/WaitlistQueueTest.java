@@ -0,0 +1,52 @@
+package pl.sobczak.wypozyczalnia.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WaitlistQueueTest {
+
+    private static final long NOW = 1_000_000;
+
+    private static WaitlistQueue.Entry entry(long id, String type, String location, long from, long to, long createdAt) {
+        return WaitlistQueue.Entry.of(id, 7, type, location, from, to, createdAt, NOW + 60_000);
+    }
+
+    private static List<Long> ids(List<WaitlistQueue.Entry> entries) {
+        return entries.stream().map(WaitlistQueue.Entry::id).toList();
+    }
+
+    @Test
+    void freedDeviceMatchesOverlappingEntriesOfItsGroupsLongestWaitingFirst() {
+        var queue = new WaitlistQueue();
+        queue.add(entry(1, "Laptop", "Budynek B", 10, 12, 300));
+        queue.add(entry(2, "laptop", null, 11, 20, 100));              // dowolna lokalizacja
+        queue.add(entry(3, "laptop", "Budynek A", 10, 12, 50));        // inna lokalizacja
+        queue.add(entry(4, "projektor", "Budynek B", 10, 12, 10));     // inny typ
+        queue.add(entry(5, "laptop", "budynek b", 13, 15, 200));       // poza zwolnionymi dniami
+        queue.add(entry(6, "lap", "b", 0, 10, 200));                   // frazy jak w allocate, długi termin od 0
+
+        assertEquals(List.of(2L, 6L, 1L), ids(queue.candidates("laptop", "Budynek B, sala 12", 10, 12, NOW)));
+        assertEquals(List.of(), ids(queue.candidates("projektor", "Aula", 10, 12, NOW)));
+        assertFalse(queue.add(entry(1, "laptop", "Budynek B", 10, 12, 300)));
+        assertEquals(6, queue.size());
+    }
+
+    @Test
+    void removedAndExpiredEntriesAreNotCandidates() {
+        var queue = new WaitlistQueue();
+        queue.add(entry(1, "laptop", "B", 10, 12, 1));
+        queue.add(WaitlistQueue.Entry.of(2, 7, "laptop", "B", 10, 12, 2, NOW));   // wygasa dokładnie teraz
+        queue.add(entry(3, "laptop", "B", 10, 12, 3));
+
+        assertTrue(queue.remove(1));
+        assertFalse(queue.remove(1));
+        assertEquals(List.of(3L), ids(queue.candidates("laptop", "B", 10, 12, NOW)));
+        assertTrue(queue.remove(3));
+        assertTrue(queue.remove(2));
+        assertEquals(0, queue.size());
+        assertEquals(List.of(), ids(queue.candidates("laptop", "B", 10, 12, NOW)));
+    }
+}